@@ -1,24 +1,142 @@
+import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.AggregatingPriceFeed;
 import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.ApiCall;
+import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.AssetQuoteService;
+import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.CoinApiPriceFeed;
+import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.PriceFeed;
+import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.ReplayPriceFeed;
+import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.RefreshPolicy;
 import bg.sofia.uni.fmi.mjt.cryptowallet.command.CommandExecutor;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.AssetSnapshotStore;
 import bg.sofia.uni.fmi.mjt.cryptowallet.database.AvailableAssets;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.CheckpointedUserRepository;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.JdbcUserRepository;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.LazyUserRepository;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.LazyUserStore;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.Logs;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.PriceHistory;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.UserExporter;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.UserFileMigration;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.UserRepository;
 import bg.sofia.uni.fmi.mjt.cryptowallet.database.UserSet;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.WalletJournal;
 import bg.sofia.uni.fmi.mjt.cryptowallet.server.CryptocurrencyWalletManagerServer;
+import bg.sofia.uni.fmi.mjt.cryptowallet.server.ExecutionMode;
+import bg.sofia.uni.fmi.mjt.cryptowallet.server.FramingMode;
+import bg.sofia.uni.fmi.mjt.cryptowallet.server.ServerConfig;
 
-import java.io.File;
+import java.io.IOException;
 import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public class Main {
+    private static final int DEFAULT_REACTOR_COUNT = 1;
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Path SNAPSHOT_PATH = Path.of("database", "assets.snapshot");
+    private static final Path JOURNAL_PATH = Path.of("database", "wallet.journal");
+    private static final Duration CHECKPOINT_INTERVAL = Duration.ofMinutes(5);
+    private static final String REPLAY_PROPERTY = "cryptowallet.replay";
+    private static final String USER_STORE_PROPERTY = "cryptowallet.userStore";
+    private static final String RESIDENT_USERS_PROPERTY = "cryptowallet.residentUsers";
+    private static final String USER_SHARDS_PROPERTY = "cryptowallet.userShards";
+    private static final String FILE_USER_STORE = "file";
+    private static final String JDBC_USER_STORE = "jdbc";
+    private static final String JDBC_URL_PROPERTY = "cryptowallet.jdbcUrl";
+    private static final String DEFAULT_JDBC_URL = "jdbc:h2:./database/users";
+    private static final int DEFAULT_RESIDENT_USERS = 10_000;
+    private static final Path USERS_PATH = Path.of("database", "users.txt");
+    private static final Path USER_STORE_PATH = Path.of("database", "users");
+    private static final Path EXPORTS_PATH = Path.of("database", "exports");
+    private static final String ADMINISTRATORS_PROPERTY = "cryptowallet.admins";
+    private static final String GROUP_COMMIT_SIZE_PROPERTY = "cryptowallet.groupCommitSize";
+    private static final String GROUP_COMMIT_MILLIS_PROPERTY = "cryptowallet.groupCommitMillis";
+
+    private static PriceFeed createPriceFeed(ApiCall apiCall) {
+        PriceFeed coinApi = new CoinApiPriceFeed(apiCall);
+        String recordings = System.getProperty(REPLAY_PROPERTY);
+        if (recordings == null || recordings.isBlank()) {
+            return coinApi;
+        }
+
+        List<Path> paths = Arrays.stream(recordings.split(",")).map(String::trim).map(Path::of).toList();
+        return new AggregatingPriceFeed(List.of(coinApi, new ReplayPriceFeed(paths)),
+            AggregatingPriceFeed.Mode.FIRST_HEALTHY);
+    }
+
+    private static UserRepository createUserRepository() throws IOException, SQLException {
+        String userStore = System.getProperty(USER_STORE_PROPERTY);
+        if (JDBC_USER_STORE.equals(userStore)) {
+            return new JdbcUserRepository(System.getProperty(JDBC_URL_PROPERTY, DEFAULT_JDBC_URL));
+        }
+
+        WalletJournal journal = new WalletJournal(JOURNAL_PATH,
+            Integer.getInteger(GROUP_COMMIT_SIZE_PROPERTY, WalletJournal.DEFAULT_GROUP_COMMIT_SIZE),
+            Duration.ofMillis(Long.getLong(GROUP_COMMIT_MILLIS_PROPERTY,
+                WalletJournal.DEFAULT_GROUP_COMMIT_INTERVAL.toMillis())));
+        if (FILE_USER_STORE.equals(userStore)) {
+            return new UserSet(USERS_PATH.toString(), journal, Integer.getInteger(USER_SHARDS_PROPERTY, 1));
+        }
+
+        // the import only publishes the store directory once it is complete, so a missing directory means retry
+        if (!Files.exists(USER_STORE_PATH) && Files.exists(USERS_PATH)) {
+            UserFileMigration.importInto(USERS_PATH, USER_STORE_PATH);
+        }
+        LazyUserStore store = new LazyUserStore(USER_STORE_PATH);
+        return new LazyUserRepository(store, journal,
+            Integer.getInteger(RESIDENT_USERS_PROPERTY, DEFAULT_RESIDENT_USERS));
+    }
+
+    private static Set<String> administrators() {
+        String administrators = System.getProperty(ADMINISTRATORS_PROPERTY, "");
+        return Arrays.stream(administrators.split(",")).map(String::trim).filter(name -> !name.isEmpty())
+            .collect(Collectors.toUnmodifiableSet());
+    }
+
+    private static void restoreSnapshot(AssetSnapshotStore snapshotStore, AvailableAssets availableAssets) {
+        try {
+            snapshotStore.load().ifPresent(availableAssets::restore);
+        } catch (IOException e) {
+            Logs.logErrorWithStackTrace(e.getStackTrace(), "Could not restore asset snapshot.");
+        }
+    }
+
     public static void main(String[] args) {
+        int reactorCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_REACTOR_COUNT;
+        FramingMode framingMode = args.length > 1 ? FramingMode.valueOf(args[1]) : FramingMode.RAW;
+        ExecutionMode executionMode = args.length > 2 ? ExecutionMode.valueOf(args[2]) : ExecutionMode.INLINE;
+        int maxAssetCount = args.length > 3 ? Integer.parseInt(args[3]) : AvailableAssets.DEFAULT_MAX_ASSET_COUNT;
+        RefreshPolicy refreshPolicy = args.length > 4
+            ? RefreshPolicy.withInterval(Duration.ofMinutes(Long.parseLong(args[4]))) : RefreshPolicy.defaults();
         Scanner scanner = new Scanner(System.in);
         String apiKey;
         apiKey = scanner.nextLine();
-        try (UserSet set = new UserSet("database" + File.separator + "users.txt")) {
-            ApiCall apiCall = new ApiCall(HttpClient.newBuilder().build(), apiKey);
-            CommandExecutor commandExecutor = new CommandExecutor(set, new AvailableAssets());
+        try (UserRepository users = createUserRepository()) {
+            if (users instanceof CheckpointedUserRepository checkpointed) {
+                checkpointed.scheduleCheckpoints(CHECKPOINT_INTERVAL);
+            }
+            ApiCall apiCall = new ApiCall(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .build(), apiKey);
+            AvailableAssets availableAssets = new AvailableAssets(maxAssetCount);
+            availableAssets.setQuoteSource(new AssetQuoteService(apiCall));
+            AssetSnapshotStore snapshotStore = new AssetSnapshotStore(SNAPSHOT_PATH);
+            restoreSnapshot(snapshotStore, availableAssets);
+            CommandExecutor commandExecutor = new CommandExecutor(users, availableAssets, new PriceHistory(),
+                new UserExporter(users, EXPORTS_PATH), administrators());
             CryptocurrencyWalletManagerServer cryptocurrencyWalletManagerServer
-                = new CryptocurrencyWalletManagerServer(commandExecutor);
-            cryptocurrencyWalletManagerServer.start(apiCall);
+                = new CryptocurrencyWalletManagerServer(commandExecutor,
+                new ServerConfig(reactorCount, framingMode, executionMode));
+            cryptocurrencyWalletManagerServer.start(createPriceFeed(apiCall), refreshPolicy, snapshotStore);
+        } catch (IOException | SQLException e) {
+            Logs.logErrorWithStackTrace(e.getStackTrace(), "Could not open the wallet journal or user store.");
         }
     }
 }
\ No newline at end of file
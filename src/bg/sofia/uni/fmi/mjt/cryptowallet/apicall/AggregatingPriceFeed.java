@@ -0,0 +1,163 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.apicall;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.Logs;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class AggregatingPriceFeed implements PriceFeed {
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(20);
+
+    private static final String NAME = "aggregate";
+
+    public enum Mode {
+        MEDIAN,
+        FIRST_HEALTHY
+    }
+
+    private final List<PriceFeed> feeds;
+    private final Mode mode;
+    private final int quorum;
+    private final Duration timeout;
+    private final Map<String, LongAdder> failures;
+    private final LongAdder hedgedFetches;
+
+    public AggregatingPriceFeed(List<PriceFeed> feeds, Mode mode) {
+        this(feeds, mode, defaultQuorum(feeds, mode), DEFAULT_TIMEOUT);
+    }
+
+    public AggregatingPriceFeed(List<PriceFeed> feeds, Mode mode, int quorum, Duration timeout) {
+        if (feeds == null || feeds.isEmpty() || mode == null || timeout == null) {
+            throw new IllegalArgumentException("Aggregator needs at least one feed, a mode and a timeout.");
+        }
+        if (quorum <= 0 || quorum > feeds.size()) {
+            throw new IllegalArgumentException("Quorum must be between 1 and the number of feeds.");
+        }
+
+        this.feeds = List.copyOf(feeds);
+        this.mode = mode;
+        this.quorum = mode == Mode.FIRST_HEALTHY ? 1 : quorum;
+        this.timeout = timeout;
+        this.failures = new ConcurrentHashMap<>();
+        this.hedgedFetches = new LongAdder();
+    }
+
+    @Override
+    public CompletableFuture<List<Asset>> fetchAssets(int limit) {
+        Round round = new Round(limit);
+        for (PriceFeed feed : feeds) {
+            CompletableFuture<List<Asset>> answer;
+            try {
+                answer = feed.fetchAssets(limit);
+            } catch (RuntimeException e) {
+                answer = CompletableFuture.failedFuture(e);
+            }
+            answer.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((assets, error) -> round.onAnswer(feed, assets, error));
+        }
+        return round.result;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    public long getFailureCount(String feedName) {
+        LongAdder count = failures.get(feedName);
+        return count == null ? 0 : count.sum();
+    }
+
+    public long getHedgedFetchCount() {
+        return hedgedFetches.sum();
+    }
+
+    private final class Round {
+        private final int limit;
+        private final List<List<Asset>> answers;
+        private final CompletableFuture<List<Asset>> result;
+        private int pending;
+
+        private Round(int limit) {
+            this.limit = limit;
+            this.answers = new ArrayList<>();
+            this.result = new CompletableFuture<>();
+            this.pending = feeds.size();
+        }
+
+        private synchronized void onAnswer(PriceFeed feed, List<Asset> assets, Throwable error) {
+            pending--;
+            if (error != null || assets == null) {
+                failures.computeIfAbsent(feed.getName(), name -> new LongAdder()).increment();
+                Logs.logErrorWithStackTrace(error == null ? new StackTraceElement[0] : error.getStackTrace(),
+                    "Price feed " + feed.getName() + " did not answer.");
+            } else if (!result.isDone()) {
+                answers.add(assets);
+            }
+
+            if (result.isDone()) {
+                return;
+            }
+            if (answers.size() >= quorum) {
+                if (pending > 0) {
+                    hedgedFetches.increment();
+                }
+                result.complete(combine(answers, limit));
+            } else if (pending == 0) {
+                if (answers.isEmpty()) {
+                    result.completeExceptionally(new IllegalStateException("No price feed answered."));
+                } else {
+                    result.complete(combine(answers, limit));
+                }
+            }
+        }
+    }
+
+    private static int defaultQuorum(List<PriceFeed> feeds, Mode mode) {
+        return feeds == null || mode == Mode.FIRST_HEALTHY ? 1 : feeds.size() / 2 + 1;
+    }
+
+    private List<Asset> combine(List<List<Asset>> answers, int limit) {
+        if (mode == Mode.FIRST_HEALTHY || answers.size() == 1) {
+            List<Asset> first = answers.get(0);
+            return first.size() > limit ? List.copyOf(first.subList(0, limit)) : List.copyOf(first);
+        }
+
+        Map<String, List<Asset>> quotesById = new LinkedHashMap<>();
+        for (List<Asset> answer : answers) {
+            for (Asset asset : answer) {
+                quotesById.computeIfAbsent(asset.getAssetId(), id -> new ArrayList<>()).add(asset);
+            }
+        }
+
+        List<Asset> combined = new ArrayList<>(Math.min(limit, quotesById.size()));
+        for (List<Asset> quotes : quotesById.values()) {
+            if (combined.size() == limit) {
+                break;
+            }
+            Asset first = quotes.get(0);
+            combined.add(new Asset(first.getAssetId(), first.getName(), first.isCrypto() ? 1 : 0, median(quotes)));
+        }
+        return combined;
+    }
+
+    private static double median(List<Asset> quotes) {
+        double[] prices = new double[quotes.size()];
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = quotes.get(i).getPrice();
+        }
+        Arrays.sort(prices);
+
+        int middle = prices.length / 2;
+        return prices.length % 2 == 1 ? prices[middle] : (prices[middle - 1] + prices[middle]) / 2;
+    }
+}
@@ -3,31 +3,69 @@ package bg.sofia.uni.fmi.mjt.cryptowallet.apicall;
 import bg.sofia.uni.fmi.mjt.cryptowallet.database.Logs;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
 public class ApiCall {
     public static final String API_ENDPOINT_SCHEME = "https";
     public static final String API_ENDPOINT_HOST = "rest.coinapi.io";
     public static final String API_ENDPOINT_PATH = "/v1/assets/";
+    public static final URI DEFAULT_BASE_URI = URI.create(API_ENDPOINT_SCHEME + "://" + API_ENDPOINT_HOST);
+    public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final Duration DEFAULT_RETRY_DELAY = Duration.ofSeconds(1);
+
+    private static final String GZIP = "gzip";
+    private static final String API_KEY_HEADER = "X-CoinAPI-Key";
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final Pattern ASSET_ID = Pattern.compile("[A-Za-z0-9]{1,32}");
 
     private final HttpClient httpClient;
     private final String apiKey;
+    private final URI baseUri;
+    private final Duration requestTimeout;
+    private final int maxAttempts;
+    private final Duration retryDelay;
 
     public ApiCall(HttpClient httpClient, String apiKey) {
+        this(httpClient, apiKey, DEFAULT_BASE_URI, DEFAULT_REQUEST_TIMEOUT, DEFAULT_MAX_ATTEMPTS, DEFAULT_RETRY_DELAY);
+    }
+
+    public ApiCall(HttpClient httpClient, String apiKey, URI baseUri, Duration requestTimeout,
+                   int maxAttempts, Duration retryDelay) {
+        if (baseUri == null || requestTimeout == null || retryDelay == null) {
+            throw new IllegalArgumentException("Base URI, timeout and retry delay cannot be null.");
+        }
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("Maximum attempts must be positive.");
+        }
+
         this.httpClient = httpClient;
         this.apiKey = apiKey;
+        this.baseUri = baseUri;
+        this.requestTimeout = requestTimeout;
+        this.maxAttempts = maxAttempts;
+        this.retryDelay = retryDelay;
     }
 
     public HttpResponse<String> getResponse() {
         HttpResponse<String> httpResponse = null;
 
         try {
-            URI uri = new URI(API_ENDPOINT_SCHEME, API_ENDPOINT_HOST, API_ENDPOINT_PATH + "APIKEY-" + apiKey, null);
-            HttpRequest request = HttpRequest.newBuilder().uri(uri).build();
+            HttpRequest request = HttpRequest.newBuilder().uri(assetsUri()).build();
             httpResponse = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
         } catch (URISyntaxException e) {
             Logs.logErrorWithStackTrace(e.getStackTrace(), "URI is invalid.");
@@ -38,4 +76,116 @@ public class ApiCall {
 
         return httpResponse;
     }
+
+    public HttpResponse<InputStream> getResponseStream() {
+        try {
+            return getResponseStreamAsync().join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            Logs.logErrorWithStackTrace(cause.getStackTrace(),
+                "Problem occurred while trying to send request to API.");
+            return null;
+        }
+    }
+
+    public CompletableFuture<HttpResponse<InputStream>> getResponseStreamAsync() {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder()
+                .uri(assetsUri())
+                .version(HttpClient.Version.HTTP_2)
+                .header("Accept-Encoding", GZIP)
+                .timeout(requestTimeout)
+                .build();
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return sendWithRetry(request, 1);
+    }
+
+    // ids end up in the request path, so anything that could step out of the assets endpoint is refused
+    public static boolean isValidAssetId(String assetId) {
+        return assetId != null && ASSET_ID.matcher(assetId).matches();
+    }
+
+    public CompletableFuture<HttpResponse<InputStream>> getQuoteAsync(String assetId) {
+        if (!isValidAssetId(assetId)) {
+            throw new IllegalArgumentException("Asset id must be a short alphanumeric code.");
+        }
+
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder()
+                .uri(endpointUri(API_ENDPOINT_PATH + assetId))
+                .version(HttpClient.Version.HTTP_2)
+                .header("Accept-Encoding", GZIP)
+                .header(API_KEY_HEADER, apiKey)
+                .timeout(requestTimeout)
+                .build();
+        } catch (URISyntaxException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return sendWithRetry(request, 1);
+    }
+
+    public static InputStream openBody(HttpResponse<InputStream> response) throws IOException {
+        boolean gzipped = response.headers() != null && response.headers().firstValue("Content-Encoding")
+            .map(GZIP::equalsIgnoreCase).orElse(false);
+        return gzipped ? new GZIPInputStream(response.body()) : response.body();
+    }
+
+    private CompletableFuture<HttpResponse<InputStream>> sendWithRetry(HttpRequest request, int attempt) {
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+            .handle((response, error) -> {
+                if (attempt < maxAttempts && isRetryable(response, error)) {
+                    discard(response);
+                    return CompletableFuture.runAsync(() -> { }, retryExecutor(attempt))
+                        .thenCompose(ignored -> sendWithRetry(request, attempt + 1));
+                }
+
+                return error == null ? CompletableFuture.completedFuture(response)
+                    : CompletableFuture.<HttpResponse<InputStream>>failedFuture(unwrap(error));
+            })
+            .thenCompose(Function.identity());
+    }
+
+    private Executor retryExecutor(int attempt) {
+        long delay = retryDelay.toMillis() << (attempt - 1);
+        return CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS);
+    }
+
+    private static boolean isRetryable(HttpResponse<InputStream> response, Throwable error) {
+        if (error != null) {
+            return unwrap(error) instanceof IOException;
+        }
+
+        int status = response.statusCode();
+        return status == TOO_MANY_REQUESTS || status >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static void discard(HttpResponse<InputStream> response) {
+        if (response == null || response.body() == null) {
+            return;
+        }
+
+        try {
+            response.body().close();
+        } catch (IOException e) {
+            Logs.logErrorWithStackTrace(e.getStackTrace(), "Could not discard response body.");
+        }
+    }
+
+    private URI assetsUri() throws URISyntaxException {
+        return endpointUri(API_ENDPOINT_PATH + "APIKEY-" + apiKey);
+    }
+
+    private URI endpointUri(String path) throws URISyntaxException {
+        return new URI(baseUri.getScheme(), null, baseUri.getHost(), baseUri.getPort(), path, null, null);
+    }
 }
\ No newline at end of file
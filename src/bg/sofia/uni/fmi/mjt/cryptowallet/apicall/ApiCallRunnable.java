@@ -1,40 +1,61 @@
 package bg.sofia.uni.fmi.mjt.cryptowallet.apicall;
 
 import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.AssetSnapshotStore;
 import bg.sofia.uni.fmi.mjt.cryptowallet.database.AvailableAssets;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.Logs;
 
-import java.lang.reflect.Type;
-import java.net.HttpURLConnection;
-import java.net.http.HttpResponse;
-import java.util.Set;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletionException;
 
 public class ApiCallRunnable implements Runnable {
-    private final Gson gson;
-    private final ApiCall apiCall;
+    private final PriceFeed priceFeed;
     private final AvailableAssets availableAssets;
+    private final AssetSnapshotStore snapshotStore;
 
     public ApiCallRunnable(ApiCall apiCall, AvailableAssets availableAssets) {
-        this.apiCall = apiCall;
+        this(apiCall, availableAssets, null);
+    }
+
+    public ApiCallRunnable(ApiCall apiCall, AvailableAssets availableAssets, AssetSnapshotStore snapshotStore) {
+        this(new CoinApiPriceFeed(apiCall), availableAssets, snapshotStore);
+    }
+
+    public ApiCallRunnable(PriceFeed priceFeed, AvailableAssets availableAssets, AssetSnapshotStore snapshotStore) {
+        if (priceFeed == null || availableAssets == null) {
+            throw new IllegalArgumentException("Price feed and available assets cannot be null.");
+        }
+
+        this.priceFeed = priceFeed;
         this.availableAssets = availableAssets;
-        gson = new Gson();
+        this.snapshotStore = snapshotStore;
     }
 
     @Override
     public void run() {
-        HttpResponse<String> response = apiCall.getResponse();
-        if (response != null) {
-            if (response.statusCode() == HttpURLConnection.HTTP_OK) {
-                Type type = new TypeToken<Set<Asset>>() { }.getType();
-                Set<Asset> data = gson.fromJson(response.body(), type);
-                availableAssets.updateAvailableAssets(data);
-            } else {
-                throw new RuntimeException("A problem occurred with response, response code " +
-                    response.statusCode() + "was given.");
-            }
-        } else {
-            throw new RuntimeException("Response from API was null.");
+        List<Asset> data;
+        try {
+            data = priceFeed.fetchAssets(availableAssets.getMaxAssetCount()).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() == null ? e : e.getCause();
+            throw new RuntimeException("Price feed " + priceFeed.getName() + " failed: " + cause.getMessage(), cause);
+        }
+
+        availableAssets.updateAvailableAssets(new LinkedHashSet<>(data));
+        persistSnapshot();
+    }
+
+    private void persistSnapshot() {
+        if (snapshotStore == null) {
+            return;
+        }
+
+        try {
+            snapshotStore.save(availableAssets.getSnapshot());
+        } catch (IOException e) {
+            Logs.logErrorWithStackTrace(e.getStackTrace(), "Could not persist asset snapshot.");
         }
     }
 }
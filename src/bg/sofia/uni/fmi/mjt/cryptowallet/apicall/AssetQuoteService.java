@@ -0,0 +1,178 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.apicall;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.AssetQuoteSource;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.Logs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+public class AssetQuoteService implements AssetQuoteSource {
+    public static final Duration DEFAULT_TTL = Duration.ofSeconds(60);
+    public static final double DEFAULT_PERMITS_PER_SECOND = 5.0;
+    public static final int DEFAULT_BURST = 10;
+    public static final Duration DEFAULT_MAX_WAIT = Duration.ofSeconds(5);
+
+    private static final int HTTP_CLIENT_ERROR = 400;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private record CachedQuote(Asset asset, Instant expiresAt) {
+    }
+
+    private record Quote(Asset asset, boolean cacheable) {
+    }
+
+    private final ApiCall apiCall;
+    private final AssetStreamParser parser;
+    private final Duration ttl;
+    private final Duration maxWait;
+    private final Clock clock;
+    private final Map<String, CachedQuote> cache;
+    private final Map<String, CompletableFuture<Asset>> inFlight;
+    private final double permitsPerSecond;
+    private final int burst;
+    private final LongAdder upstreamCalls;
+    private final LongAdder coalescedCalls;
+    private final LongAdder throttledCalls;
+
+    private double availablePermits;
+    private long lastRefillNanos;
+
+    public AssetQuoteService(ApiCall apiCall) {
+        this(apiCall, DEFAULT_TTL, DEFAULT_PERMITS_PER_SECOND, DEFAULT_BURST, DEFAULT_MAX_WAIT, Clock.systemUTC());
+    }
+
+    public AssetQuoteService(ApiCall apiCall, Duration ttl, double permitsPerSecond, int burst, Duration maxWait,
+                             Clock clock) {
+        if (apiCall == null || ttl == null || maxWait == null || clock == null) {
+            throw new IllegalArgumentException("Quote service dependencies cannot be null.");
+        }
+        if (permitsPerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Rate limit must be positive.");
+        }
+
+        this.apiCall = apiCall;
+        this.parser = new AssetStreamParser();
+        this.ttl = ttl;
+        this.maxWait = maxWait;
+        this.clock = clock;
+        this.cache = new ConcurrentHashMap<>();
+        this.inFlight = new ConcurrentHashMap<>();
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.availablePermits = burst;
+        this.lastRefillNanos = System.nanoTime();
+        this.upstreamCalls = new LongAdder();
+        this.coalescedCalls = new LongAdder();
+        this.throttledCalls = new LongAdder();
+    }
+
+    public Asset quote(String assetId) {
+        try {
+            return quoteAsync(assetId).get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            Logs.logErrorWithStackTrace(e.getStackTrace(), "Could not get a quote for " + assetId + ".");
+            return null;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Asset> quoteAsync(String assetId) {
+        if (!ApiCall.isValidAssetId(assetId)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CachedQuote cached = cache.get(assetId);
+        if (cached != null && clock.instant().isBefore(cached.expiresAt())) {
+            return CompletableFuture.completedFuture(cached.asset());
+        }
+
+        CompletableFuture<Asset> created = new CompletableFuture<>();
+        CompletableFuture<Asset> existing = inFlight.putIfAbsent(assetId, created);
+        if (existing != null) {
+            coalescedCalls.increment();
+            return existing;
+        }
+
+        if (!tryAcquirePermit()) {
+            throttledCalls.increment();
+            inFlight.remove(assetId, created);
+            created.complete(null);
+            return created;
+        }
+
+        upstreamCalls.increment();
+        apiCall.getQuoteAsync(assetId)
+            .thenApply(response -> readQuote(assetId, response))
+            .whenComplete((quote, error) -> {
+                if (error == null && quote.cacheable()) {
+                    cache.put(assetId, new CachedQuote(quote.asset(), clock.instant().plus(ttl)));
+                } else if (error != null) {
+                    Logs.logErrorWithStackTrace(error.getStackTrace(), "Quote request for " + assetId + " failed.");
+                }
+                inFlight.remove(assetId, created);
+                created.complete(error == null ? quote.asset() : null);
+            });
+        return created;
+    }
+
+    public long getUpstreamCallCount() {
+        return upstreamCalls.sum();
+    }
+
+    public long getCoalescedCallCount() {
+        return coalescedCalls.sum();
+    }
+
+    public long getThrottledCallCount() {
+        return throttledCalls.sum();
+    }
+
+    private Quote readQuote(String assetId, HttpResponse<InputStream> response) {
+        try (Reader reader = new InputStreamReader(ApiCall.openBody(response), StandardCharsets.UTF_8)) {
+            int status = response.statusCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                return new Quote(null, status >= HTTP_CLIENT_ERROR && status < HttpURLConnection.HTTP_INTERNAL_ERROR);
+            }
+
+            List<Asset> assets = parser.parseTopAssets(reader, 1);
+            Asset asset = assets.isEmpty() || !assets.get(0).getAssetId().equals(assetId) ? null : assets.get(0);
+            return new Quote(asset, true);
+        } catch (IOException e) {
+            Logs.logErrorWithStackTrace(e.getStackTrace(), "Quote response for " + assetId + " is invalid.");
+            return new Quote(null, false);
+        }
+    }
+
+    private synchronized boolean tryAcquirePermit() {
+        long now = System.nanoTime();
+        availablePermits = Math.min(burst,
+            availablePermits + (now - lastRefillNanos) * permitsPerSecond / NANOS_PER_SECOND);
+        lastRefillNanos = now;
+        if (availablePermits < 1) {
+            return false;
+        }
+
+        availablePermits--;
+        return true;
+    }
+}
@@ -0,0 +1,92 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.apicall;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+public class AssetStreamParser {
+    private static final int IS_CRYPTO = 1;
+    private static final Comparator<RankedAsset> BY_VOLUME = Comparator.comparingDouble(RankedAsset::volume)
+        .thenComparing(ranked -> ranked.asset().getAssetId(), Comparator.reverseOrder());
+
+    private record RankedAsset(Asset asset, double volume) {
+    }
+
+    public List<Asset> parseTopAssets(Reader reader, int limit) throws IOException {
+        if (reader == null) {
+            throw new IllegalArgumentException("Reader cannot be null.");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive.");
+        }
+
+        PriorityQueue<RankedAsset> top = new PriorityQueue<>(limit + 1, BY_VOLUME);
+        try (JsonReader jsonReader = new JsonReader(reader)) {
+            jsonReader.beginArray();
+            while (jsonReader.hasNext()) {
+                RankedAsset ranked = readAsset(jsonReader);
+                if (ranked == null) {
+                    continue;
+                }
+
+                if (top.size() < limit) {
+                    top.add(ranked);
+                } else if (BY_VOLUME.compare(ranked, top.peek()) > 0) {
+                    top.poll();
+                    top.add(ranked);
+                }
+            }
+            jsonReader.endArray();
+        } catch (IllegalStateException e) {
+            throw new IOException("Assets response is malformed.", e);
+        }
+
+        List<RankedAsset> ranked = new ArrayList<>(top);
+        ranked.sort(BY_VOLUME.reversed());
+        List<Asset> result = new ArrayList<>(ranked.size());
+        for (RankedAsset asset : ranked) {
+            result.add(asset.asset());
+        }
+        return result;
+    }
+
+    private static RankedAsset readAsset(JsonReader reader) throws IOException {
+        String assetId = null;
+        String name = null;
+        int isCrypto = 0;
+        double price = Double.NaN;
+        double volume = 0.0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+
+            switch (field) {
+                case "asset_id" -> assetId = reader.nextString();
+                case "name" -> name = reader.nextString();
+                case "type_is_crypto" -> isCrypto = reader.nextInt();
+                case "price_usd" -> price = reader.nextDouble();
+                case "volume_1day_usd" -> volume = reader.nextDouble();
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (isCrypto != IS_CRYPTO || assetId == null || Double.isNaN(price)) {
+            return null;
+        }
+
+        return new RankedAsset(new Asset(assetId, name, isCrypto, price), volume);
+    }
+}
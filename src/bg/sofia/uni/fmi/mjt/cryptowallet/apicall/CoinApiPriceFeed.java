@@ -0,0 +1,74 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.apicall;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class CoinApiPriceFeed implements PriceFeed {
+    private static final String NAME = "coinapi";
+
+    private final ApiCall apiCall;
+    private final AssetStreamParser parser;
+
+    public CoinApiPriceFeed(ApiCall apiCall) {
+        if (apiCall == null) {
+            throw new IllegalArgumentException("Api call cannot be null.");
+        }
+
+        this.apiCall = apiCall;
+        this.parser = new AssetStreamParser();
+    }
+
+    @Override
+    public CompletableFuture<List<Asset>> fetchAssets(int limit) {
+        CompletableFuture<HttpResponse<InputStream>> response = apiCall.getResponseStreamAsync();
+        if (response == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Response from API was null."));
+        }
+
+        return response.thenApplyAsync(result -> readAssets(result, limit));
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    private List<Asset> readAssets(HttpResponse<InputStream> response, int limit) {
+        if (response == null) {
+            throw new IllegalStateException("Response from API was null.");
+        }
+        if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+            closeQuietly(response.body());
+            throw new IllegalStateException("A problem occurred with response, response code " +
+                response.statusCode() + " was given.");
+        }
+
+        try (Reader reader = new InputStreamReader(ApiCall.openBody(response), StandardCharsets.UTF_8)) {
+            return parser.parseTopAssets(reader, limit);
+        } catch (IOException e) {
+            throw new UncheckedIOException("A problem occurred while reading the response.", e);
+        }
+    }
+
+    private static void closeQuietly(InputStream body) {
+        if (body == null) {
+            return;
+        }
+
+        try {
+            body.close();
+        } catch (IOException e) {
+            // the response is discarded anyway
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.apicall;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@FunctionalInterface
+public interface PriceFeed {
+    CompletableFuture<List<Asset>> fetchAssets(int limit);
+
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+}
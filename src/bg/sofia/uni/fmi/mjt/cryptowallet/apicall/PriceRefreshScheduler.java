@@ -0,0 +1,188 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.apicall;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.RefreshMetrics.CircuitState;
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.AssetSnapshot;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.AvailableAssets;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.Logs;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGenerator;
+
+public class PriceRefreshScheduler {
+    private static final int MAX_BACKOFF_SHIFT = 20;
+
+    private final Runnable refreshTask;
+    private final AvailableAssets availableAssets;
+    private final RefreshPolicy policy;
+    private final ScheduledExecutorService executor;
+    private final Clock clock;
+    private final RandomGenerator random;
+
+    private CircuitState circuitState;
+    private Instant circuitOpenUntil;
+    private Duration currentInterval;
+    private int consecutiveFailures;
+    private long successes;
+    private long failures;
+    private long rejected;
+    private Instant lastSuccess;
+    private Instant lastFailure;
+    private boolean running;
+    private ScheduledFuture<?> nextRefresh;
+
+    public PriceRefreshScheduler(Runnable refreshTask, AvailableAssets availableAssets, RefreshPolicy policy,
+                                 ScheduledExecutorService executor) {
+        this(refreshTask, availableAssets, policy, executor, Clock.systemUTC(), new Random());
+    }
+
+    public PriceRefreshScheduler(Runnable refreshTask, AvailableAssets availableAssets, RefreshPolicy policy,
+                                 ScheduledExecutorService executor, Clock clock, RandomGenerator random) {
+        if (refreshTask == null || availableAssets == null || policy == null || clock == null || random == null) {
+            throw new IllegalArgumentException("Scheduler dependencies cannot be null.");
+        }
+
+        this.refreshTask = refreshTask;
+        this.availableAssets = availableAssets;
+        this.policy = policy;
+        this.executor = executor;
+        this.clock = clock;
+        this.random = random;
+        this.circuitState = CircuitState.CLOSED;
+        this.circuitOpenUntil = Instant.MIN;
+        this.currentInterval = policy.interval();
+    }
+
+    public synchronized void start() {
+        if (executor == null) {
+            throw new IllegalStateException("Scheduler was created without an executor.");
+        }
+
+        running = true;
+        schedule(Duration.ZERO);
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (nextRefresh != null) {
+            nextRefresh.cancel(false);
+        }
+    }
+
+    public Duration refreshOnce() {
+        Instant now = clock.instant();
+        Duration rejectedDelay = beginAttempt(now);
+        if (rejectedDelay != null) {
+            return rejectedDelay;
+        }
+
+        AssetSnapshot before = availableAssets.getSnapshot();
+        try {
+            refreshTask.run();
+        } catch (RuntimeException e) {
+            Logs.logErrorWithStackTrace(e.getStackTrace(), "Price refresh failed: " + e.getMessage());
+            return onFailure(now);
+        }
+
+        return onSuccess(now, maxRelativeChange(before, availableAssets.getSnapshot()));
+    }
+
+    public synchronized RefreshMetrics getMetrics() {
+        AssetSnapshot snapshot = availableAssets.getSnapshot();
+        Duration snapshotAge = snapshot.getVersion() == 0 ? null
+            : Duration.between(snapshot.getFetchedAt(), clock.instant());
+        return new RefreshMetrics(successes, failures, rejected, consecutiveFailures, circuitState,
+            currentInterval, snapshotAge, lastSuccess, lastFailure);
+    }
+
+    private void runScheduled() {
+        Duration delay = refreshOnce();
+        synchronized (this) {
+            if (running) {
+                schedule(delay);
+            }
+        }
+    }
+
+    private void schedule(Duration delay) {
+        try {
+            nextRefresh = executor.schedule(this::runScheduled, delay.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            running = false;
+        }
+    }
+
+    private synchronized Duration beginAttempt(Instant now) {
+        if (circuitState != CircuitState.OPEN) {
+            return null;
+        }
+
+        if (now.isBefore(circuitOpenUntil)) {
+            rejected++;
+            return Duration.between(now, circuitOpenUntil);
+        }
+
+        circuitState = CircuitState.HALF_OPEN;
+        return null;
+    }
+
+    private synchronized Duration onSuccess(Instant now, double volatility) {
+        successes++;
+        consecutiveFailures = 0;
+        circuitState = CircuitState.CLOSED;
+        lastSuccess = now;
+
+        if (policy.adaptive()) {
+            if (volatility >= policy.volatilityThreshold()) {
+                Duration halved = currentInterval.dividedBy(2);
+                currentInterval = halved.compareTo(policy.minInterval()) < 0 ? policy.minInterval() : halved;
+            } else {
+                Duration doubled = currentInterval.multipliedBy(2);
+                currentInterval = doubled.compareTo(policy.interval()) > 0 ? policy.interval() : doubled;
+            }
+        }
+
+        return currentInterval;
+    }
+
+    private synchronized Duration onFailure(Instant now) {
+        failures++;
+        consecutiveFailures++;
+        lastFailure = now;
+
+        if (circuitState == CircuitState.HALF_OPEN || consecutiveFailures >= policy.failureThreshold()) {
+            circuitState = CircuitState.OPEN;
+            circuitOpenUntil = now.plus(policy.circuitOpenDuration());
+            return policy.circuitOpenDuration();
+        }
+
+        Duration backoff = policy.initialBackoff()
+            .multipliedBy(1L << Math.min(consecutiveFailures - 1, MAX_BACKOFF_SHIFT));
+        if (backoff.compareTo(policy.maxBackoff()) > 0) {
+            backoff = policy.maxBackoff();
+        }
+
+        long halfMillis = backoff.toMillis() / 2;
+        return Duration.ofMillis(halfMillis + random.nextLong(halfMillis + 1));
+    }
+
+    private static double maxRelativeChange(AssetSnapshot before, AssetSnapshot after) {
+        double maxChange = 0.0;
+        for (Asset asset : after.getAssets()) {
+            Asset previous = before.find(asset.getAssetId());
+            if (previous != null && previous.getPrice() > 0) {
+                double change = Math.abs(asset.getPrice() - previous.getPrice()) / previous.getPrice();
+                maxChange = Math.max(maxChange, change);
+            }
+        }
+
+        return maxChange;
+    }
+}
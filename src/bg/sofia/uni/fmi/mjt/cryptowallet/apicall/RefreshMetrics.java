@@ -0,0 +1,14 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.apicall;
+
+import java.time.Duration;
+import java.time.Instant;
+
+public record RefreshMetrics(long successes, long failures, long rejected, int consecutiveFailures,
+                             CircuitState circuitState, Duration currentInterval, Duration snapshotAge,
+                             Instant lastSuccess, Instant lastFailure) {
+    public enum CircuitState {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+}
@@ -0,0 +1,44 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.apicall;
+
+import java.time.Duration;
+
+public record RefreshPolicy(Duration interval, Duration minInterval, Duration initialBackoff, Duration maxBackoff,
+                            int failureThreshold, Duration circuitOpenDuration, boolean adaptive,
+                            double volatilityThreshold) {
+    private static final Duration DEFAULT_INTERVAL = Duration.ofMinutes(30);
+    private static final Duration DEFAULT_MIN_INTERVAL = Duration.ofMinutes(2);
+    private static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofSeconds(15);
+    private static final Duration DEFAULT_MAX_BACKOFF = Duration.ofMinutes(10);
+    private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    private static final Duration DEFAULT_CIRCUIT_OPEN_DURATION = Duration.ofMinutes(15);
+    private static final double DEFAULT_VOLATILITY_THRESHOLD = 0.02;
+
+    public RefreshPolicy {
+        if (interval == null || minInterval == null || initialBackoff == null || maxBackoff == null
+            || circuitOpenDuration == null) {
+            throw new IllegalArgumentException("Refresh durations cannot be null.");
+        }
+        if (interval.isNegative() || interval.isZero() || minInterval.compareTo(interval) > 0) {
+            throw new IllegalArgumentException("Interval must be positive and not below the minimum interval.");
+        }
+        if (initialBackoff.compareTo(maxBackoff) > 0) {
+            throw new IllegalArgumentException("Initial backoff cannot exceed the maximum backoff.");
+        }
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("Failure threshold must be positive.");
+        }
+        if (volatilityThreshold <= 0) {
+            throw new IllegalArgumentException("Volatility threshold must be positive.");
+        }
+    }
+
+    public static RefreshPolicy defaults() {
+        return withInterval(DEFAULT_INTERVAL);
+    }
+
+    public static RefreshPolicy withInterval(Duration interval) {
+        Duration minInterval = interval.compareTo(DEFAULT_MIN_INTERVAL) < 0 ? interval : DEFAULT_MIN_INTERVAL;
+        return new RefreshPolicy(interval, minInterval, DEFAULT_INITIAL_BACKOFF, DEFAULT_MAX_BACKOFF,
+            DEFAULT_FAILURE_THRESHOLD, DEFAULT_CIRCUIT_OPEN_DURATION, true, DEFAULT_VOLATILITY_THRESHOLD);
+    }
+}
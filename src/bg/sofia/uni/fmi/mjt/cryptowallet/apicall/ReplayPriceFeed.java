@@ -0,0 +1,60 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.apicall;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+public class ReplayPriceFeed implements PriceFeed {
+    private static final String NAME = "replay";
+    private static final String GZIP_SUFFIX = ".gz";
+
+    private final List<Path> recordings;
+    private final AssetStreamParser parser;
+    private final AtomicInteger position;
+
+    public ReplayPriceFeed(List<Path> recordings) {
+        if (recordings == null || recordings.isEmpty()) {
+            throw new IllegalArgumentException("At least one recorded response is required.");
+        }
+
+        this.recordings = List.copyOf(recordings);
+        this.parser = new AssetStreamParser();
+        this.position = new AtomicInteger();
+    }
+
+    @Override
+    public CompletableFuture<List<Asset>> fetchAssets(int limit) {
+        Path recording = recordings.get(Math.floorMod(position.getAndIncrement(), recordings.size()));
+        return CompletableFuture.supplyAsync(() -> readRecording(recording, limit));
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    private List<Asset> readRecording(Path recording, int limit) {
+        try (InputStream in = open(recording);
+             Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return parser.parseTopAssets(reader, limit);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not replay recorded response " + recording + ".", e);
+        }
+    }
+
+    private static InputStream open(Path recording) throws IOException {
+        InputStream in = Files.newInputStream(recording);
+        return recording.getFileName().toString().endsWith(GZIP_SUFFIX) ? new GZIPInputStream(in) : in;
+    }
+}
@@ -28,6 +28,10 @@ public class Asset {
         return assetId;
     }
 
+    public String getName() {
+        return name;
+    }
+
     public double getPrice() {
         return price;
     }
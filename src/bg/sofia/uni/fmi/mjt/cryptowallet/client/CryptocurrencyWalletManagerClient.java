@@ -1,5 +1,8 @@
 package bg.sofia.uni.fmi.mjt.cryptowallet.client;
 
+import bg.sofia.uni.fmi.mjt.cryptowallet.server.FramingMode;
+import bg.sofia.uni.fmi.mjt.cryptowallet.server.PricePublisher;
+
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
@@ -18,30 +21,63 @@ public class CryptocurrencyWalletManagerClient {
     private static final String SHUTDOWN = "Server was shutdown.";
     private static final ByteBuffer BUFFER = ByteBuffer.allocate(BUFFER_SIZE);
 
-    private static void handleInput(SocketChannel sc, Scanner scanner) throws IOException {
+    private static void handleInput(SocketChannel sc, Scanner scanner, FramingMode framingMode) throws IOException {
         String message = scanner.nextLine();
+        byte[] payload = message.getBytes(StandardCharsets.UTF_8);
+        BUFFER.clear();
+        if (framingMode == FramingMode.LENGTH_PREFIXED) {
+            BUFFER.putInt(payload.length);
+        }
+        BUFFER.put(payload);
+        BUFFER.flip();
+        while (BUFFER.hasRemaining()) {
+            sc.write(BUFFER);
+        }
+    }
+
+    private static String readResponse(SocketChannel sc, FramingMode framingMode) throws IOException {
+        if (framingMode == FramingMode.LENGTH_PREFIXED) {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+            readFully(sc, header);
+            ByteBuffer payload = ByteBuffer.allocate(header.getInt());
+            readFully(sc, payload);
+            return new String(payload.array(), StandardCharsets.UTF_8);
+        }
+
         BUFFER.clear();
-        BUFFER.put(message.getBytes());
+        sc.read(BUFFER);
         BUFFER.flip();
-        sc.write(BUFFER);
+
+        byte[] byteArray = new byte[BUFFER.remaining()];
+        BUFFER.get(byteArray);
+        return new String(byteArray, StandardCharsets.UTF_8);
+    }
+
+    private static void readFully(SocketChannel sc, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (sc.read(buffer) == -1) {
+                throw new IOException("Connection closed by server.");
+            }
+        }
+        buffer.flip();
     }
 
     public static void main(String[] args) {
+        FramingMode framingMode = args.length > 0 ? FramingMode.valueOf(args[0]) : FramingMode.RAW;
         try (SocketChannel sc = SocketChannel.open();
              Scanner scanner = new Scanner(System.in)) {
             sc.connect(new InetSocketAddress(SERVER_HOST, SERVER_PORT));
             System.out.println("Connected to server.");
 
             while (true) {
-                handleInput(sc, scanner);
+                handleInput(sc, scanner, framingMode);
                 try {
-                    BUFFER.clear();
-                    sc.read(BUFFER);
-                    BUFFER.flip();
-
-                    byte[] byteArray = new byte[BUFFER.remaining()];
-                    BUFFER.get(byteArray);
-                    String response = new String(byteArray, StandardCharsets.UTF_8);
+                    String response = readResponse(sc, framingMode);
+                    while (framingMode == FramingMode.LENGTH_PREFIXED
+                        && response.startsWith(PricePublisher.PRICE_UPDATE_PREFIX)) {
+                        System.out.println(response);
+                        response = readResponse(sc, framingMode);
+                    }
                     System.out.println(response);
 
                     if (response.equals(DISCONNECTED_SUCCESSFULLY) || response.equals(SHUTDOWN)) {
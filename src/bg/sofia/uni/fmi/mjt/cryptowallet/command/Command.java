@@ -2,10 +2,15 @@ package bg.sofia.uni.fmi.mjt.cryptowallet.command;
 
 import java.util.Arrays;
 
-public record Command(String command, String[] arguments) {
+public record Command(String command, String[] arguments, CommandType type, double amount) {
+    public static final double NO_AMOUNT = Double.NaN;
     private static final int ONE_WORD_COMMAND_LEN = 1;
     private static final String DELIMITER = " ";
 
+    public Command(String command, String[] arguments) {
+        this(command, arguments, CommandType.fromName(command), NO_AMOUNT);
+    }
+
     public static Command createCommand(String input) {
         if (input == null) {
             throw new IllegalArgumentException("Input cannot be null.");
@@ -20,4 +25,12 @@ public record Command(String command, String[] arguments) {
         String[] args = Arrays.copyOfRange(tokens, 1, tokens.length);
         return new Command(tokens[0], args);
     }
+
+    public boolean hasAmount() {
+        return !Double.isNaN(amount);
+    }
+
+    public int argumentCount() {
+        return (arguments == null ? 0 : arguments.length) + (hasAmount() ? 1 : 0);
+    }
 }
\ No newline at end of file
@@ -1,33 +1,38 @@
 package bg.sofia.uni.fmi.mjt.cryptowallet.command;
 
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.AssetSnapshot;
 import bg.sofia.uni.fmi.mjt.cryptowallet.database.AvailableAssets;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.CandleInterval;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.JournalRecord;
 import bg.sofia.uni.fmi.mjt.cryptowallet.database.Logs;
-import bg.sofia.uni.fmi.mjt.cryptowallet.database.UserSet;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.PriceHistory;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.PriceSubscriptions;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.UserExporter;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.UserRepository;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.WalletJournal;
 import bg.sofia.uni.fmi.mjt.cryptowallet.exception.InsufficientBalanceException;
 import bg.sofia.uni.fmi.mjt.cryptowallet.exception.NoSuchAssetExistsException;
 import bg.sofia.uni.fmi.mjt.cryptowallet.exception.NoSuchAssetPurchasedException;
 import bg.sofia.uni.fmi.mjt.cryptowallet.exception.UserAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import bg.sofia.uni.fmi.mjt.cryptowallet.wallet.Wallet;
 
 import java.nio.channels.SelectionKey;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 public class CommandExecutor {
-    private static final String LOGIN = "login";
-    private static final String REGISTER = "register";
-    private static final String DEPOSIT = "deposit";
-    private static final String LIST_OFFERINGS = "list-offerings";
-    private static final String BUY = "buy";
-    private static final String SELL = "sell";
-    private static final String GET_WALLET_SUMMARY = "get-wallet-summary";
-    private static final String GET_WALLET_OVERALL_SUMMARY = "get-wallet-overall-summary";
-    private static final String HELP = "help";
-    private static final String SHUTDOWN = "shutdown";
-    private static final String DISCONNECT = "disconnect";
     private static final String UNKNOWN_COMMAND = "Unknown command.";
 
     private static final String INVALID_ARGUMENTS = "Invalid arguments";
+    private static final String TOO_MANY_ARGUMENTS =
+        "Too many arguments, at most " + CommandParser.MAX_ARGUMENTS + " are accepted.";
     private static final String SUCCESSFUL_OPERATION = "Transaction completed";
     private static final String MUST_LOGIN = "Log in first or create an account to perform this action.";
     private static final String ALREADY_LOGGED_IN = "You are already logged in.";
@@ -43,71 +48,143 @@ public class CommandExecutor {
     private static final String ACCOUNT_EXISTS = "Such account already exists";
     private static final String DISCONNECTED_SUCCESSFULLY = "Disconnected successfully.";
     private static final String SHUTDOWN_MESSAGE = "Server was shutdown.";
+    private static final String SUBSCRIBED_SUCCESSFULLY = "Subscribed to price updates.";
+    private static final String UNSUBSCRIBED_SUCCESSFULLY = "Unsubscribed from price updates.";
+    private static final String NO_PRICE_HISTORY = "No price history is recorded for this asset.";
+    private static final String EXPORT_NOT_ALLOWED = "Only administrators can export user data.";
+    private static final String EXPORT_RUNNING = "An export is already running.";
+    private static final String EXPORT_STARTED = "Export started, writing to ";
+    private static final String CHANGE_NOT_RECORDED = "The change could not be recorded. Try again later.";
+    private static final String HELP_MESSAGE = "Available commands: " + System.lineSeparator() +
+        "login {name} {password}" + System.lineSeparator() +
+        "register {name} {password}" + System.lineSeparator() +
+        "deposit {amount}" + System.lineSeparator() +
+        "list-offerings" + System.lineSeparator() +
+        "buy {id} {amount}" + System.lineSeparator() +
+        "sell {id}" + System.lineSeparator() +
+        "wallet-summary" + System.lineSeparator() +
+        "wallet-overall-summary" + System.lineSeparator() +
+        "subscribe {id...} (up to " + CommandParser.MAX_ARGUMENTS + " ids)" + System.lineSeparator() +
+        "unsubscribe" + System.lineSeparator() +
+        "price-history {id} {tick|minute|hour|day}" + System.lineSeparator() +
+        "export" + System.lineSeparator() +
+        "disconnect" + System.lineSeparator();
+    private static final List<String> CONSTANT_RESPONSES = List.of(UNKNOWN_COMMAND, INVALID_ARGUMENTS,
+        SUCCESSFUL_OPERATION, MUST_LOGIN, ALREADY_LOGGED_IN, NEGATIVE_AMOUNT, INVALID_AMOUNT_ARGUMENT,
+        INSUFFICIENT_AMOUNT, ASSET_DOES_NOT_EXIST, ASSET_NOT_PURCHASED, ACCOUNT_DOES_NOT_EXIST, INVALID_PASSWORD,
+        REGISTERED_SUCCESSFULLY, LOGGED_SUCCESSFULLY, ACCOUNT_EXISTS, DISCONNECTED_SUCCESSFULLY, SHUTDOWN_MESSAGE,
+        SUBSCRIBED_SUCCESSFULLY, UNSUBSCRIBED_SUCCESSFULLY, NO_PRICE_HISTORY, EXPORT_NOT_ALLOWED,
+        EXPORT_RUNNING, CHANGE_NOT_RECORDED, TOO_MANY_ARGUMENTS, HELP_MESSAGE);
 
     private static final int NUMBER_OF_ARGUMENTS_BUY_AND_LOGIN_AND_REGISTER = 2;
     private static final int NUMBER_OF_ARGUMENTS_DEPOSIT_AND_SELL = 1;
 
-    private final UserSet users;
+    private final UserRepository users;
     private final Set<User> currentlyInUse;
     private final AvailableAssets availableAssets;
+    private final PriceSubscriptions priceSubscriptions;
+    private final PriceHistory priceHistory;
+    private final UserExporter exporter;
+    private final Set<String> administrators;
 
-    public CommandExecutor(UserSet users, AvailableAssets availableAssets) {
+    public CommandExecutor(UserRepository users, AvailableAssets availableAssets) {
+        this(users, availableAssets, new PriceHistory());
+    }
+
+    public CommandExecutor(UserRepository users, AvailableAssets availableAssets, PriceHistory priceHistory) {
+        this(users, availableAssets, priceHistory, null, Set.of());
+    }
+
+    public CommandExecutor(UserRepository users, AvailableAssets availableAssets, PriceHistory priceHistory,
+                           UserExporter exporter, Set<String> administrators) {
         this.users = users;
         this.availableAssets = availableAssets;
-        this.currentlyInUse = new HashSet<>();
+        this.currentlyInUse = ConcurrentHashMap.newKeySet();
+        this.priceSubscriptions = new PriceSubscriptions();
+        this.priceHistory = priceHistory;
+        this.exporter = exporter;
+        this.administrators = Set.copyOf(administrators);
+        availableAssets.addUpdateListener(priceHistory);
     }
 
     public String execute(Command command, SelectionKey key) {
-        return switch (command.command()) {
-            case LOGIN -> login(command.arguments(), key);
+        return executeAsync(command, key).join();
+    }
+
+    // updates reply once their journal record is durable and trades may also wait for a quote, so neither blocks
+    public CompletableFuture<String> executeAsync(Command command, SelectionKey key) {
+        return switch (command.type()) {
+            case LOGIN -> reply(login(command.arguments(), key));
             case REGISTER -> register(command.arguments(), key);
-            case DEPOSIT -> deposit(command.arguments(), key);
-            case LIST_OFFERINGS -> listOfferings(key);
-            case BUY -> buy(command.arguments(), key);
+            case DEPOSIT -> deposit(command, key);
+            case LIST_OFFERINGS -> reply(listOfferings(key));
+            case BUY -> buy(command, key);
             case SELL -> sell(command.arguments(), key);
-            case GET_WALLET_SUMMARY -> getWalletSummary(key);
+            case GET_WALLET_SUMMARY -> reply(getWalletSummary(key));
             case GET_WALLET_OVERALL_SUMMARY -> getWalletOverallSummary(key);
-            case DISCONNECT -> disconnect(key);
-            case HELP -> help();
-            case SHUTDOWN -> SHUTDOWN_MESSAGE;
-            default -> UNKNOWN_COMMAND;
+            case SUBSCRIBE -> reply(subscribe(command, key));
+            case UNSUBSCRIBE -> reply(unsubscribe(command, key));
+            case PRICE_HISTORY -> reply(priceHistory(command, key));
+            case EXPORT -> reply(export(command, key));
+            case DISCONNECT -> reply(disconnect(key));
+            case HELP -> reply(help());
+            case SHUTDOWN -> reply(SHUTDOWN_MESSAGE);
+            case TOO_MANY_ARGUMENTS -> reply(TOO_MANY_ARGUMENTS);
+            case UNKNOWN -> reply(UNKNOWN_COMMAND);
         };
     }
 
+    private static CompletableFuture<String> reply(String response) {
+        return CompletableFuture.completedFuture(response);
+    }
+
+    public static List<String> getConstantResponses() {
+        return CONSTANT_RESPONSES;
+    }
+
     private String help() {
-        return "Available commands: " + System.lineSeparator() +
-            "login {name} {password}" + System.lineSeparator() +
-            "register {name} {password}" + System.lineSeparator() +
-            "deposit {amount}" + System.lineSeparator() +
-            "list-offerings" + System.lineSeparator() +
-            "buy {id} {amount}" + System.lineSeparator() +
-            "sell {id}" + System.lineSeparator() +
-            "wallet-summary" + System.lineSeparator() +
-            "wallet-overall-summary" + System.lineSeparator() +
-            "disconnect" + System.lineSeparator();
-    }
-
-    private String register(String[] args, SelectionKey key) {
+        return HELP_MESSAGE;
+    }
+
+    private CompletableFuture<String> register(String[] args, SelectionKey key) {
         if (key.attachment() != null) {
-            return ALREADY_LOGGED_IN;
+            return reply(ALREADY_LOGGED_IN);
         }
 
         if (args.length != NUMBER_OF_ARGUMENTS_BUY_AND_LOGIN_AND_REGISTER) {
-            return INVALID_ARGUMENTS;
+            return reply(INVALID_ARGUMENTS);
         }
 
         String username = args[0];
         String password = args[1];
 
+        CompletableFuture<Long> durable;
         try {
             User user = new User(username, password);
-            users.addUser(user);
+            users.create(user);
+            durable = journal(null, null, () -> JournalRecord.register(username, user.getPasswordHash()));
+            if (durable != null) {
+                durable = durable.whenComplete((lsn, e) -> {
+                    if (e != null) {
+                        unregister(username);
+                    }
+                });
+            }
         } catch (UserAlreadyExistsException e) {
             Logs.logErrorWithStackTrace(e.getStackTrace(), e.getMessage());
-            return ACCOUNT_EXISTS;
+            return reply(ACCOUNT_EXISTS);
         }
 
-        return REGISTERED_SUCCESSFULLY;
+        return whenDurable(durable, REGISTERED_SUCCESSFULLY);
+    }
+
+    private void unregister(String username) {
+        try {
+            users.remove(username);
+        } catch (RuntimeException e) {
+            Logs.logErrorWithStackTrace(e.getStackTrace(),
+                "Could not undo the registration of " + username + " after a journal failure.");
+        }
     }
 
     private String login(String[] args, SelectionKey key) {
@@ -120,18 +197,12 @@ public class CommandExecutor {
 
         String username = args[0];
         String password = args[1];
-        User curr = null;
-        for (User u : users.getUsers()) {
-            if (u.getUsername().equals(username)) {
-                curr = u;
-                break;
-            }
-        }
-
+        User curr = users.acquire(username);
         if (curr == null) {
             return ACCOUNT_DOES_NOT_EXIST;
         }
         if (!curr.passMatch(password)) {
+            users.release(curr);
             return INVALID_PASSWORD;
         }
 
@@ -141,6 +212,7 @@ public class CommandExecutor {
     }
 
     private String disconnect(SelectionKey key) {
+        priceSubscriptions.unsubscribe(key);
         if (key.attachment() == null) {
             return MUST_LOGIN;
         }
@@ -148,30 +220,47 @@ public class CommandExecutor {
         User user = (User) key.attachment();
         currentlyInUse.remove(user);
         key.attach(null);
+        users.release(user);
 
         return DISCONNECTED_SUCCESSFULLY;
     }
 
-    private String deposit(String[] args, SelectionKey key) {
+    private CompletableFuture<String> deposit(Command command, SelectionKey key) {
         if (key.attachment() == null) {
-            return MUST_LOGIN;
+            return reply(MUST_LOGIN);
         }
         User user = (User) key.attachment();
 
-        if (args.length != NUMBER_OF_ARGUMENTS_DEPOSIT_AND_SELL) {
-            return INVALID_ARGUMENTS;
+        if (command.argumentCount() != NUMBER_OF_ARGUMENTS_DEPOSIT_AND_SELL) {
+            return reply(INVALID_ARGUMENTS);
         }
 
+        CompletableFuture<Long> durable;
         try {
-            double amount = Double.parseDouble(args[0]);
-            user.getWallet().depositMoney(amount);
+            double amount = amount(command, 0);
+            Wallet wallet = user.getWallet();
+            synchronized (wallet) {
+                Wallet before = wallet.copy();
+                users.beforeUpdate(user);
+                wallet.depositMoney(amount);
+                durable = journal(user, before, () -> JournalRecord.deposit(user.getUsername(), amount));
+            }
         } catch (NumberFormatException | NullPointerException e) {
-            return INVALID_AMOUNT_ARGUMENT;
+            return reply(INVALID_AMOUNT_ARGUMENT);
         } catch (IllegalArgumentException e) {
-            return NEGATIVE_AMOUNT;
+            return reply(NEGATIVE_AMOUNT);
         }
 
-        return SUCCESSFUL_OPERATION;
+        return whenDurable(durable, SUCCESSFUL_OPERATION);
+    }
+
+    // Double.parseDouble also accepts NaN and Infinity, which no wallet can hold
+    private static double amount(Command command, int index) {
+        double amount = command.hasAmount() ? command.amount() : Double.parseDouble(command.arguments()[index]);
+        if (!Double.isFinite(amount)) {
+            throw new NumberFormatException("Amount is not a finite number.");
+        }
+        return amount;
     }
 
     private String listOfferings(SelectionKey key) {
@@ -182,54 +271,155 @@ public class CommandExecutor {
         return availableAssets.listOfferings();
     }
 
-    private String buy(String[] args, SelectionKey key) {
+    private CompletableFuture<String> buy(Command command, SelectionKey key) {
         if (key.attachment() == null) {
-            return MUST_LOGIN;
+            return reply(MUST_LOGIN);
         }
         User user = (User) key.attachment();
 
-        if (args.length != NUMBER_OF_ARGUMENTS_BUY_AND_LOGIN_AND_REGISTER) {
-            return INVALID_ARGUMENTS;
+        if (command.argumentCount() != NUMBER_OF_ARGUMENTS_BUY_AND_LOGIN_AND_REGISTER) {
+            return reply(INVALID_ARGUMENTS);
         }
 
+        String id = command.arguments()[0];
+        double amount;
         try {
-            String id = args[0];
-            double amount = Double.parseDouble(args[1]);
-            user.getWallet().buyAsset(id, amount, availableAssets);
+            amount = amount(command, 1);
         } catch (NumberFormatException | NullPointerException e) {
-            return INVALID_AMOUNT_ARGUMENT;
+            return reply(INVALID_AMOUNT_ARGUMENT);
+        }
+        // quotes cost upstream budget, so trades that cannot go through are refused before asking for one
+        if (amount < 0) {
+            return reply(NEGATIVE_AMOUNT);
+        }
+        if (amount > user.getWallet().getBalance()) {
+            return reply(INSUFFICIENT_AMOUNT);
+        }
+
+        // the quote is resolved before the wallet is locked and completes off the reactor when it is not cached
+        return whilePinned(user, () -> availableAssets.quote(id).thenCompose(quote -> buyAt(user, key, quote, amount)));
+    }
+
+    private CompletableFuture<String> buyAt(User user, SelectionKey key, Asset quote, double amount) {
+        if (key.attachment() != user) {
+            // the client disconnected while the quote was on its way
+            return reply(MUST_LOGIN);
+        }
+
+        CompletableFuture<Long> durable;
+        try {
+            Wallet wallet = user.getWallet();
+            synchronized (wallet) {
+                Wallet before = wallet.copy();
+                users.beforeUpdate(user);
+                Asset bought = wallet.buyAssetAt(quote, amount);
+                durable = journal(user, before, () -> JournalRecord.buy(user.getUsername(), bought.getAssetId(), amount,
+                    bought.getPrice()));
+            }
         } catch (IllegalArgumentException e) {
-            return NEGATIVE_AMOUNT;
+            return reply(NEGATIVE_AMOUNT);
         } catch (InsufficientBalanceException e) {
-            return INSUFFICIENT_AMOUNT;
+            return reply(INSUFFICIENT_AMOUNT);
         } catch (NoSuchAssetExistsException e) {
-            return ASSET_DOES_NOT_EXIST;
+            return reply(ASSET_DOES_NOT_EXIST);
         }
 
-        return SUCCESSFUL_OPERATION;
+        return whenDurable(durable, SUCCESSFUL_OPERATION);
     }
 
-    private String sell(String[] args, SelectionKey key) {
+    private CompletableFuture<String> sell(String[] args, SelectionKey key) {
         if (key.attachment() == null) {
-            return MUST_LOGIN;
+            return reply(MUST_LOGIN);
         }
         User user = (User) key.attachment();
 
         if (args.length != NUMBER_OF_ARGUMENTS_DEPOSIT_AND_SELL) {
-            return INVALID_ARGUMENTS;
+            return reply(INVALID_ARGUMENTS);
         }
 
         String id = args[0];
+        if (!user.getWallet().hasPurchased(id)) {
+            return reply(ASSET_NOT_PURCHASED);
+        }
+        return whilePinned(user, () -> availableAssets.quote(id).thenCompose(quote -> sellAt(user, key, id, quote)));
+    }
+
+    // the trade holds a pin of its own, so a disconnect while the quote is pending cannot evict the wallet it changes
+    private CompletableFuture<String> whilePinned(User user, Supplier<CompletableFuture<String>> trade) {
+        User pinned = users.acquire(user.getUsername());
+        try {
+            return trade.get().whenComplete((response, e) -> users.release(pinned));
+        } catch (RuntimeException e) {
+            users.release(pinned);
+            throw e;
+        }
+    }
+
+    private CompletableFuture<String> sellAt(User user, SelectionKey key, String id, Asset quote) {
+        if (key.attachment() != user) {
+            return reply(MUST_LOGIN);
+        }
 
+        CompletableFuture<Long> durable;
         try {
-            user.getWallet().sellAsset(id, availableAssets);
+            Wallet wallet = user.getWallet();
+            synchronized (wallet) {
+                Wallet before = wallet.copy();
+                users.beforeUpdate(user);
+                Asset sold = wallet.sellAssetAt(id, quote);
+                durable = journal(user, before, () -> JournalRecord.sell(user.getUsername(), id, sold.getPrice()));
+            }
         } catch (NoSuchAssetPurchasedException e) {
-            return ASSET_NOT_PURCHASED;
+            return reply(ASSET_NOT_PURCHASED);
         } catch (NoSuchAssetExistsException e) {
-            return ASSET_DOES_NOT_EXIST;
+            return reply(ASSET_DOES_NOT_EXIST);
+        }
+
+        return whenDurable(durable, SUCCESSFUL_OPERATION);
+    }
+
+    private CompletableFuture<Long> journal(User user, Wallet before, Supplier<JournalRecord> record) {
+        users.updateWallet(user);
+        WalletJournal journal = users.getJournal();
+        if (journal == null) {
+            return null;
+        }
+
+        CompletableFuture<Long> durable = journal.append(record.get());
+        if (user == null) {
+            return durable;
         }
 
-        return SUCCESSFUL_OPERATION;
+        // the last LSN read under the wallet lock is at least ours and below any later record of this wallet
+        Wallet wallet = user.getWallet();
+        wallet.markJournaled(journal.getLastLsn());
+        long journaledLsn = wallet.getLastLsn();
+        // a rejected append fails at once and is undone before the wallet lock is released
+        return durable.whenComplete((lsn, e) -> {
+            if (e != null) {
+                rollBack(user, before, journaledLsn);
+            }
+        });
+    }
+
+    private void rollBack(User user, Wallet before, long journaledLsn) {
+        Wallet wallet = user.getWallet();
+        synchronized (wallet) {
+            if (!wallet.rollBack(before, journaledLsn)) {
+                Logs.logErrorWithStackTrace(new StackTraceElement[0],
+                    "Could not roll back the wallet of " + user.getUsername() + " after a journal failure.");
+                return;
+            }
+            users.updateWallet(user);
+        }
+    }
+
+    // the reply is only released once the record is on disk, but nobody waits for the flush
+    private static CompletableFuture<String> whenDurable(CompletableFuture<Long> durable, String response) {
+        if (durable == null) {
+            return reply(response);
+        }
+        return durable.handle((lsn, e) -> e == null ? response : CHANGE_NOT_RECORDED);
     }
 
     private String getWalletSummary(SelectionKey key) {
@@ -241,16 +431,112 @@ public class CommandExecutor {
         return user.getWallet().getWalletSummary();
     }
 
-    private String getWalletOverallSummary(SelectionKey key) {
+    // holdings outside the snapshot are quoted first, so the summary never waits on the network under the lock
+    private CompletableFuture<String> getWalletOverallSummary(SelectionKey key) {
+        if (key.attachment() == null) {
+            return reply(MUST_LOGIN);
+        }
+
+        Wallet wallet = ((User) key.attachment()).getWallet();
+        Map<String, CompletableFuture<Asset>> pending = new HashMap<>();
+        for (String id : wallet.getPurchasedIds()) {
+            pending.put(id, availableAssets.quote(id));
+        }
+
+        return CompletableFuture.allOf(pending.values().toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            Map<String, Asset> quotes = new HashMap<>();
+            pending.forEach((id, quote) -> {
+                Asset asset = quote.join();
+                if (asset != null) {
+                    quotes.put(id, asset);
+                }
+            });
+            return wallet.getWalletOverallSummary(quotes);
+        });
+    }
+
+    private String subscribe(Command command, SelectionKey key) {
+        if (key.attachment() == null) {
+            return MUST_LOGIN;
+        }
+
+        if (command.argumentCount() == 0) {
+            return INVALID_ARGUMENTS;
+        }
+        if (command.argumentCount() > CommandParser.MAX_ARGUMENTS) {
+            return TOO_MANY_ARGUMENTS;
+        }
+
+        // only assets in the refreshed snapshot are ever pushed, so on-demand quotes do not count here
+        AssetSnapshot snapshot = availableAssets.getSnapshot();
+        for (String id : command.arguments()) {
+            if (snapshot.find(id) == null) {
+                return ASSET_DOES_NOT_EXIST;
+            }
+        }
+
+        priceSubscriptions.subscribe(key, List.of(command.arguments()));
+        return SUBSCRIBED_SUCCESSFULLY;
+    }
+
+    private String unsubscribe(Command command, SelectionKey key) {
         if (key.attachment() == null) {
             return MUST_LOGIN;
         }
 
+        if (command.argumentCount() != 0) {
+            return INVALID_ARGUMENTS;
+        }
+
+        priceSubscriptions.unsubscribe(key);
+        return UNSUBSCRIBED_SUCCESSFULLY;
+    }
+
+    private String priceHistory(Command command, SelectionKey key) {
+        if (key.attachment() == null) {
+            return MUST_LOGIN;
+        }
+
+        if (command.argumentCount() != NUMBER_OF_ARGUMENTS_BUY_AND_LOGIN_AND_REGISTER) {
+            return INVALID_ARGUMENTS;
+        }
+
+        CandleInterval interval = CandleInterval.fromName(command.arguments()[1]);
+        if (interval == null) {
+            return INVALID_ARGUMENTS;
+        }
+
+        String history = priceHistory.listPriceHistory(command.arguments()[0], interval);
+        return history == null ? NO_PRICE_HISTORY : history;
+    }
+
+    // the export runs in the background, so the reactor answers at once while trading carries on
+    private String export(Command command, SelectionKey key) {
+        if (key.attachment() == null) {
+            return MUST_LOGIN;
+        }
+        if (command.argumentCount() != 0) {
+            return INVALID_ARGUMENTS;
+        }
+
         User user = (User) key.attachment();
-        return user.getWallet().getWalletOverallSummary(availableAssets);
+        if (exporter == null || !administrators.contains(user.getUsername())) {
+            return EXPORT_NOT_ALLOWED;
+        }
+
+        UserExporter.Export export = exporter.startExport();
+        return export == null ? EXPORT_RUNNING : EXPORT_STARTED + export.path();
     }
 
     public AvailableAssets getAvailableAssets() {
         return availableAssets;
     }
+
+    public PriceSubscriptions getPriceSubscriptions() {
+        return priceSubscriptions;
+    }
+
+    public PriceHistory getPriceHistory() {
+        return priceHistory;
+    }
 }
@@ -0,0 +1,146 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.command;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class CommandParser {
+    public static final int MAX_ARGUMENTS = 8;
+
+    private static final byte DELIMITER = ' ';
+    private static final int TOO_MANY_TOKENS = -1;
+    private static final int MAX_EXACT_DIGITS = 15;
+    private static final String[] NO_ARGUMENTS = new String[0];
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final int[] tokenStarts;
+    private final int[] tokenEnds;
+
+    public CommandParser() {
+        tokenStarts = new int[MAX_ARGUMENTS + 1];
+        tokenEnds = new int[MAX_ARGUMENTS + 1];
+    }
+
+    public Command parse(ByteBuffer buffer) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("Buffer cannot be null.");
+        }
+
+        Command command = parse(buffer, buffer.position(), buffer.limit());
+        buffer.position(buffer.limit());
+        return command;
+    }
+
+    public Command parse(ByteBuffer buffer, int start, int end) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("Buffer cannot be null.");
+        }
+
+        int tokenCount = tokenize(buffer, start, end);
+        if (tokenCount == 0) {
+            return new Command("", null);
+        }
+
+        CommandType type = CommandType.fromBytes(buffer, tokenStarts[0], tokenEnds[0]);
+        String name = type == CommandType.UNKNOWN
+            ? decode(buffer, tokenStarts[0], tokenEnds[0]) : type.getName();
+        if (tokenCount == TOO_MANY_TOKENS) {
+            // the extra arguments are rejected as a whole rather than glued onto the last one
+            return new Command(name, null, type == CommandType.UNKNOWN ? type : CommandType.TOO_MANY_ARGUMENTS,
+                Command.NO_AMOUNT);
+        }
+        if (tokenCount == 1) {
+            return new Command(name, null, type, Command.NO_AMOUNT);
+        }
+
+        int numericIndex = type.getNumericArgumentIndex();
+        double amount = Command.NO_AMOUNT;
+        if (numericIndex >= 0 && numericIndex + 1 < tokenCount) {
+            amount = parseAmount(buffer, tokenStarts[numericIndex + 1], tokenEnds[numericIndex + 1]);
+        }
+
+        int stringCount = Double.isNaN(amount) ? tokenCount - 1 : tokenCount - 2;
+        String[] arguments = stringCount == 0 ? NO_ARGUMENTS : new String[stringCount];
+        int next = 0;
+        for (int i = 1; i < tokenCount; i++) {
+            if (i - 1 == numericIndex && !Double.isNaN(amount)) {
+                continue;
+            }
+            arguments[next++] = decode(buffer, tokenStarts[i], tokenEnds[i]);
+        }
+
+        return new Command(name, arguments, type, amount);
+    }
+
+    private int tokenize(ByteBuffer buffer, int from, int to) {
+        int count = 0;
+        int i = from;
+        while (i < to) {
+            while (i < to && buffer.get(i) == DELIMITER) {
+                i++;
+            }
+            if (i == to) {
+                break;
+            }
+
+            int start = i;
+            while (i < to && buffer.get(i) != DELIMITER) {
+                i++;
+            }
+
+            if (count == tokenStarts.length) {
+                return TOO_MANY_TOKENS;
+            }
+            tokenStarts[count] = start;
+            tokenEnds[count] = i;
+            count++;
+        }
+
+        return count;
+    }
+
+    private static double parseAmount(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean seenPoint = false;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '.' && !seenPoint) {
+                seenPoint = true;
+            } else if (b >= '0' && b <= '9') {
+                if (++digits > MAX_EXACT_DIGITS) {
+                    return Command.NO_AMOUNT;
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if (seenPoint) {
+                    fractionDigits++;
+                }
+            } else {
+                return Command.NO_AMOUNT;
+            }
+        }
+
+        if (digits == 0) {
+            return Command.NO_AMOUNT;
+        }
+
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    private static String decode(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,90 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.command;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+public enum CommandType {
+    LOGIN("login"),
+    REGISTER("register"),
+    DEPOSIT("deposit", 0),
+    LIST_OFFERINGS("list-offerings"),
+    BUY("buy", 1),
+    SELL("sell"),
+    GET_WALLET_SUMMARY("get-wallet-summary"),
+    GET_WALLET_OVERALL_SUMMARY("get-wallet-overall-summary"),
+    SUBSCRIBE("subscribe"),
+    UNSUBSCRIBE("unsubscribe"),
+    PRICE_HISTORY("price-history"),
+    EXPORT("export"),
+    HELP("help"),
+    SHUTDOWN("shutdown"),
+    DISCONNECT("disconnect"),
+    // a known command with more arguments than the parser keeps; it has no name of its own
+    TOO_MANY_ARGUMENTS(null),
+    UNKNOWN(null);
+
+    private static final int NO_NUMERIC_ARGUMENT = -1;
+    private static final CommandType[] KNOWN_TYPES;
+    private static final Map<String, CommandType> BY_NAME;
+
+    static {
+        KNOWN_TYPES = new CommandType[values().length - 2];
+        BY_NAME = new HashMap<>();
+        int i = 0;
+        for (CommandType type : values()) {
+            if (type.name != null) {
+                KNOWN_TYPES[i++] = type;
+                BY_NAME.put(type.name, type);
+            }
+        }
+    }
+
+    private final String name;
+    private final byte[] nameBytes;
+    private final int numericArgumentIndex;
+
+    CommandType(String name) {
+        this(name, NO_NUMERIC_ARGUMENT);
+    }
+
+    CommandType(String name, int numericArgumentIndex) {
+        this.name = name;
+        this.nameBytes = name == null ? null : name.getBytes(StandardCharsets.US_ASCII);
+        this.numericArgumentIndex = numericArgumentIndex;
+    }
+
+    public static CommandType fromName(String name) {
+        return name == null ? UNKNOWN : BY_NAME.getOrDefault(name, UNKNOWN);
+    }
+
+    public static CommandType fromBytes(ByteBuffer buffer, int start, int end) {
+        int length = end - start;
+        for (CommandType type : KNOWN_TYPES) {
+            if (type.nameBytes.length == length && type.matches(buffer, start)) {
+                return type;
+            }
+        }
+
+        return UNKNOWN;
+    }
+
+    private boolean matches(ByteBuffer buffer, int start) {
+        for (int i = 0; i < nameBytes.length; i++) {
+            if (buffer.get(start + i) != nameBytes[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getNumericArgumentIndex() {
+        return numericArgumentIndex;
+    }
+}
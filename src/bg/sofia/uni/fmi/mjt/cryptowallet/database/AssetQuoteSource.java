@@ -0,0 +1,10 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+
+import java.util.concurrent.CompletableFuture;
+
+@FunctionalInterface
+public interface AssetQuoteSource {
+    CompletableFuture<Asset> quoteAsync(String assetId);
+}
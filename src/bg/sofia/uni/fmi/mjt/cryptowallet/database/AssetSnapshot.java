@@ -0,0 +1,106 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public final class AssetSnapshot {
+    private final long version;
+    private final Instant fetchedAt;
+    private final Map<String, Asset> assetsById;
+    private final Set<Asset> assets;
+    private final List<Asset> assetsSortedById;
+    private final OfferingsSnapshot offerings;
+    private final boolean restored;
+
+    public AssetSnapshot(long version, Instant fetchedAt, Collection<Asset> assets) {
+        this(version, fetchedAt, assets, false);
+    }
+
+    private AssetSnapshot(long version, Instant fetchedAt, Collection<Asset> assets, boolean restored) {
+        if (fetchedAt == null || assets == null) {
+            throw new IllegalArgumentException("Fetch time and assets cannot be null.");
+        }
+
+        Map<String, Asset> index = new HashMap<>();
+        for (Asset asset : assets) {
+            index.put(asset.getAssetId(), asset);
+        }
+
+        this.version = version;
+        this.fetchedAt = fetchedAt;
+        this.assetsById = Map.copyOf(index);
+        this.assets = Set.copyOf(index.values());
+        this.assetsSortedById = index.values().stream()
+            .sorted(Comparator.comparing(Asset::getAssetId)).toList();
+        this.restored = restored;
+        this.offerings = new OfferingsSnapshot(version, renderOfferings(assetsSortedById,
+            restored ? fetchedAt : null));
+    }
+
+    public static AssetSnapshot empty() {
+        return new AssetSnapshot(0, Instant.EPOCH, List.of());
+    }
+
+    public static AssetSnapshot restored(long version, Instant fetchedAt, Collection<Asset> assets) {
+        return new AssetSnapshot(version, fetchedAt, assets, true);
+    }
+
+    public Asset find(String id) {
+        return id == null ? null : assetsById.get(id);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Instant getFetchedAt() {
+        return fetchedAt;
+    }
+
+    public Set<Asset> getAssets() {
+        return assets;
+    }
+
+    public List<Asset> getAssetsSortedById() {
+        return assetsSortedById;
+    }
+
+    public int size() {
+        return assetsById.size();
+    }
+
+    public OfferingsSnapshot getOfferings() {
+        return offerings;
+    }
+
+    public boolean isRestored() {
+        return restored;
+    }
+
+    public Duration getAge(Instant now) {
+        return Duration.between(fetchedAt, now);
+    }
+
+    private static String renderOfferings(List<Asset> assets, Instant cachedAt) {
+        StringBuilder sb = new StringBuilder();
+        if (cachedAt == null) {
+            sb.append("Available offerings: ").append(System.lineSeparator());
+        } else {
+            sb.append("Available offerings (cached prices from ").append(cachedAt).append("): ")
+                .append(System.lineSeparator());
+        }
+        for (Asset asset : assets) {
+            sb.append(asset.getAssetInfoString()).append(System.lineSeparator());
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+public class AssetSnapshotStore {
+    private static final int MAGIC = 0x43574153;
+    private static final byte FORMAT_VERSION = 1;
+    private static final int CHECKSUM_SIZE = Long.BYTES;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path path;
+
+    public AssetSnapshotStore(Path path) {
+        if (path == null) {
+            throw new IllegalArgumentException("Snapshot path cannot be null.");
+        }
+
+        this.path = path;
+    }
+
+    public void save(AssetSnapshot snapshot) throws IOException {
+        if (snapshot == null) {
+            throw new IllegalArgumentException("Snapshot cannot be null.");
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(snapshot.getVersion());
+            out.writeLong(snapshot.getFetchedAt().toEpochMilli());
+            out.writeInt(snapshot.size());
+            for (Asset asset : snapshot.getAssetsSortedById()) {
+                out.writeUTF(asset.getAssetId());
+                out.writeUTF(asset.getName() == null ? "" : asset.getName());
+                out.writeBoolean(asset.isCrypto());
+                out.writeDouble(asset.getPrice());
+            }
+            out.writeLong(checksum(bytes.toByteArray(), bytes.size()));
+        }
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = path.resolveSibling(path.getFileName() + TEMP_SUFFIX);
+        Files.write(temp, bytes.toByteArray());
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public Optional<AssetSnapshot> load() throws IOException {
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+
+        byte[] data = Files.readAllBytes(path);
+        if (data.length < CHECKSUM_SIZE
+            || ByteBuffer.wrap(data, data.length - CHECKSUM_SIZE, CHECKSUM_SIZE).getLong()
+            != checksum(data, data.length - CHECKSUM_SIZE)) {
+            throw new IOException("Asset snapshot " + path + " is corrupt.");
+        }
+
+        try (DataInputStream in = new DataInputStream(
+            new ByteArrayInputStream(data, 0, data.length - CHECKSUM_SIZE))) {
+            if (in.readInt() != MAGIC || in.readByte() != FORMAT_VERSION) {
+                throw new IOException("Asset snapshot " + path + " has an unsupported format.");
+            }
+
+            long version = in.readLong();
+            Instant fetchedAt = Instant.ofEpochMilli(in.readLong());
+            int count = in.readInt();
+            List<Asset> assets = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String id = in.readUTF();
+                String name = in.readUTF();
+                int isCrypto = in.readBoolean() ? 1 : 0;
+                assets.add(new Asset(id, name, isCrypto, in.readDouble()));
+            }
+
+            return Optional.of(AssetSnapshot.restored(version, fetchedAt, assets));
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    private static long checksum(byte[] data, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,14 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+
+import java.util.List;
+
+@FunctionalInterface
+public interface AssetsUpdateListener {
+    void onAssetsUpdated(List<Asset> changedAssets);
+
+    // called after every refresh, including the ones that changed no price
+    default void onSnapshotRefreshed(AssetSnapshot snapshot) {
+    }
+}
@@ -2,16 +2,42 @@ package bg.sofia.uni.fmi.mjt.cryptowallet.database;
 
 import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
 
-import java.util.HashSet;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class AvailableAssets {
-    private static final int MAX_ASSET_COUNT = 100;
-    private static Set<Asset> availableAssets;
+    public static final int DEFAULT_MAX_ASSET_COUNT = 100;
+
+    private final int maxAssetCount;
+    private final Clock clock;
+    private final List<AssetsUpdateListener> updateListeners;
+    private volatile AssetSnapshot snapshot;
+    private volatile AssetQuoteSource quoteSource;
 
     public AvailableAssets() {
-        availableAssets = new HashSet<>();
+        this(DEFAULT_MAX_ASSET_COUNT);
+    }
+
+    public AvailableAssets(int maxAssetCount) {
+        this(maxAssetCount, Clock.systemUTC());
+    }
+
+    public AvailableAssets(int maxAssetCount, Clock clock) {
+        if (maxAssetCount <= 0) {
+            throw new IllegalArgumentException("Maximum asset count must be positive.");
+        }
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock cannot be null.");
+        }
+
+        this.maxAssetCount = maxAssetCount;
+        this.clock = clock;
+        this.updateListeners = new CopyOnWriteArrayList<>();
+        this.snapshot = AssetSnapshot.empty();
     }
 
     public void updateAvailableAssets(Set<Asset> toUpdate) {
@@ -19,42 +45,106 @@ public class AvailableAssets {
             throw new IllegalArgumentException("AssetSet cannot be null.");
         }
 
-        availableAssets = toUpdate.stream().filter(Asset::isCrypto)
-            .limit(MAX_ASSET_COUNT).collect(Collectors.toSet());
+        List<Asset> changed;
+        AssetSnapshot updated;
+        synchronized (this) {
+            AssetSnapshot previous = snapshot;
+            updated = new AssetSnapshot(previous.getVersion() + 1, clock.instant(),
+                toUpdate.stream().filter(Asset::isCrypto).limit(maxAssetCount).toList());
+            changed = findChangedAssets(previous, updated);
+            snapshot = updated;
+        }
+
+        for (AssetsUpdateListener listener : updateListeners) {
+            if (!changed.isEmpty()) {
+                listener.onAssetsUpdated(changed);
+            }
+            listener.onSnapshotRefreshed(updated);
+        }
+    }
+
+    public synchronized boolean restore(AssetSnapshot persisted) {
+        if (persisted == null) {
+            throw new IllegalArgumentException("Snapshot cannot be null.");
+        }
+        if (snapshot.getVersion() != 0) {
+            return false;
+        }
+
+        snapshot = AssetSnapshot.restored(persisted.getVersion(), persisted.getFetchedAt(),
+            persisted.getAssets().stream().limit(maxAssetCount).toList());
+        return true;
+    }
+
+    public void addUpdateListener(AssetsUpdateListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null.");
+        }
+
+        updateListeners.add(listener);
+    }
+
+    public void removeUpdateListener(AssetsUpdateListener listener) {
+        updateListeners.remove(listener);
+    }
+
+    private static List<Asset> findChangedAssets(AssetSnapshot previous, AssetSnapshot updated) {
+        List<Asset> changed = new ArrayList<>();
+        for (Asset asset : updated.getAssetsSortedById()) {
+            Asset old = previous.find(asset.getAssetId());
+            if (old == null || old.getPrice() != asset.getPrice()) {
+                changed.add(asset);
+            }
+        }
+
+        return changed;
     }
 
     public String listAvailableAssets() {
         StringBuilder res = new StringBuilder();
         res.append("Available assets to purchase: ").append(System.lineSeparator());
-        for (var asset: availableAssets) {
+        for (var asset : snapshot.getAssetsSortedById()) {
             res.append(asset.getAssetInfoString());
         }
         return res.toString();
     }
 
     public Asset find(String id) {
-        Asset res = null;
-        for (var asset : availableAssets) {
-            if (asset.getAssetId().equals(id)) {
-                res = asset;
-                break;
-            }
+        return snapshot.find(id);
+    }
+
+    // snapshot hits complete at once; other ids are quoted on demand and complete with null when nothing is known
+    public CompletableFuture<Asset> quote(String id) {
+        Asset asset = snapshot.find(id);
+        AssetQuoteSource source = quoteSource;
+        if (asset != null || id == null || source == null) {
+            return CompletableFuture.completedFuture(asset);
         }
 
-        return res;
+        return source.quoteAsync(id);
+    }
+
+    public void setQuoteSource(AssetQuoteSource quoteSource) {
+        this.quoteSource = quoteSource;
     }
 
     public String listOfferings() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("Available offerings: ").append(System.lineSeparator());
-        for (Asset asset : availableAssets) {
-            sb.append(asset.getAssetInfoString()).append(System.lineSeparator());
-        }
+        return snapshot.getOfferings().getText();
+    }
+
+    public OfferingsSnapshot getOfferingsSnapshot() {
+        return snapshot.getOfferings();
+    }
+
+    public AssetSnapshot getSnapshot() {
+        return snapshot;
+    }
 
-        return sb.toString();
+    public int getMaxAssetCount() {
+        return maxAssetCount;
     }
 
     public Set<Asset> getAvailableAssets() {
-        return availableAssets;
+        return snapshot.getAssets();
     }
 }
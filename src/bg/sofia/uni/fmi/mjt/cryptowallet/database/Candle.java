@@ -0,0 +1,10 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.database;
+
+import java.time.Instant;
+
+public record Candle(Instant start, double open, double high, double low, double close) {
+    public String getCandleInfoString() {
+        return start + " open: " + open + " high: " + high + " low: " + low + " close: " + close + ";" +
+            System.lineSeparator();
+    }
+}
@@ -0,0 +1,45 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.database;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public enum CandleInterval {
+    TICK("tick", 0, 256),
+    MINUTE("minute", 60_000L, 360),
+    HOUR("hour", 3_600_000L, 336),
+    DAY("day", 86_400_000L, 365);
+
+    private static final Map<String, CandleInterval> BY_NAME = new HashMap<>();
+
+    static {
+        for (CandleInterval interval : values()) {
+            BY_NAME.put(interval.name, interval);
+        }
+    }
+
+    private final String name;
+    private final long bucketMillis;
+    private final int capacity;
+
+    CandleInterval(String name, long bucketMillis, int capacity) {
+        this.name = name;
+        this.bucketMillis = bucketMillis;
+        this.capacity = capacity;
+    }
+
+    public static CandleInterval fromName(String name) {
+        return name == null ? null : BY_NAME.get(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
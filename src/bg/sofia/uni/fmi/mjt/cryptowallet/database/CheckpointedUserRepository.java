@@ -0,0 +1,224 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import bg.sofia.uni.fmi.mjt.cryptowallet.wallet.Wallet;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// backends that change wallets in memory, log every change to the wallet journal and persist users at checkpoints
+public abstract class CheckpointedUserRepository implements UserRepository {
+
+    // users changed after the cut leave their state at the cut behind; users registered after it are skipped
+    static final class Snapshot {
+        private final Map<String, User> preImages = new ConcurrentHashMap<>();
+        private final Set<String> created = ConcurrentHashMap.newKeySet();
+
+        User preImage(String username) {
+            return preImages.get(username);
+        }
+
+        boolean isCreated(String username) {
+            return created.contains(username);
+        }
+
+        // the wallet lock waits out an update that started before the cut and so left no pre-image
+        User stateOf(User user) {
+            synchronized (user.getWallet()) {
+                User preImage = preImages.get(user.getUsername());
+                return preImage == null ? user.snapshot() : preImage;
+            }
+        }
+    }
+
+    private final WalletJournal journal;
+    private final Object snapshotLock = new Object();
+    private volatile Snapshot snapshot;
+    private volatile long checkpointLsn;
+    private volatile ScheduledExecutorService checkpointExecutor;
+
+    CheckpointedUserRepository(WalletJournal journal) {
+        this.journal = journal;
+    }
+
+    public abstract User getUser(String username);
+
+    // writes every change up to lsn to the backing files
+    abstract void persist(long lsn);
+
+    abstract boolean isPersisted();
+
+    abstract void applyRegistration(User registered);
+
+    // walks the users as of the cut, which the implementation marks by calling beginSnapshot
+    abstract void walkSnapshot(Snapshot active, Consumer<User> consumer);
+
+    void closeStorage() {
+    }
+
+    void recoverJournal() {
+        if (journal == null) {
+            return;
+        }
+
+        try {
+            journal.recover(checkpointLsn, this::apply);
+        } catch (IOException e) {
+            throw new IllegalStateException("A problem occurred while replaying the wallet journal", e);
+        }
+    }
+
+    void setCheckpointLsn(long lsn) {
+        checkpointLsn = lsn;
+    }
+
+    public void scheduleCheckpoints(Duration interval) {
+        if (journal == null) {
+            throw new IllegalStateException("Checkpoints need a wallet journal.");
+        }
+        if (interval == null || interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive.");
+        }
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            task -> Thread.ofPlatform().daemon().name("user-checkpoint").unstarted(task));
+        executor.scheduleWithFixedDelay(this::runCheckpoint, interval.toMillis(), interval.toMillis(),
+            TimeUnit.MILLISECONDS);
+        checkpointExecutor = executor;
+    }
+
+    public synchronized long checkpoint() {
+        if (journal == null) {
+            persist(checkpointLsn);
+            return checkpointLsn;
+        }
+
+        long lsn = journal.rotate().join();
+        if (lsn == checkpointLsn && isPersisted()) {
+            return lsn;
+        }
+
+        persist(lsn);
+        checkpointLsn = lsn;
+        try {
+            journal.deleteSegmentsUpTo(lsn);
+        } catch (IOException e) {
+            Logs.logErrorWithStackTrace(e.getStackTrace(), "Could not delete checkpointed journal segments.");
+        }
+        return lsn;
+    }
+
+    public long getCheckpointLsn() {
+        return checkpointLsn;
+    }
+
+    private void runCheckpoint() {
+        try {
+            checkpoint();
+        } catch (RuntimeException e) {
+            Logs.logErrorWithStackTrace(e.getStackTrace(), "Background checkpoint failed.");
+        }
+    }
+
+    @Override
+    public void close() {
+        ScheduledExecutorService executor = checkpointExecutor;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+
+        try {
+            checkpoint();
+        } catch (RuntimeException e) {
+            // a failed journal cannot rotate; the durable records are replayed on the next start instead
+            Logs.logErrorWithStackTrace(e.getStackTrace(), "Final checkpoint failed.");
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                Logs.logErrorWithStackTrace(e.getStackTrace(), "Could not close the wallet journal.");
+            }
+        }
+        closeStorage();
+    }
+
+    public void apply(JournalRecord record) {
+        if (record.type() == JournalRecord.Type.REGISTER) {
+            applyRegistration(User.withPasswordHash(record.username(), record.text()));
+            return;
+        }
+
+        User user = getUser(record.username());
+        if (user == null) {
+            Logs.logErrorWithStackTrace(new StackTraceElement[0],
+                "Journal record " + record.lsn() + " refers to unknown user " + record.username() + ".");
+            return;
+        }
+
+        Wallet wallet = user.getWallet();
+        if (record.lsn() <= wallet.getLastLsn()) {
+            return;
+        }
+
+        switch (record.type()) {
+            case DEPOSIT -> wallet.depositMoney(record.amount());
+            case BUY -> wallet.applyPurchase(record.text(), record.amount(), record.price());
+            case SELL -> wallet.applySale(record.text(), record.price());
+            default -> throw new IllegalStateException("Unexpected journal record type " + record.type());
+        }
+        wallet.markJournaled(record.lsn());
+        updateWallet(user);
+    }
+
+    @Override
+    public User findByUsername(String username) {
+        return getUser(username);
+    }
+
+    @Override
+    public void forEachInSnapshot(Consumer<User> consumer) {
+        if (consumer == null) {
+            throw new IllegalArgumentException("Consumer cannot be null.");
+        }
+
+        synchronized (snapshotLock) {
+            try {
+                walkSnapshot(new Snapshot(), consumer);
+            } finally {
+                snapshot = null;
+            }
+        }
+    }
+
+    void beginSnapshot(Snapshot active) {
+        snapshot = active;
+    }
+
+    @Override
+    public void beforeUpdate(User user) {
+        Snapshot active = snapshot;
+        if (active != null && user != null && !active.created.contains(user.getUsername())) {
+            active.preImages.computeIfAbsent(user.getUsername(), username -> user.snapshot());
+        }
+    }
+
+    void markCreated(User user) {
+        Snapshot active = snapshot;
+        if (active != null) {
+            active.created.add(user.getUsername());
+        }
+    }
+
+    @Override
+    public WalletJournal getJournal() {
+        return journal;
+    }
+}
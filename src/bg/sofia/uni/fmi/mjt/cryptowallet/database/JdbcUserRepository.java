@@ -0,0 +1,267 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.exception.UserAlreadyExistsException;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import bg.sofia.uni.fmi.mjt.cryptowallet.wallet.Wallet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// wallets are stored as UserCodec blobs; every update is written through, so no journal is needed
+public class JdbcUserRepository implements UserRepository {
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS wallet_users ("
+        + "username VARCHAR(255) PRIMARY KEY, password_hash VARCHAR(512) NOT NULL, wallet BLOB NOT NULL)";
+    private static final String SELECT_USER = "SELECT password_hash, wallet FROM wallet_users WHERE username = ?";
+    private static final String INSERT_USER =
+        "INSERT INTO wallet_users (username, password_hash, wallet) VALUES (?, ?, ?)";
+    private static final String UPDATE_WALLET = "UPDATE wallet_users SET wallet = ? WHERE username = ?";
+    private static final String DELETE_USER = "DELETE FROM wallet_users WHERE username = ?";
+    private static final String SELECT_BATCH = "SELECT username, password_hash, wallet FROM wallet_users "
+        + "WHERE username > ? ORDER BY username LIMIT ?";
+    private static final String SELECT_ALL = "SELECT username, password_hash, wallet FROM wallet_users";
+    private static final int SNAPSHOT_FETCH_SIZE = 1000;
+    private static final String INTEGRITY_VIOLATION_STATE = "23";
+
+    private static final class Session {
+        private final User user;
+        private int pins;
+
+        private Session(User user) {
+            this.user = user;
+        }
+    }
+
+    private final String jdbcUrl;
+    private final Connection connection;
+    private final PreparedStatement selectUser;
+    private final PreparedStatement insertUser;
+    private final PreparedStatement updateWallet;
+    private final PreparedStatement deleteUser;
+    private final PreparedStatement selectBatch;
+    private final Map<String, Session> sessions;
+
+    public JdbcUserRepository(String jdbcUrl) throws SQLException {
+        if (jdbcUrl == null) {
+            throw new IllegalArgumentException("JDBC url cannot be null.");
+        }
+
+        this.jdbcUrl = jdbcUrl;
+        this.connection = DriverManager.getConnection(jdbcUrl);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_TABLE);
+            this.selectUser = connection.prepareStatement(SELECT_USER);
+            this.insertUser = connection.prepareStatement(INSERT_USER);
+            this.updateWallet = connection.prepareStatement(UPDATE_WALLET);
+            this.deleteUser = connection.prepareStatement(DELETE_USER);
+            this.selectBatch = connection.prepareStatement(SELECT_BATCH);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        this.sessions = new HashMap<>();
+    }
+
+    @Override
+    public synchronized User findByUsername(String username) {
+        if (username == null) {
+            return null;
+        }
+
+        Session session = sessions.get(username);
+        return session != null ? session.user : load(username);
+    }
+
+    @Override
+    public synchronized void create(User user) throws UserAlreadyExistsException {
+        if (user == null || user.getUsername() == null) {
+            throw new IllegalArgumentException("User and username cannot be null.");
+        }
+        if (sessions.containsKey(user.getUsername()) || load(user.getUsername()) != null) {
+            throw new UserAlreadyExistsException("User already exists.");
+        }
+
+        try {
+            insertUser.setString(1, user.getUsername());
+            insertUser.setString(2, user.getPasswordHash());
+            insertUser.setBytes(3, encode(user.getWallet()));
+            insertUser.executeUpdate();
+        } catch (SQLException e) {
+            if (e.getSQLState() != null && e.getSQLState().startsWith(INTEGRITY_VIOLATION_STATE)) {
+                throw new UserAlreadyExistsException("User already exists.");
+            }
+            throw new IllegalStateException("A problem occurred while inserting user " + user.getUsername(), e);
+        }
+    }
+
+    @Override
+    public synchronized void remove(String username) {
+        if (username == null) {
+            return;
+        }
+
+        sessions.remove(username);
+        try {
+            deleteUser.setString(1, username);
+            deleteUser.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("A problem occurred while removing user " + username, e);
+        }
+    }
+
+    @Override
+    public synchronized void updateWallet(User user) {
+        if (user == null) {
+            return;
+        }
+
+        try {
+            updateWallet.setBytes(1, encode(user.getWallet()));
+            updateWallet.setString(2, user.getUsername());
+            updateWallet.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("A problem occurred while updating user " + user.getUsername(), e);
+        }
+    }
+
+    @Override
+    public void forEachBatch(int batchSize, Consumer<List<User>> consumer) {
+        if (batchSize <= 0 || consumer == null) {
+            throw new IllegalArgumentException("Batch size must be positive and consumer cannot be null.");
+        }
+
+        String after = "";
+        List<User> batch;
+        do {
+            batch = readBatch(after, batchSize);
+            if (!batch.isEmpty()) {
+                consumer.accept(batch);
+                after = batch.get(batch.size() - 1).getUsername();
+            }
+        } while (batch.size() == batchSize);
+    }
+
+    // a single query in its own read-only transaction sees one MVCC snapshot and never blocks the writers
+    @Override
+    public void forEachInSnapshot(Consumer<User> consumer) {
+        if (consumer == null) {
+            throw new IllegalArgumentException("Consumer cannot be null.");
+        }
+
+        try (Connection reader = DriverManager.getConnection(jdbcUrl)) {
+            reader.setAutoCommit(false);
+            reader.setReadOnly(true);
+            try (Statement statement = reader.createStatement()) {
+                statement.setFetchSize(SNAPSHOT_FETCH_SIZE);
+                try (ResultSet rows = statement.executeQuery(SELECT_ALL)) {
+                    while (rows.next()) {
+                        consumer.accept(User.withPasswordHash(rows.getString(1), rows.getString(2),
+                            decode(rows.getBytes(3))));
+                    }
+                }
+            } finally {
+                reader.rollback();
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("A problem occurred while reading a snapshot of the users", e);
+        }
+    }
+
+    @Override
+    public synchronized User acquire(String username) {
+        if (username == null) {
+            return null;
+        }
+
+        Session session = sessions.get(username);
+        if (session == null) {
+            User user = load(username);
+            if (user == null) {
+                return null;
+            }
+            session = new Session(user);
+            sessions.put(username, session);
+        }
+        session.pins++;
+        return session.user;
+    }
+
+    @Override
+    public synchronized void release(User user) {
+        if (user == null) {
+            return;
+        }
+
+        Session session = sessions.get(user.getUsername());
+        if (session != null && --session.pins == 0) {
+            sessions.remove(user.getUsername());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            Logs.logErrorWithStackTrace(e.getStackTrace(), "Could not close the user database.");
+        }
+    }
+
+    private synchronized List<User> readBatch(String after, int batchSize) {
+        List<User> batch = new ArrayList<>(batchSize);
+        try {
+            selectBatch.setString(1, after);
+            selectBatch.setInt(2, batchSize);
+            try (ResultSet rows = selectBatch.executeQuery()) {
+                while (rows.next()) {
+                    batch.add(User.withPasswordHash(rows.getString(1), rows.getString(2), decode(rows.getBytes(3))));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("A problem occurred while reading users", e);
+        }
+        return batch;
+    }
+
+    private User load(String username) {
+        try {
+            selectUser.setString(1, username);
+            try (ResultSet rows = selectUser.executeQuery()) {
+                return rows.next() ? User.withPasswordHash(username, rows.getString(1), decode(rows.getBytes(2))) : null;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("A problem occurred while loading user " + username, e);
+        }
+    }
+
+    private static byte[] encode(Wallet wallet) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            UserCodec.writeWallet(out, wallet.copy());
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode wallet", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Wallet decode(byte[] bytes) {
+        try {
+            return UserCodec.readWallet(new DataInputStream(new ByteArrayInputStream(bytes)));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not decode wallet", e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.database;
+
+public record JournalRecord(long lsn, Type type, String username, String text, double amount, double price) {
+    public enum Type {
+        REGISTER,
+        DEPOSIT,
+        BUY,
+        SELL;
+
+        private static final Type[] VALUES = values();
+
+        static Type fromCode(int code) {
+            return code >= 0 && code < VALUES.length ? VALUES[code] : null;
+        }
+    }
+
+    public JournalRecord {
+        if (type == null || username == null) {
+            throw new IllegalArgumentException("Record type and username cannot be null.");
+        }
+    }
+
+    public static JournalRecord register(String username, String passwordHash) {
+        return new JournalRecord(0, Type.REGISTER, username, passwordHash, 0, 0);
+    }
+
+    public static JournalRecord deposit(String username, double amount) {
+        return new JournalRecord(0, Type.DEPOSIT, username, null, amount, 0);
+    }
+
+    public static JournalRecord buy(String username, String assetId, double toPay, double price) {
+        return new JournalRecord(0, Type.BUY, username, assetId, toPay, price);
+    }
+
+    public static JournalRecord sell(String username, String assetId, double price) {
+        return new JournalRecord(0, Type.SELL, username, assetId, 0, price);
+    }
+
+    public JournalRecord withLsn(long lsn) {
+        return new JournalRecord(lsn, type, username, text, amount, price);
+    }
+}
@@ -0,0 +1,424 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.exception.UserAlreadyExistsException;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// users stay on disk in the store and are read on demand; at most maxResidentUsers unpinned users stay cached.
+// the residency lock only guards the bookkeeping below, store reads and write-backs happen outside it
+public class LazyUserRepository extends CheckpointedUserRepository {
+
+    // an evicted user stays reachable until every write-back started for it has reached the store
+    private static final class Eviction {
+        private final User user;
+        private int writes;
+
+        private Eviction(User user) {
+            this.user = user;
+        }
+    }
+
+    private final LazyUserStore store;
+    private final int maxResidentUsers;
+    private final Object residency = new Object();
+    private final Map<String, User> users;
+    private final LinkedHashMap<String, User> idle;
+    private final Map<String, Integer> pins;
+    private final Map<String, CompletableFuture<User>> loading;
+    private final Map<String, Eviction> evicting;
+    private final Set<String> dirty;
+
+    public LazyUserRepository(LazyUserStore store, WalletJournal journal, int maxResidentUsers) {
+        super(journal);
+        if (store == null || maxResidentUsers < 0) {
+            throw new IllegalArgumentException("A user store and a non-negative resident user limit are required.");
+        }
+
+        this.store = store;
+        this.maxResidentUsers = maxResidentUsers;
+        this.users = new ConcurrentHashMap<>();
+        this.idle = new LinkedHashMap<>(16, 0.75f, true);
+        this.pins = new HashMap<>();
+        this.loading = new HashMap<>();
+        this.evicting = new HashMap<>();
+        this.dirty = ConcurrentHashMap.newKeySet();
+        setCheckpointLsn(store.getCheckpointLsn());
+        recoverJournal();
+    }
+
+    @Override
+    boolean isPersisted() {
+        return true;
+    }
+
+    @Override
+    void persist(long lsn) {
+        flushDirty();
+        try {
+            store.checkpoint(lsn);
+            store.compactIfWasteful();
+        } catch (IOException e) {
+            throw new IllegalStateException("A problem occurred while checkpointing the user store", e);
+        }
+    }
+
+    @Override
+    void closeStorage() {
+        try {
+            store.close();
+        } catch (IOException e) {
+            Logs.logErrorWithStackTrace(e.getStackTrace(), "Could not close the user store.");
+        }
+    }
+
+    @Override
+    void applyRegistration(User registered) {
+        List<User> evicted;
+        synchronized (residency) {
+            if (exists(registered.getUsername())) {
+                return;
+            }
+            admit(registered);
+            updateWallet(registered);
+            evicted = evictInactive();
+        }
+        writeBackEvicted(evicted);
+    }
+
+    // the store lookup stays under the lock so two registrations of one name cannot both pass it
+    @Override
+    public void create(User user) throws UserAlreadyExistsException {
+        if (user == null || user.getUsername() == null) {
+            throw new IllegalArgumentException("User and username cannot be null.");
+        }
+
+        List<User> evicted;
+        synchronized (residency) {
+            if (exists(user.getUsername())) {
+                throw new UserAlreadyExistsException("User already exists.");
+            }
+            admit(user);
+            markCreated(user);
+            updateWallet(user);
+            evicted = evictInactive();
+        }
+        writeBackEvicted(evicted);
+    }
+
+    @Override
+    public void remove(String username) {
+        if (username == null) {
+            return;
+        }
+
+        User user;
+        synchronized (residency) {
+            user = users.remove(username);
+            Eviction eviction = evicting.remove(username);
+            if (user == null && eviction != null) {
+                user = eviction.user;
+            }
+            idle.remove(username);
+            pins.remove(username);
+            loading.remove(username);
+            dirty.remove(username);
+        }
+
+        // an eviction or export may already have written the new user back, so the store drops it too
+        try {
+            if (user == null) {
+                store.remove(username);
+            } else {
+                synchronized (user) {
+                    store.remove(username);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("A problem occurred while removing user " + username, e);
+        }
+    }
+
+    // only dirty users are written to the store at the next checkpoint or eviction
+    @Override
+    public void updateWallet(User user) {
+        if (user != null) {
+            dirty.add(user.getUsername());
+        }
+    }
+
+    @Override
+    public void forEachBatch(int batchSize, Consumer<List<User>> consumer) {
+        if (batchSize <= 0 || consumer == null) {
+            throw new IllegalArgumentException("Batch size must be positive and consumer cannot be null.");
+        }
+
+        flushDirty();
+        try {
+            store.forEachBatch(batchSize, consumer);
+        } catch (IOException e) {
+            throw new IllegalStateException("A problem occurred while reading the user store", e);
+        }
+    }
+
+    // only the flip and the index copy happen under the lock. users in memory at the cut may be newer than
+    // the store, so they are read from memory instead of being written back first
+    @Override
+    void walkSnapshot(Snapshot active, Consumer<User> consumer) {
+        Map<String, User> inMemory = new HashMap<>();
+        LazyUserStore.StoreSnapshot storeSnapshot;
+        synchronized (residency) {
+            beginSnapshot(active);
+            for (User user : writeBackCandidates()) {
+                inMemory.put(user.getUsername(), user);
+            }
+            try {
+                storeSnapshot = store.openSnapshot();
+            } catch (IOException e) {
+                throw new IllegalStateException("A problem occurred while opening a user store snapshot", e);
+            }
+        }
+
+        try (storeSnapshot) {
+            storeSnapshot.forEach(user -> {
+                User resident = inMemory.remove(user.getUsername());
+                User preImage = active.preImage(user.getUsername());
+                consumer.accept(resident != null ? active.stateOf(resident) : preImage == null ? user : preImage);
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException("A problem occurred while reading a user store snapshot", e);
+        }
+        // registered before the cut but not written back yet
+        for (User user : inMemory.values()) {
+            consumer.accept(active.stateOf(user));
+        }
+    }
+
+    public int getDirtyUserCount() {
+        return dirty.size();
+    }
+
+    @Override
+    public User getUser(String username) {
+        return username == null ? null : resident(username, false);
+    }
+
+    // a pinned user is never evicted, so the wallet a session mutates is always the resident one
+    @Override
+    public User acquire(String username) {
+        return username == null ? null : resident(username, true);
+    }
+
+    @Override
+    public void release(User user) {
+        if (user == null) {
+            return;
+        }
+
+        List<User> evicted;
+        synchronized (residency) {
+            String username = user.getUsername();
+            Integer count = pins.get(username);
+            if (count == null) {
+                return;
+            }
+            if (count > 1) {
+                pins.put(username, count - 1);
+            } else {
+                pins.remove(username);
+                if (users.get(username) == user) {
+                    idle.put(username, user);
+                }
+            }
+            evicted = evictInactive();
+        }
+        writeBackEvicted(evicted);
+    }
+
+    public int getResidentUserCount() {
+        return users.size();
+    }
+
+    // the first caller that misses reads the store outside the lock; callers after it wait for the same read
+    private User resident(String username, boolean pin) {
+        while (true) {
+            User user;
+            List<User> evicted = List.of();
+            CompletableFuture<User> load = null;
+            boolean loader = false;
+            synchronized (residency) {
+                user = cached(username);
+                if (user != null) {
+                    if (pin && pins.merge(username, 1, Integer::sum) == 1) {
+                        idle.remove(username);
+                    }
+                    evicted = evictInactive();
+                } else {
+                    load = loading.get(username);
+                    if (load == null) {
+                        load = new CompletableFuture<>();
+                        loading.put(username, load);
+                        loader = true;
+                    }
+                }
+            }
+
+            if (user != null) {
+                writeBackEvicted(evicted);
+                return user;
+            }
+            // the loaded user is admitted by now, the next pass picks it up even if it was evicted meanwhile
+            if ((loader ? load(username, load) : await(load)) == null) {
+                return null;
+            }
+        }
+    }
+
+    private User cached(String username) {
+        User user = users.get(username);
+        if (user != null) {
+            idle.get(username);
+            return user;
+        }
+
+        // the store may not have the latest state of an evicted user yet, so the same instance comes back
+        Eviction eviction = evicting.get(username);
+        if (eviction != null) {
+            admit(eviction.user);
+            return eviction.user;
+        }
+        return null;
+    }
+
+    private User load(String username, CompletableFuture<User> load) {
+        User user;
+        try {
+            user = store.load(username);
+        } catch (IOException | RuntimeException e) {
+            synchronized (residency) {
+                loading.remove(username, load);
+            }
+            IllegalStateException failure =
+                new IllegalStateException("A problem occurred while loading user " + username, e);
+            load.completeExceptionally(failure);
+            throw failure;
+        }
+
+        synchronized (residency) {
+            // a removal while the read was in flight drops the future, and a registration may have won the race
+            if (loading.remove(username, load) && user != null && cached(username) == null) {
+                admit(user);
+            }
+        }
+        load.complete(user);
+        return user;
+    }
+
+    private static User await(CompletableFuture<User> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof IllegalStateException cause ? cause : new IllegalStateException(e);
+        }
+    }
+
+    private boolean exists(String username) {
+        try {
+            return users.containsKey(username) || evicting.containsKey(username) || store.contains(username);
+        } catch (IOException e) {
+            throw new IllegalStateException("A problem occurred while looking up user " + username, e);
+        }
+    }
+
+    private void admit(User user) {
+        users.put(user.getUsername(), user);
+        if (!pins.containsKey(user.getUsername())) {
+            idle.put(user.getUsername(), user);
+        }
+    }
+
+    // pinned users are kept out of the idle order, so eviction only walks users it can actually drop
+    private List<User> evictInactive() {
+        List<User> evicted = new ArrayList<>();
+        Iterator<User> iterator = idle.values().iterator();
+        while (users.size() > maxResidentUsers && iterator.hasNext()) {
+            User user = iterator.next();
+            iterator.remove();
+            users.remove(user.getUsername());
+            evicting.computeIfAbsent(user.getUsername(), username -> new Eviction(user)).writes++;
+            evicted.add(user);
+        }
+        return evicted;
+    }
+
+    private void writeBackEvicted(List<User> evicted) {
+        RuntimeException failure = null;
+        for (User user : evicted) {
+            try {
+                writeBack(user);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            synchronized (residency) {
+                Eviction eviction = evicting.get(user.getUsername());
+                if (eviction != null && --eviction.writes == 0) {
+                    evicting.remove(user.getUsername());
+                    // a user that could not be written stays resident rather than losing its changes
+                    if (dirty.contains(user.getUsername()) && !users.containsKey(user.getUsername())) {
+                        admit(user);
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // a write-back in flight holds the user's monitor, so writing every candidate again also waits for it
+    private List<User> writeBackCandidates() {
+        synchronized (residency) {
+            List<User> candidates = new ArrayList<>(users.values());
+            for (Eviction eviction : evicting.values()) {
+                candidates.add(eviction.user);
+            }
+            return candidates;
+        }
+    }
+
+    private void flushDirty() {
+        writeBackCandidates().forEach(this::writeBack);
+    }
+
+    // the wallet lock lets an update that missed a snapshot flip mark the user dirty before it is written,
+    // and the user's monitor keeps an older state from overtaking a newer one on its way to the store
+    private void writeBack(User user) {
+        synchronized (user) {
+            User state;
+            synchronized (user.getWallet()) {
+                if (!dirty.remove(user.getUsername())) {
+                    return;
+                }
+                state = user.snapshot();
+            }
+
+            try {
+                store.store(state);
+            } catch (IOException e) {
+                dirty.add(user.getUsername());
+                throw new IllegalStateException("A problem occurred while storing user " + user.getUsername(), e);
+            }
+        }
+    }
+}
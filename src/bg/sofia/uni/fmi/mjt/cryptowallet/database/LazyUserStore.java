@@ -0,0 +1,606 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/*
+ * users.data is append-only: an int magic and version, then records of int length, int CRC32 and a
+ * UserCodec user payload. users.index is a memory-mapped open-addressing hash table from username to the
+ * offset of its latest record. The index header carries a clean flag; an index that was not closed cleanly
+ * is rebuilt by scanning the data file, whose torn tail is truncated on the way. Rewritten users leave their old
+ * records behind; compaction copies the live records into a fresh data file and swaps it in. A removal appends a
+ * tombstone, a record whose payload is only the username, so a rebuilt index does not bring the user back.
+ */
+public class LazyUserStore implements AutoCloseable {
+    public static final String DATA_FILE = "users.data";
+    public static final String INDEX_FILE = "users.index";
+
+    private static final int DATA_MAGIC = 0x43575544;
+    private static final int INDEX_MAGIC = 0x43575549;
+    private static final int DATA_FORMAT_VERSION = 1;
+    private static final int INDEX_FORMAT_VERSION = 2;
+    private static final int DATA_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int MAX_RECORD_SIZE = 1024 * 1024;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CLEAN_OFFSET = 8;
+    private static final int CAPACITY_OFFSET = 16;
+    private static final int COUNT_OFFSET = 24;
+    private static final int CHECKPOINT_OFFSET = 32;
+    private static final int LIVE_BYTES_OFFSET = 40;
+    private static final int INDEX_HEADER_SIZE = 48;
+    private static final int SLOT_SIZE = 2 * Long.BYTES;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    private static final int MAX_CAPACITY = 1 << 26;
+    private static final int LOAD_FACTOR_PERCENT = 75;
+    private static final long EMPTY = 0;
+    private static final int COMPACTION_WASTE_RATIO = 2;
+    private static final long MIN_COMPACTION_SIZE = 4L * 1024 * 1024;
+    private static final int COPY_BUFFER_SIZE = 256 * 1024;
+    private static final String COMPACT_SUFFIX = ".compact";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+    private final Path dataPath;
+    private final Path indexPath;
+    private FileChannel data;
+    private MappedByteBuffer index;
+    private int capacity;
+    private long count;
+    private long liveBytes;
+    private long dataEnd;
+    private int openSnapshots;
+    private boolean closed;
+
+    public LazyUserStore(Path directory) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("Store directory cannot be null.");
+        }
+
+        Files.createDirectories(directory);
+        this.dataPath = directory.resolve(DATA_FILE);
+        this.indexPath = directory.resolve(INDEX_FILE);
+        this.data = openDataChannel(dataPath);
+        try {
+            openData();
+            openIndex();
+        } catch (IOException | RuntimeException e) {
+            data.close();
+            throw e;
+        }
+    }
+
+    public synchronized User load(String username) throws IOException {
+        ensureOpen();
+        int slot = findSlot(username, hash(username));
+        if (slotHash(slot) == EMPTY) {
+            return null;
+        }
+
+        return UserCodec.readUser(new DataInputStream(new ByteArrayInputStream(readPayload(slotOffset(slot)))));
+    }
+
+    public synchronized boolean contains(String username) throws IOException {
+        ensureOpen();
+        return slotHash(findSlot(username, hash(username))) != EMPTY;
+    }
+
+    public synchronized void store(User user) throws IOException {
+        ensureOpen();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            UserCodec.writeUser(out, user);
+        }
+        byte[] payload = bytes.toByteArray();
+        if (payload.length > MAX_RECORD_SIZE) {
+            throw new IOException("User record of " + payload.length + " bytes is too large.");
+        }
+
+        long offset = append(payload);
+        long hash = hash(user.getUsername());
+        int slot = findSlot(user.getUsername(), hash);
+        boolean added = slotHash(slot) == EMPTY;
+        if (!added) {
+            liveBytes -= recordSize(slotOffset(slot));
+        }
+        liveBytes += RECORD_HEADER_SIZE + payload.length;
+        index.putLong(LIVE_BYTES_OFFSET, liveBytes);
+        putSlot(index, slot, hash, offset);
+        if (added) {
+            index.putLong(COUNT_OFFSET, ++count);
+            if (count * 100 > (long) capacity * LOAD_FACTOR_PERCENT) {
+                grow();
+            }
+        }
+    }
+
+    public synchronized boolean remove(String username) throws IOException {
+        ensureOpen();
+        long hash = hash(username);
+        int slot = findSlot(username, hash);
+        if (slotHash(slot) == EMPTY) {
+            return false;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(username);
+        }
+        append(bytes.toByteArray());
+        liveBytes -= recordSize(slotOffset(slot));
+        index.putLong(LIVE_BYTES_OFFSET, liveBytes);
+        clearSlot(slot);
+        index.putLong(COUNT_OFFSET, --count);
+        return true;
+    }
+
+    // holds the store lock for the whole walk, so the slot order cannot change under it
+    public synchronized void forEachBatch(int batchSize, Consumer<List<User>> consumer) throws IOException {
+        ensureOpen();
+        List<User> batch = new ArrayList<>(batchSize);
+        for (int slot = 0; slot < capacity; slot++) {
+            if (slotHash(slot) == EMPTY) {
+                continue;
+            }
+
+            batch.add(UserCodec.readUser(new DataInputStream(new ByteArrayInputStream(readPayload(slotOffset(slot))))));
+            if (batch.size() == batchSize) {
+                consumer.accept(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            consumer.accept(batch);
+        }
+    }
+
+    // records are never overwritten in place, so a copy of the slots keeps pointing at the state as of now
+    public synchronized StoreSnapshot openSnapshot() throws IOException {
+        ensureOpen();
+        Path snapshotPath = Files.createTempFile(indexPath.getParent(), INDEX_FILE, SNAPSHOT_SUFFIX);
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.WRITE)) {
+            writeAll(channel, index.slice(0, INDEX_HEADER_SIZE + capacity * SLOT_SIZE));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(snapshotPath);
+            throw e;
+        }
+
+        openSnapshots++;
+        return new StoreSnapshot(snapshotPath, capacity);
+    }
+
+    public final class StoreSnapshot implements AutoCloseable {
+        private final Path path;
+        private final int slots;
+        private boolean released;
+
+        private StoreSnapshot(Path path, int slots) {
+            this.path = path;
+            this.slots = slots;
+        }
+
+        // reads go around the store lock, so stores and loads carry on during the walk
+        public void forEach(Consumer<User> consumer) throws IOException {
+            MappedByteBuffer copy;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                copy = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+
+            for (int slot = 0; slot < slots; slot++) {
+                if (copy.getLong(slotPosition(slot)) == EMPTY) {
+                    continue;
+                }
+
+                byte[] payload = readPayload(copy.getLong(slotPosition(slot) + Long.BYTES));
+                consumer.accept(UserCodec.readUser(new DataInputStream(new ByteArrayInputStream(payload))));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (LazyUserStore.this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+                openSnapshots--;
+            }
+            Files.deleteIfExists(path);
+        }
+    }
+
+    public synchronized long size() {
+        return count;
+    }
+
+    public synchronized long getCheckpointLsn() {
+        return index.getLong(CHECKPOINT_OFFSET);
+    }
+
+    public synchronized void checkpoint(long lsn) throws IOException {
+        ensureOpen();
+        data.force(false);
+        index.putLong(CHECKPOINT_OFFSET, lsn);
+        index.force();
+    }
+
+    public synchronized long getDataSize() {
+        return dataEnd;
+    }
+
+    public synchronized long getLiveDataSize() {
+        return DATA_HEADER_SIZE + liveBytes;
+    }
+
+    public synchronized boolean compactIfWasteful() throws IOException {
+        if (openSnapshots > 0 || dataEnd < MIN_COMPACTION_SIZE
+            || dataEnd < COMPACTION_WASTE_RATIO * getLiveDataSize()) {
+            return false;
+        }
+
+        compact();
+        return true;
+    }
+
+    // the index stays marked unclean while open, so a crash anywhere in here rebuilds it from whichever data file won
+    public synchronized void compact() throws IOException {
+        ensureOpen();
+        if (openSnapshots > 0) {
+            throw new IllegalStateException("User store cannot be compacted while a snapshot is open.");
+        }
+        Path compactDataPath = dataPath.resolveSibling(dataPath.getFileName() + COMPACT_SUFFIX);
+        Path compactIndexPath = indexPath.resolveSibling(indexPath.getFileName() + COMPACT_SUFFIX);
+        Files.deleteIfExists(compactDataPath);
+        Files.deleteIfExists(compactIndexPath);
+
+        MappedByteBuffer compactIndex = map(compactIndexPath, index.capacity());
+        compactIndex.put(0, index, 0, INDEX_HEADER_SIZE);
+        FileChannel compactData = openDataChannel(compactDataPath);
+        long offset;
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+            buffer.putInt(DATA_MAGIC).putInt(DATA_FORMAT_VERSION);
+            offset = DATA_HEADER_SIZE;
+            for (int slot = 0; slot < capacity; slot++) {
+                long hash = slotHash(slot);
+                if (hash == EMPTY) {
+                    continue;
+                }
+
+                long from = slotOffset(slot);
+                int size = recordSize(from);
+                if (buffer.remaining() < size) {
+                    writeAll(compactData, buffer.flip());
+                    buffer.clear();
+                }
+                if (size > buffer.capacity()) {
+                    writeAll(compactData, readFully(from, size));
+                } else {
+                    buffer.put(readFully(from, size));
+                }
+
+                putSlot(compactIndex, slot, hash, offset);
+                offset += size;
+            }
+            writeAll(compactData, buffer.flip());
+            compactData.force(false);
+        } catch (IOException | RuntimeException e) {
+            compactData.close();
+            throw e;
+        }
+
+        compactIndex.putLong(LIVE_BYTES_OFFSET, offset - DATA_HEADER_SIZE);
+        compactIndex.force();
+        Files.move(compactDataPath, dataPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(compactIndexPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        data.close();
+        data = compactData;
+        index = compactIndex;
+        dataEnd = offset;
+        liveBytes = offset - DATA_HEADER_SIZE;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        try {
+            data.force(false);
+            index.putInt(CLEAN_OFFSET, 1);
+            index.force();
+        } finally {
+            data.close();
+        }
+    }
+
+    private void openData() throws IOException {
+        if (data.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(DATA_HEADER_SIZE).putInt(DATA_MAGIC).putInt(DATA_FORMAT_VERSION)
+                .flip();
+            writeAll(data, header);
+            data.force(false);
+        } else {
+            ByteBuffer header = readFully(0, DATA_HEADER_SIZE);
+            if (header.getInt() != DATA_MAGIC || header.getInt() != DATA_FORMAT_VERSION) {
+                throw new IOException("Not a supported user data file.");
+            }
+        }
+        dataEnd = data.size();
+    }
+
+    private void openIndex() throws IOException {
+        long checkpointLsn = 0;
+        if (Files.exists(indexPath) && Files.size(indexPath) >= INDEX_HEADER_SIZE) {
+            MappedByteBuffer existing = map(indexPath, Files.size(indexPath));
+            if (existing.getInt(MAGIC_OFFSET) == INDEX_MAGIC) {
+                checkpointLsn = existing.getLong(CHECKPOINT_OFFSET);
+            }
+            if (existing.getInt(MAGIC_OFFSET) == INDEX_MAGIC
+                && existing.getInt(VERSION_OFFSET) == INDEX_FORMAT_VERSION) {
+                int existingCapacity = (int) existing.getLong(CAPACITY_OFFSET);
+                if (existing.getInt(CLEAN_OFFSET) == 1
+                    && existing.capacity() == INDEX_HEADER_SIZE + (long) existingCapacity * SLOT_SIZE) {
+                    index = existing;
+                    capacity = existingCapacity;
+                    count = existing.getLong(COUNT_OFFSET);
+                    liveBytes = existing.getLong(LIVE_BYTES_OFFSET);
+                }
+            }
+        }
+
+        if (index == null) {
+            rebuildIndex(checkpointLsn);
+        }
+        index.putInt(CLEAN_OFFSET, 0);
+        index.force();
+    }
+
+    private void rebuildIndex(long checkpointLsn) throws IOException {
+        index = createIndex(INITIAL_CAPACITY, checkpointLsn);
+        capacity = INITIAL_CAPACITY;
+        count = 0;
+        liveBytes = 0;
+
+        long offset = DATA_HEADER_SIZE;
+        long size = data.size();
+        while (offset + RECORD_HEADER_SIZE <= size) {
+            ByteBuffer header = readFully(offset, RECORD_HEADER_SIZE);
+            int length = header.getInt();
+            int crc = header.getInt();
+            if (length <= 0 || length > MAX_RECORD_SIZE || offset + RECORD_HEADER_SIZE + length > size) {
+                break;
+            }
+            byte[] payload = readFully(offset + RECORD_HEADER_SIZE, length).array();
+            CRC32 actual = new CRC32();
+            actual.update(payload);
+            if ((int) actual.getValue() != crc) {
+                break;
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            String username = in.readUTF();
+            boolean tombstone = in.available() == 0;
+            long hash = hash(username);
+            int slot = findSlot(username, hash);
+            if (slotHash(slot) != EMPTY) {
+                liveBytes -= recordSize(slotOffset(slot));
+                if (tombstone) {
+                    clearSlot(slot);
+                    index.putLong(COUNT_OFFSET, --count);
+                }
+            } else if (!tombstone) {
+                index.putLong(COUNT_OFFSET, ++count);
+            }
+            if (!tombstone) {
+                liveBytes += RECORD_HEADER_SIZE + length;
+                putSlot(index, slot, hash, offset);
+                if (count * 100 > (long) capacity * LOAD_FACTOR_PERCENT) {
+                    grow();
+                }
+            }
+            offset += RECORD_HEADER_SIZE + length;
+        }
+
+        if (offset < size) {
+            data.truncate(offset);
+        }
+        index.putLong(LIVE_BYTES_OFFSET, liveBytes);
+        data.force(false);
+        dataEnd = offset;
+    }
+
+    private MappedByteBuffer createIndex(int slots, long checkpointLsn) throws IOException {
+        Path tempPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        Files.deleteIfExists(tempPath);
+        MappedByteBuffer created = map(tempPath, INDEX_HEADER_SIZE + (long) slots * SLOT_SIZE);
+        created.putInt(MAGIC_OFFSET, INDEX_MAGIC);
+        created.putInt(VERSION_OFFSET, INDEX_FORMAT_VERSION);
+        created.putLong(CAPACITY_OFFSET, slots);
+        created.putLong(COUNT_OFFSET, 0);
+        created.putLong(CHECKPOINT_OFFSET, checkpointLsn);
+        created.force();
+        Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return created;
+    }
+
+    private void grow() throws IOException {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("User index cannot hold more than " + MAX_CAPACITY + " slots.");
+        }
+
+        int newCapacity = capacity * 2;
+        Path tempPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        Files.deleteIfExists(tempPath);
+        MappedByteBuffer grown = map(tempPath, INDEX_HEADER_SIZE + (long) newCapacity * SLOT_SIZE);
+        grown.putInt(MAGIC_OFFSET, INDEX_MAGIC);
+        grown.putInt(VERSION_OFFSET, INDEX_FORMAT_VERSION);
+        grown.putInt(CLEAN_OFFSET, index.getInt(CLEAN_OFFSET));
+        grown.putLong(CAPACITY_OFFSET, newCapacity);
+        grown.putLong(COUNT_OFFSET, count);
+        grown.putLong(CHECKPOINT_OFFSET, index.getLong(CHECKPOINT_OFFSET));
+        grown.putLong(LIVE_BYTES_OFFSET, liveBytes);
+
+        // keys are already distinct, so only the stored hash is needed to place them
+        int mask = newCapacity - 1;
+        for (int slot = 0; slot < capacity; slot++) {
+            long hash = slotHash(slot);
+            if (hash != EMPTY) {
+                int target = (int) hash & mask;
+                while (grown.getLong(slotPosition(target)) != EMPTY) {
+                    target = (target + 1) & mask;
+                }
+                putSlot(grown, target, hash, slotOffset(slot));
+            }
+        }
+
+        grown.force();
+        Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        index = grown;
+        capacity = newCapacity;
+    }
+
+    private long append(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        long offset = dataEnd;
+        while (record.hasRemaining()) {
+            data.write(record, offset + record.position());
+        }
+        dataEnd = offset + record.limit();
+        return offset;
+    }
+
+    // linear probing has no tombstones in the index, so later entries of the run are shifted back into the hole
+    private void clearSlot(int slot) {
+        int mask = capacity - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; slotHash(next) != EMPTY; next = (next + 1) & mask) {
+            int home = (int) slotHash(next) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                putSlot(index, hole, slotHash(next), slotOffset(next));
+                hole = next;
+            }
+        }
+        putSlot(index, hole, EMPTY, 0);
+    }
+
+    private int findSlot(String username, long hash) throws IOException {
+        int mask = capacity - 1;
+        int slot = (int) hash & mask;
+        while (true) {
+            long stored = slotHash(slot);
+            if (stored == EMPTY || stored == hash && username.equals(readUsername(slotOffset(slot)))) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private String readUsername(long offset) throws IOException {
+        return new DataInputStream(new ByteArrayInputStream(readPayload(offset))).readUTF();
+    }
+
+    private byte[] readPayload(long offset) throws IOException {
+        ByteBuffer header = readFully(offset, RECORD_HEADER_SIZE);
+        int length = header.getInt();
+        int crc = header.getInt();
+        if (length <= 0 || length > MAX_RECORD_SIZE) {
+            throw new IOException("Corrupt user record at offset " + offset + ".");
+        }
+
+        byte[] payload = readFully(offset + RECORD_HEADER_SIZE, length).array();
+        CRC32 actual = new CRC32();
+        actual.update(payload);
+        if ((int) actual.getValue() != crc) {
+            throw new IOException("User record at offset " + offset + " failed its checksum.");
+        }
+        return payload;
+    }
+
+    private int recordSize(long offset) throws IOException {
+        return RECORD_HEADER_SIZE + readFully(offset, Integer.BYTES).getInt();
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (data.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of user data file at offset " + position + ".");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private long slotHash(int slot) {
+        return index.getLong(slotPosition(slot));
+    }
+
+    private long slotOffset(int slot) {
+        return index.getLong(slotPosition(slot) + Long.BYTES);
+    }
+
+    private static void putSlot(MappedByteBuffer target, int slot, long hash, long offset) {
+        target.putLong(slotPosition(slot) + Long.BYTES, offset);
+        target.putLong(slotPosition(slot), hash);
+    }
+
+    private static int slotPosition(int slot) {
+        return INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static FileChannel openDataChannel(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static void writeAll(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static MappedByteBuffer map(Path path, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static long hash(String username) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < username.length(); i++) {
+            hash ^= username.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 29;
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("User store is closed.");
+        }
+    }
+}
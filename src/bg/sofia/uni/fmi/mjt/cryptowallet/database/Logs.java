@@ -2,14 +2,26 @@ package bg.sofia.uni.fmi.mjt.cryptowallet.database;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.FileHandler;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
 
 public class Logs {
     private static final String LOG_PATH = "database" + File.separator + "logs.log";
+    private static final Lock LOCK = new ReentrantLock();
 
     public static void logErrorWithStackTrace(StackTraceElement[] ste, String message) {
+        LOCK.lock();
+        try {
+            writeLog(ste, message);
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    private static void writeLog(StackTraceElement[] ste, String message) {
         Logger logger = Logger.getLogger("MyLog");
         logger.setUseParentHandlers(false);
         FileHandler fh;
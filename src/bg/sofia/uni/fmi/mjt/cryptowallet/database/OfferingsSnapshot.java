@@ -0,0 +1,36 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.database;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class OfferingsSnapshot {
+    public static final int LENGTH_PREFIX_SIZE = Integer.BYTES;
+
+    private final long version;
+    private final String text;
+    private final ByteBuffer lengthPrefixed;
+    private final ByteBuffer raw;
+
+    public OfferingsSnapshot(long version, String text) {
+        this.version = version;
+        this.text = text;
+
+        byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer encoded = ByteBuffer.allocateDirect(LENGTH_PREFIX_SIZE + payload.length);
+        encoded.putInt(payload.length).put(payload).flip();
+        this.lengthPrefixed = encoded.asReadOnlyBuffer();
+        this.raw = encoded.position(LENGTH_PREFIX_SIZE).slice().asReadOnlyBuffer();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public ByteBuffer getEncoded(boolean withLengthPrefix) {
+        return withLengthPrefix ? lengthPrefixed.duplicate() : raw.duplicate();
+    }
+}
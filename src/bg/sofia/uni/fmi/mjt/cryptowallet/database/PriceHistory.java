@@ -0,0 +1,110 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class PriceHistory implements AssetsUpdateListener {
+    public static final int DEFAULT_MAX_TRACKED_ASSETS = 1000;
+
+    private final int maxTrackedAssets;
+    private final Clock clock;
+    private final Map<String, PriceSeries> series;
+
+    public PriceHistory() {
+        this(DEFAULT_MAX_TRACKED_ASSETS, Clock.systemUTC());
+    }
+
+    public PriceHistory(int maxTrackedAssets, Clock clock) {
+        if (maxTrackedAssets <= 0) {
+            throw new IllegalArgumentException("Maximum tracked asset count must be positive.");
+        }
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock cannot be null.");
+        }
+
+        this.maxTrackedAssets = maxTrackedAssets;
+        this.clock = clock;
+        this.series = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void onAssetsUpdated(List<Asset> changed) {
+        // unchanged prices need candles too, so every refresh is recorded in onSnapshotRefreshed instead
+    }
+
+    @Override
+    public void onSnapshotRefreshed(AssetSnapshot snapshot) {
+        long now = clock.millis();
+        for (Asset asset : snapshot.getAssets()) {
+            record(asset.getAssetId(), now, asset.getPrice());
+        }
+    }
+
+    // the lookup, any eviction and the tick share one lock, so a tick never lands in a series that was just dropped
+    public synchronized void record(String assetId, long timestampMillis, double price) {
+        if (assetId == null) {
+            throw new IllegalArgumentException("Asset id cannot be null.");
+        }
+
+        PriceSeries assetSeries = series.get(assetId);
+        if (assetSeries == null) {
+            if (series.size() >= maxTrackedAssets) {
+                evictStalest();
+            }
+            assetSeries = new PriceSeries();
+            series.put(assetId, assetSeries);
+        }
+        assetSeries.record(timestampMillis, price);
+    }
+
+    public List<Candle> getCandles(String assetId, CandleInterval interval) {
+        if (interval == null) {
+            throw new IllegalArgumentException("Interval cannot be null.");
+        }
+
+        PriceSeries assetSeries = assetId == null ? null : series.get(assetId);
+        return assetSeries == null ? List.of() : assetSeries.read(interval);
+    }
+
+    public String listPriceHistory(String assetId, CandleInterval interval) {
+        List<Candle> candles = getCandles(assetId, interval);
+        if (candles.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder res = new StringBuilder();
+        res.append("Price history of ").append(assetId).append(" by ").append(interval.getName()).append(": ")
+            .append(System.lineSeparator());
+        for (Candle candle : candles) {
+            res.append(candle.getCandleInfoString());
+        }
+        return res.toString();
+    }
+
+    public int getTrackedAssetCount() {
+        return series.size();
+    }
+
+    public long getMaxMemoryBytes() {
+        return maxTrackedAssets * PriceSeries.bytesPerSeries();
+    }
+
+    private void evictStalest() {
+        String stalest = null;
+        long oldest = Long.MAX_VALUE;
+        for (Map.Entry<String, PriceSeries> entry : series.entrySet()) {
+            long lastUpdate = entry.getValue().getLastUpdateMillis();
+            if (lastUpdate < oldest) {
+                oldest = lastUpdate;
+                stalest = entry.getKey();
+            }
+        }
+        if (stalest != null) {
+            series.remove(stalest);
+        }
+    }
+}
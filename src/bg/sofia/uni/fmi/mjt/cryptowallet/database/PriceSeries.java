@@ -0,0 +1,124 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.database;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+final class PriceSeries {
+    private static final int CANDLE_FIELDS_BYTES = Long.BYTES + 4 * Double.BYTES;
+    private static final int TICK_BYTES = Long.BYTES + Double.BYTES;
+
+    private final long[] tickTimes;
+    private final double[] tickPrices;
+    private final CandleRing[] rings;
+    private int tickHead;
+    private int tickCount;
+    private long lastUpdateMillis;
+
+    PriceSeries() {
+        tickTimes = new long[CandleInterval.TICK.getCapacity()];
+        tickPrices = new double[CandleInterval.TICK.getCapacity()];
+        rings = new CandleRing[CandleInterval.values().length];
+        for (CandleInterval interval : CandleInterval.values()) {
+            if (interval != CandleInterval.TICK) {
+                rings[interval.ordinal()] = new CandleRing(interval);
+            }
+        }
+    }
+
+    static long bytesPerSeries() {
+        long bytes = (long) CandleInterval.TICK.getCapacity() * TICK_BYTES;
+        for (CandleInterval interval : CandleInterval.values()) {
+            if (interval != CandleInterval.TICK) {
+                bytes += (long) interval.getCapacity() * CANDLE_FIELDS_BYTES;
+            }
+        }
+        return bytes;
+    }
+
+    synchronized void record(long timestampMillis, double price) {
+        tickTimes[tickHead] = timestampMillis;
+        tickPrices[tickHead] = price;
+        tickHead = (tickHead + 1) % tickTimes.length;
+        tickCount = Math.min(tickCount + 1, tickTimes.length);
+
+        for (CandleRing ring : rings) {
+            if (ring != null) {
+                ring.add(timestampMillis, price);
+            }
+        }
+        lastUpdateMillis = Math.max(lastUpdateMillis, timestampMillis);
+    }
+
+    synchronized List<Candle> read(CandleInterval interval) {
+        if (interval != CandleInterval.TICK) {
+            return rings[interval.ordinal()].read();
+        }
+
+        List<Candle> ticks = new ArrayList<>(tickCount);
+        for (int i = 0; i < tickCount; i++) {
+            int slot = Math.floorMod(tickHead - tickCount + i, tickTimes.length);
+            double price = tickPrices[slot];
+            ticks.add(new Candle(Instant.ofEpochMilli(tickTimes[slot]), price, price, price, price));
+        }
+        return ticks;
+    }
+
+    synchronized long getLastUpdateMillis() {
+        return lastUpdateMillis;
+    }
+
+    private static final class CandleRing {
+        private final long bucketMillis;
+        private final long[] starts;
+        private final double[] open;
+        private final double[] high;
+        private final double[] low;
+        private final double[] close;
+        private int head;
+        private int count;
+
+        private CandleRing(CandleInterval interval) {
+            bucketMillis = interval.getBucketMillis();
+            starts = new long[interval.getCapacity()];
+            open = new double[interval.getCapacity()];
+            high = new double[interval.getCapacity()];
+            low = new double[interval.getCapacity()];
+            close = new double[interval.getCapacity()];
+        }
+
+        private void add(long timestampMillis, double price) {
+            long start = timestampMillis - Math.floorMod(timestampMillis, bucketMillis);
+            if (count > 0) {
+                int last = Math.floorMod(head - 1, starts.length);
+                if (starts[last] == start) {
+                    high[last] = Math.max(high[last], price);
+                    low[last] = Math.min(low[last], price);
+                    close[last] = price;
+                    return;
+                }
+                if (start < starts[last]) {
+                    return;
+                }
+            }
+
+            starts[head] = start;
+            open[head] = price;
+            high[head] = price;
+            low[head] = price;
+            close[head] = price;
+            head = (head + 1) % starts.length;
+            count = Math.min(count + 1, starts.length);
+        }
+
+        private List<Candle> read() {
+            List<Candle> candles = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int slot = Math.floorMod(head - count + i, starts.length);
+                candles.add(new Candle(Instant.ofEpochMilli(starts[slot]), open[slot], high[slot], low[slot],
+                    close[slot]));
+            }
+            return candles;
+        }
+    }
+}
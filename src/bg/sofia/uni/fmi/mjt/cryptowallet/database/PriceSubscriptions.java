@@ -0,0 +1,35 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.database;
+
+import java.nio.channels.SelectionKey;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class PriceSubscriptions {
+    private final Map<SelectionKey, Set<String>> subscriptions;
+
+    public PriceSubscriptions() {
+        subscriptions = new ConcurrentHashMap<>();
+    }
+
+    public void subscribe(SelectionKey key, Collection<String> assetIds) {
+        if (key == null || assetIds == null) {
+            throw new IllegalArgumentException("Key and asset ids cannot be null.");
+        }
+
+        subscriptions.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).addAll(assetIds);
+    }
+
+    public void unsubscribe(SelectionKey key) {
+        subscriptions.remove(key);
+    }
+
+    public Set<String> getSubscribedAssets(SelectionKey key) {
+        return subscriptions.getOrDefault(key, Set.of());
+    }
+
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+}
@@ -0,0 +1,210 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import bg.sofia.uni.fmi.mjt.cryptowallet.wallet.Wallet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/*
+ * Layout, big-endian:
+ *   int magic 'CWUS', byte version, long checkpoint LSN,
+ *   per user: byte 1, UTF username, UTF password hash, double balance, long last LSN, int asset count,
+ *     per asset: UTF id, double purchase price, int lot count, double[lot count] amounts,
+ *   byte 0, long CRC32 of every preceding byte.
+ */
+public final class UserCodec {
+    public static final byte FORMAT_VERSION = 1;
+
+    private static final int MAGIC = 0x43575553;
+    private static final int LEGACY_STREAM_MAGIC = 0xACED;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte USER_MARKER = 1;
+    private static final byte END_MARKER = 0;
+
+    private UserCodec() {
+    }
+
+    public static void write(OutputStream target, long checkpointLsn, Iterable<User> users) throws IOException {
+        CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(target, BUFFER_SIZE),
+            new CRC32());
+        DataOutputStream out = new DataOutputStream(checked);
+        out.writeInt(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        out.writeLong(checkpointLsn);
+        for (User user : users) {
+            out.writeByte(USER_MARKER);
+            writeUser(out, user);
+        }
+        out.writeByte(END_MARKER);
+        out.flush();
+        out.writeLong(checked.getChecksum().getValue());
+        out.flush();
+    }
+
+    // a stream can only be checked once it was read to the end, so users are staged until the checksum matches
+    public static long read(InputStream source, Consumer<User> consumer) throws IOException {
+        List<User> staged = new ArrayList<>();
+        long checkpointLsn = decode(new BufferedInputStream(source, BUFFER_SIZE), staged::add);
+        staged.forEach(consumer);
+        return checkpointLsn;
+    }
+
+    // a file is checksummed in a first pass, so its users reach the consumer one at a time and only when intact
+    public static long read(Path file, Consumer<User> consumer) throws IOException {
+        try (BufferedInputStream in = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+            if (isLegacy(in)) {
+                return read(in, consumer);
+            }
+            verifyChecksum(in, Files.size(file));
+        }
+
+        try (InputStream in = Files.newInputStream(file)) {
+            return decode(new BufferedInputStream(in, BUFFER_SIZE), consumer);
+        }
+    }
+
+    private static void verifyChecksum(InputStream in, long size) throws IOException {
+        CheckedInputStream checked = new CheckedInputStream(in, new CRC32());
+        byte[] chunk = new byte[BUFFER_SIZE];
+        long remaining = size - Long.BYTES;
+        while (remaining > 0) {
+            int read = checked.read(chunk, 0, (int) Math.min(chunk.length, remaining));
+            if (read < 0) {
+                throw new EOFException("Users file ended early.");
+            }
+            remaining -= read;
+        }
+
+        if (remaining < 0 || new DataInputStream(in).readLong() != checked.getChecksum().getValue()) {
+            throw new IOException("Users file checksum does not match.");
+        }
+    }
+
+    private static long decode(BufferedInputStream buffered, Consumer<User> consumer) throws IOException {
+        if (isLegacy(buffered)) {
+            return readLegacy(buffered, consumer);
+        }
+
+        CheckedInputStream checked = new CheckedInputStream(buffered, new CRC32());
+        DataInputStream in = new DataInputStream(checked);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a users file.");
+        }
+        byte version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported users file version " + version + ".");
+        }
+
+        long checkpointLsn = in.readLong();
+        byte marker;
+        while ((marker = in.readByte()) == USER_MARKER) {
+            consumer.accept(readUser(in));
+        }
+        if (marker != END_MARKER) {
+            throw new IOException("Corrupt users file record marker " + marker + ".");
+        }
+
+        long expected = checked.getChecksum().getValue();
+        if (new DataInputStream(buffered).readLong() != expected) {
+            throw new IOException("Users file checksum does not match.");
+        }
+        return checkpointLsn;
+    }
+
+    static boolean isLegacy(BufferedInputStream in) throws IOException {
+        in.mark(Short.BYTES);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        return first >= 0 && second >= 0 && ((first << Byte.SIZE) | second) == LEGACY_STREAM_MAGIC;
+    }
+
+    static long readLegacy(InputStream source, Consumer<User> consumer) throws IOException {
+        long checkpointLsn = 0;
+        try (ObjectInputStream in = new ObjectInputStream(source)) {
+            Object object;
+            while ((object = in.readObject()) != null) {
+                if (object instanceof Long lsn) {
+                    checkpointLsn = lsn;
+                } else {
+                    consumer.accept((User) object);
+                }
+            }
+        } catch (EOFException e) {
+            // the legacy format has no end marker
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Legacy users file contains unexpected objects.", e);
+        }
+        return checkpointLsn;
+    }
+
+    static void writeUser(DataOutputStream out, User user) throws IOException {
+        out.writeUTF(user.getUsername());
+        out.writeUTF(user.getPasswordHash());
+        writeWallet(out, user.getWallet());
+    }
+
+    static void writeWallet(DataOutputStream out, Wallet wallet) throws IOException {
+        out.writeDouble(wallet.getBalance());
+        out.writeLong(wallet.getLastLsn());
+
+        Map<String, Double> purchasePrices = wallet.getPurchasedAssets();
+        out.writeInt(purchasePrices.size());
+        for (Map.Entry<String, Double> entry : purchasePrices.entrySet()) {
+            Set<Double> lots = wallet.getPurchasedAssetsAmount().getOrDefault(entry.getKey(), Set.of());
+            out.writeUTF(entry.getKey());
+            out.writeDouble(entry.getValue());
+            out.writeInt(lots.size());
+            for (double amount : lots) {
+                out.writeDouble(amount);
+            }
+        }
+    }
+
+    static User readUser(DataInputStream in) throws IOException {
+        String username = in.readUTF();
+        String passwordHash = in.readUTF();
+        return User.withPasswordHash(username, passwordHash, readWallet(in));
+    }
+
+    static Wallet readWallet(DataInputStream in) throws IOException {
+        double balance = in.readDouble();
+        long lastLsn = in.readLong();
+
+        int assetCount = in.readInt();
+        Map<String, Double> purchasePrices = new HashMap<>();
+        Map<String, Set<Double>> purchasedAmounts = new HashMap<>();
+        for (int i = 0; i < assetCount; i++) {
+            String id = in.readUTF();
+            purchasePrices.put(id, in.readDouble());
+            int lotCount = in.readInt();
+            Set<Double> lots = new HashSet<>();
+            for (int j = 0; j < lotCount; j++) {
+                lots.add(in.readDouble());
+            }
+            purchasedAmounts.put(id, lots);
+        }
+
+        return Wallet.restore(balance, purchasePrices, purchasedAmounts, lastLsn);
+    }
+}
@@ -0,0 +1,122 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.database;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// exports run one at a time on a virtual thread; the file only appears under its final name once it is complete
+public class UserExporter {
+    private static final String FILE_PREFIX = "users-";
+    private static final String FILE_SUFFIX = ".jsonl";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+    private static final DateTimeFormatter FILE_TIMESTAMP =
+        DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS").withZone(ZoneOffset.UTC);
+
+    public record Export(Path path, CompletableFuture<Long> exported) {
+    }
+
+    private final UserRepository users;
+    private final Path directory;
+    private final Clock clock;
+    private final AtomicBoolean running;
+
+    public UserExporter(UserRepository users, Path directory) {
+        this(users, directory, Clock.systemUTC());
+    }
+
+    public UserExporter(UserRepository users, Path directory, Clock clock) {
+        if (users == null || directory == null || clock == null) {
+            throw new IllegalArgumentException("User repository, export directory and clock cannot be null.");
+        }
+
+        this.users = users;
+        this.directory = directory;
+        this.clock = clock;
+        this.running = new AtomicBoolean();
+    }
+
+    // returns null while another export is still running
+    public Export startExport() {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+
+        Path target = directory.resolve(FILE_PREFIX + FILE_TIMESTAMP.format(clock.instant()) + FILE_SUFFIX);
+        CompletableFuture<Long> exported = new CompletableFuture<>();
+        Thread.ofVirtual().name("user-export").start(() -> {
+            // the flag is cleared before completing, so whoever waits on the export can start the next one
+            try {
+                long count = export(users, target);
+                running.set(false);
+                exported.complete(count);
+            } catch (IOException | RuntimeException e) {
+                running.set(false);
+                Logs.logErrorWithStackTrace(e.getStackTrace(), "Export of users to " + target + " failed.");
+                exported.completeExceptionally(e);
+            }
+        });
+        return new Export(target, exported);
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public static long export(UserRepository users, Path target) throws IOException {
+        if (users == null || target == null) {
+            throw new IllegalArgumentException("User repository and target file cannot be null.");
+        }
+
+        Path parent = target.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tempPath = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        long[] exported = {0};
+        long[] skipped = {0};
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+             Writer out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE)) {
+            users.forEachInSnapshot(user -> {
+                try {
+                    UserJsonLines.write(out, user);
+                    exported[0]++;
+                } catch (IllegalArgumentException e) {
+                    // one broken wallet should not cost everybody else their export
+                    skipped[0]++;
+                    Logs.logErrorWithStackTrace(e.getStackTrace(),
+                        "Skipped user " + user.getUsername() + " in export to " + target + ": " + e.getMessage());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.flush();
+            channel.force(true);
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(tempPath);
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+
+        Files.move(tempPath, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (skipped[0] > 0) {
+            Logs.logErrorWithStackTrace(new StackTraceElement[0],
+                "Export to " + target + " left out " + skipped[0] + " users whose wallets could not be written.");
+        }
+        return exported[0];
+    }
+}
@@ -0,0 +1,118 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public final class UserFileMigration {
+    private static final String TEMP_SUFFIX = ".migrating";
+
+    private UserFileMigration() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: UserFileMigration <legacy users file> [target file]");
+            System.exit(1);
+        }
+
+        Path source = Path.of(args[0]);
+        Path target = args.length == 2 ? Path.of(args[1]) : source;
+        int migrated = migrate(source, target);
+        System.out.println("Migrated " + migrated + " users to " + target + ".");
+    }
+
+    public static int migrate(Path source, Path target) throws IOException {
+        if (source == null || target == null) {
+            throw new IllegalArgumentException("Source and target files cannot be null.");
+        }
+
+        Map<String, User> users = new LinkedHashMap<>();
+        long checkpointLsn = 0;
+        if (Files.size(source) > 0) {
+            checkpointLsn = UserCodec.read(source, user -> users.putIfAbsent(user.getUsername(), user));
+        }
+
+        Path tempPath = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream out = Channels.newOutputStream(channel)) {
+            UserCodec.write(out, checkpointLsn, users.values());
+            channel.force(true);
+        }
+        Files.move(tempPath, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return users.size();
+    }
+
+    // the store is built beside its final directory and renamed into place, so an interrupted import leaves no
+    // store behind and simply runs again on the next start
+    public static long importInto(Path source, Path storeDirectory) throws IOException {
+        if (source == null || storeDirectory == null) {
+            throw new IllegalArgumentException("Source file and store directory cannot be null.");
+        }
+        if (Files.exists(storeDirectory)) {
+            throw new IOException("User store " + storeDirectory + " already exists.");
+        }
+
+        Path tempDirectory = storeDirectory.resolveSibling(storeDirectory.getFileName() + TEMP_SUFFIX);
+        deleteDirectory(tempDirectory);
+        long imported;
+        try {
+            try (LazyUserStore store = new LazyUserStore(tempDirectory)) {
+                imported = importInto(source, store);
+            }
+            Files.move(tempDirectory, storeDirectory, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            deleteDirectory(tempDirectory);
+            throw e;
+        }
+        return imported;
+    }
+
+    private static long importInto(Path source, LazyUserStore store) throws IOException {
+        if (Files.size(source) == 0) {
+            return 0;
+        }
+
+        long[] imported = {0};
+        long checkpointLsn;
+        try {
+            checkpointLsn = UserCodec.read(source, user -> {
+                try {
+                    store.store(user);
+                    imported[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        store.checkpoint(checkpointLsn);
+        return imported[0];
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
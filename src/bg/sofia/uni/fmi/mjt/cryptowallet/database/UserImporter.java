@@ -0,0 +1,75 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.exception.UserAlreadyExistsException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// seeds a stopped server from a UserExporter file; users that already exist in the target are left untouched
+public final class UserImporter {
+    private UserImporter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: UserImporter <export file> <user store directory>");
+            System.exit(1);
+        }
+
+        Path source = Path.of(args[0]);
+        Path directory = Path.of(args[1]);
+        long imported;
+        try (LazyUserStore store = new LazyUserStore(directory)) {
+            imported = importInto(source, store);
+        }
+        System.out.println("Imported " + imported + " users into " + directory + ".");
+    }
+
+    // appends straight to the store, so the importing process needs no more memory than one user at a time
+    public static long importInto(Path source, LazyUserStore store) throws IOException {
+        if (source == null || store == null) {
+            throw new IllegalArgumentException("Source file and user store cannot be null.");
+        }
+
+        long[] imported = {0};
+        try (Reader in = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+            UserJsonLines.read(in, user -> {
+                try {
+                    if (!store.contains(user.getUsername())) {
+                        store.store(user);
+                        imported[0]++;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        store.checkpoint(store.getCheckpointLsn());
+        return imported[0];
+    }
+
+    public static long importInto(Path source, UserRepository users) throws IOException {
+        if (source == null || users == null) {
+            throw new IllegalArgumentException("Source file and user repository cannot be null.");
+        }
+
+        long[] imported = {0};
+        try (Reader in = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+            UserJsonLines.read(in, user -> {
+                try {
+                    users.create(user);
+                    imported[0]++;
+                } catch (UserAlreadyExistsException e) {
+                    // the target keeps its own copy
+                }
+            });
+        }
+        return imported[0];
+    }
+}
@@ -0,0 +1,145 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import bg.sofia.uni.fmi.mjt.cryptowallet.wallet.Wallet;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/*
+ * One user per line: {"username":..,"passwordHash":..,"balance":..,"assets":[{"id":..,"purchasePrice":..,
+ * "amounts":[..]}]}. Journal LSNs are local to the exporting server and are left out, so imported wallets start
+ * from zero and replay cleanly against the importing server's journal.
+ */
+final class UserJsonLines {
+    private static final String USERNAME = "username";
+    private static final String PASSWORD_HASH = "passwordHash";
+    private static final String BALANCE = "balance";
+    private static final String ASSETS = "assets";
+    private static final String ID = "id";
+    private static final String PURCHASE_PRICE = "purchasePrice";
+    private static final String AMOUNTS = "amounts";
+
+    private UserJsonLines() {
+    }
+
+    // the JsonWriter is neither flushed nor closed, so the caller's buffered writer decides when bytes hit the disk.
+    // a wallet JSON cannot represent is rejected before anything is written, so the output never holds half a line
+    static void write(Writer out, User user) throws IOException {
+        Wallet wallet = user.getWallet();
+        requireFinite(user, wallet);
+        JsonWriter json = new JsonWriter(out);
+        json.beginObject();
+        json.name(USERNAME).value(user.getUsername());
+        json.name(PASSWORD_HASH).value(user.getPasswordHash());
+        json.name(BALANCE).value(wallet.getBalance());
+        json.name(ASSETS).beginArray();
+        for (Map.Entry<String, Double> entry : wallet.getPurchasedAssets().entrySet()) {
+            json.beginObject();
+            json.name(ID).value(entry.getKey());
+            json.name(PURCHASE_PRICE).value(entry.getValue());
+            json.name(AMOUNTS).beginArray();
+            for (double amount : wallet.getPurchasedAssetsAmount().getOrDefault(entry.getKey(), Set.of())) {
+                json.value(amount);
+            }
+            json.endArray();
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+        out.write('\n');
+    }
+
+    private static void requireFinite(User user, Wallet wallet) {
+        boolean finite = Double.isFinite(wallet.getBalance())
+            && wallet.getPurchasedAssets().values().stream().allMatch(Double::isFinite)
+            && wallet.getPurchasedAssetsAmount().values().stream().flatMap(Set::stream).allMatch(Double::isFinite);
+        if (!finite) {
+            throw new IllegalArgumentException("Wallet of " + user.getUsername() + " holds a non-finite amount.");
+        }
+    }
+
+    static long read(Reader in, Consumer<User> consumer) throws IOException {
+        long read = 0;
+        JsonReader json = new JsonReader(in);
+        // lenient mode accepts a stream of top-level objects, which is what JSON lines are
+        json.setLenient(true);
+        try {
+            while (json.peek() != JsonToken.END_DOCUMENT) {
+                consumer.accept(readUser(json));
+                read++;
+            }
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("User export is malformed after " + read + " users.", e);
+        }
+        return read;
+    }
+
+    private static User readUser(JsonReader json) throws IOException {
+        String username = null;
+        String passwordHash = null;
+        double balance = 0;
+        Map<String, Double> purchasePrices = new HashMap<>();
+        Map<String, Set<Double>> amounts = new HashMap<>();
+
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case USERNAME -> username = json.nextString();
+                case PASSWORD_HASH -> passwordHash = json.nextString();
+                case BALANCE -> balance = json.nextDouble();
+                case ASSETS -> readAssets(json, purchasePrices, amounts);
+                default -> json.skipValue();
+            }
+        }
+        json.endObject();
+
+        if (username == null || passwordHash == null) {
+            throw new IOException("Exported user is missing its username or password hash.");
+        }
+        return User.withPasswordHash(username, passwordHash, Wallet.restore(balance, purchasePrices, amounts, 0));
+    }
+
+    private static void readAssets(JsonReader json, Map<String, Double> purchasePrices,
+                                   Map<String, Set<Double>> amounts) throws IOException {
+        json.beginArray();
+        while (json.hasNext()) {
+            String id = null;
+            double purchasePrice = 0;
+            Set<Double> lots = new HashSet<>();
+
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case ID -> id = json.nextString();
+                    case PURCHASE_PRICE -> purchasePrice = json.nextDouble();
+                    case AMOUNTS -> {
+                        json.beginArray();
+                        while (json.hasNext()) {
+                            lots.add(json.nextDouble());
+                        }
+                        json.endArray();
+                    }
+                    default -> json.skipValue();
+                }
+            }
+            json.endObject();
+
+            if (id == null) {
+                throw new IOException("Exported asset is missing its id.");
+            }
+            purchasePrices.put(id, purchasePrice);
+            amounts.put(id, lots);
+        }
+        json.endArray();
+    }
+}
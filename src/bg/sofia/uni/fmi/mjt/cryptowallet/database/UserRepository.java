@@ -0,0 +1,44 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.exception.UserAlreadyExistsException;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface UserRepository extends AutoCloseable {
+    User findByUsername(String username);
+
+    void create(User user) throws UserAlreadyExistsException;
+
+    // undoes a registration whose journal record could not be written
+    void remove(String username);
+
+    // called after a wallet was changed in place
+    void updateWallet(User user);
+
+    // batches hold detached copies, so consumers may keep them while trading continues
+    void forEachBatch(int batchSize, Consumer<List<User>> consumer);
+
+    // streams every user as of a single instant while trading goes on, holding no full copy of the set
+    void forEachInSnapshot(Consumer<User> consumer);
+
+    // called under the wallet lock right before a wallet is changed in place
+    default void beforeUpdate(User user) {
+    }
+
+    // a session mutates the acquired instance until release, so backends that cache users must keep it
+    default User acquire(String username) {
+        return findByUsername(username);
+    }
+
+    default void release(User user) {
+    }
+
+    default WalletJournal getJournal() {
+        return null;
+    }
+
+    @Override
+    void close();
+}
@@ -4,25 +4,54 @@ import bg.sofia.uni.fmi.mjt.cryptowallet.exception.UserAlreadyExistsException;
 import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.EOFException;
-import java.io.FileNotFoundException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashSet;
-import java.util.Set;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
-public class UserSet implements AutoCloseable {
+public class UserSet extends CheckpointedUserRepository {
+
+    private static final String TEMP_SUFFIX = ".tmp";
 
     private final String usersFilePath;
-    private final Set<User> users;
+    private final int shardCount;
+    private final Map<String, User> users;
 
     public UserSet(String usersFilePath) {
+        this(usersFilePath, null);
+    }
+
+    public UserSet(String usersFilePath, WalletJournal journal) {
+        this(usersFilePath, journal, 1);
+    }
+
+    // with more than one shard, users are spread by username hash over usersFilePath.0 .. usersFilePath.(n-1)
+    public UserSet(String usersFilePath, WalletJournal journal, int shardCount) {
+        super(journal);
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive.");
+        }
+
         this.usersFilePath = usersFilePath;
-        users = new HashSet<>();
-        loadData(usersFilePath);
+        this.shardCount = shardCount;
+        users = new ConcurrentHashMap<>();
+        loadShards();
+        recoverJournal();
     }
 
     public void loadData(String path) {
@@ -33,19 +62,12 @@ public class UserSet implements AutoCloseable {
         }
         Path userPath = Path.of(path);
         if (Files.exists(userPath)) {
-            try (var objectInputStream = new ObjectInputStream(Files.newInputStream(userPath))) {
-                Object userObject;
-                while ((userObject = objectInputStream.readObject()) != null) {
-                    users.add((User) userObject);
+            try {
+                if (Files.size(userPath) > 0) {
+                    setCheckpointLsn(UserCodec.read(userPath, user -> users.putIfAbsent(user.getUsername(), user)));
                 }
-            } catch (EOFException e) {
-                //otherwise it crashes when end of file is reached
-            } catch (FileNotFoundException e) {
-                throw new IllegalStateException("The files does not exist", e);
             } catch (IOException e) {
                 throw new IllegalStateException("A problem occurred while reading from a file", e);
-            } catch (ClassNotFoundException e) {
-                throw new RuntimeException(e);
             }
         } else {
             try {
@@ -56,35 +78,236 @@ public class UserSet implements AutoCloseable {
         }
     }
 
-    private void saveData(String path) {
-        Path userPath = Path.of(path);
+    private void loadShards() {
+        List<Path> files = persistedFiles();
+        if (shardCount == 1 && (files.isEmpty() || files.equals(List.of(shardPath(0))))) {
+            loadData(usersFilePath);
+            return;
+        }
 
-        try (var objectOutputStream = new ObjectOutputStream(Files.newOutputStream(userPath))) {
-            for (User user : users) {
-                objectOutputStream.writeObject(user);
-                objectOutputStream.flush();
+        Path directory = shardPath(0).toAbsolutePath().getParent();
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create the users directory", e);
+        }
+
+        long lsn = Long.MAX_VALUE;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Long>> loads = new ArrayList<>();
+            for (Path file : files) {
+                loads.add(executor.submit(() -> readUsersFile(file)));
+            }
+            for (Future<Long> load : loads) {
+                Long fileLsn = await(load);
+                if (fileLsn != null) {
+                    lsn = Math.min(lsn, fileLsn);
+                }
             }
+        }
+        // shards of an interrupted checkpoint may disagree; replaying from the oldest one is idempotent per wallet
+        setCheckpointLsn(lsn == Long.MAX_VALUE ? 0 : lsn);
+    }
+
+    private Long readUsersFile(Path file) throws IOException {
+        if (Files.size(file) == 0) {
+            return null;
+        }
+
+        return UserCodec.read(file, user -> users.merge(user.getUsername(), user, UserSet::newer));
+    }
+
+    private static User newer(User existing, User candidate) {
+        return candidate.getWallet().getLastLsn() > existing.getWallet().getLastLsn() ? candidate : existing;
+    }
+
+    private List<Path> persistedFiles() {
+        Path base = shardPath(0).toAbsolutePath();
+        Path directory = base.getParent();
+        String baseName = Path.of(usersFilePath).getFileName().toString();
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> isUsersFileName(file.getFileName().toString(), baseName))
+                .map(file -> Path.of(usersFilePath).resolveSibling(file.getFileName()))
+                .sorted()
+                .toList();
+        } catch (IOException e) {
+            throw new IllegalStateException("A problem occurred while listing the user files", e);
+        }
+    }
+
+    private static boolean isUsersFileName(String name, String baseName) {
+        if (name.equals(baseName)) {
+            return true;
+        }
+
+        String suffix = name.startsWith(baseName + ".") ? name.substring(baseName.length() + 1) : "";
+        return !suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit);
+    }
+
+    private Path shardPath(int shard) {
+        Path base = Path.of(usersFilePath);
+        return shardCount == 1 ? base : base.resolveSibling(base.getFileName() + "." + shard);
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading or writing user files", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A problem occurred while reading or writing user files", e.getCause());
+        }
+    }
+
+    @Override
+    boolean isPersisted() {
+        return Files.exists(shardPath(0));
+    }
+
+    @Override
+    void persist(long lsn) {
+        saveShards(lsn);
+    }
+
+    private void saveShards(long lsn) {
+        if (shardCount == 1) {
+            saveData(shardPath(0), lsn, users.values());
+        } else {
+            List<List<User>> partitions = new ArrayList<>(shardCount);
+            for (int shard = 0; shard < shardCount; shard++) {
+                partitions.add(new ArrayList<>(users.size() / shardCount + 1));
+            }
+            for (User user : users.values()) {
+                partitions.get(Math.floorMod(user.getUsername().hashCode(), shardCount)).add(user);
+            }
+
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<Object>> saves = new ArrayList<>();
+                for (int shard = 0; shard < shardCount; shard++) {
+                    Path shardPath = shardPath(shard);
+                    List<User> partition = partitions.get(shard);
+                    saves.add(executor.submit(() -> {
+                        saveData(shardPath, lsn, partition);
+                        return null;
+                    }));
+                }
+                saves.forEach(UserSet::await);
+            }
+        }
+
+        deleteStaleFiles();
+    }
+
+    // files left over from a different shard count are removed only once every current shard is on disk
+    private void deleteStaleFiles() {
+        List<Path> current = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            current.add(shardPath(shard));
+        }
+
+        for (Path file : persistedFiles()) {
+            if (!current.contains(file)) {
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    Logs.logErrorWithStackTrace(e.getStackTrace(), "Could not delete stale users file " + file);
+                }
+            }
+        }
+    }
+
+    private void saveData(Path userPath, long lsn, Collection<User> toSave) {
+        Path tempPath = userPath.resolveSibling(userPath.getFileName() + TEMP_SUFFIX);
+
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+             var out = Channels.newOutputStream(channel)) {
+            UserCodec.write(out, lsn, () -> toSave.stream().map(User::snapshot).iterator());
+            channel.force(true);
         } catch (IOException e) {
             throw new IllegalStateException("A problem occurred while saving users to file", e);
         }
+
+        try {
+            Files.move(tempPath, userPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalStateException("A problem occurred while replacing the users file", e);
+        }
     }
 
     @Override
-    public void close() {
-        saveData(usersFilePath);
+    void applyRegistration(User registered) {
+        users.putIfAbsent(registered.getUsername(), registered);
     }
 
-    public void addUser(User toAdd) throws UserAlreadyExistsException {
-        for (User u : users) {
-            if (u.getUsername().equals(toAdd.getUsername())) {
-                throw new UserAlreadyExistsException("User already exists.");
+    @Override
+    public void create(User user) throws UserAlreadyExistsException {
+        addUser(user);
+    }
+
+    @Override
+    public void remove(String username) {
+        if (username != null) {
+            users.remove(username);
+        }
+    }
+
+    // the whole set is rewritten at each checkpoint, so there is nothing to track per user
+    @Override
+    public void updateWallet(User user) {
+    }
+
+    @Override
+    public void forEachBatch(int batchSize, Consumer<List<User>> consumer) {
+        if (batchSize <= 0 || consumer == null) {
+            throw new IllegalArgumentException("Batch size must be positive and consumer cannot be null.");
+        }
+
+        List<User> batch = new ArrayList<>(batchSize);
+        for (User user : users.values()) {
+            batch.add(user.snapshot());
+            if (batch.size() == batchSize) {
+                consumer.accept(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            consumer.accept(batch);
+        }
+    }
+
+    @Override
+    void walkSnapshot(Snapshot active, Consumer<User> consumer) {
+        beginSnapshot(active);
+        for (User user : users.values()) {
+            if (!active.isCreated(user.getUsername())) {
+                consumer.accept(active.stateOf(user));
             }
         }
+    }
+
+    public void addUser(User toAdd) throws UserAlreadyExistsException {
+        if (toAdd == null || toAdd.getUsername() == null) {
+            throw new IllegalArgumentException("User and username cannot be null.");
+        }
+
+        if (users.putIfAbsent(toAdd.getUsername(), toAdd) != null) {
+            throw new UserAlreadyExistsException("User already exists.");
+        }
+        markCreated(toAdd);
+    }
 
-        users.add(toAdd);
+    @Override
+    public User getUser(String username) {
+        return username == null ? null : users.get(username);
     }
 
-    public Set<User> getUsers() {
-        return users;
+    public Collection<User> getUsers() {
+        return Collections.unmodifiableCollection(users.values());
     }
 }
@@ -0,0 +1,541 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.database;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+public class WalletJournal implements AutoCloseable {
+    public static final int DEFAULT_GROUP_COMMIT_SIZE = 128;
+    public static final Duration DEFAULT_GROUP_COMMIT_INTERVAL = Duration.ofMillis(2);
+
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+
+    private record PendingRecord(long lsn, ByteBuffer bytes, CompletableFuture<Long> durable) {
+    }
+
+    private final Path path;
+    private final int groupCommitSize;
+    private final long groupCommitNanos;
+    private final ReentrantLock lock;
+    private final Condition batchReady;
+    private final LongAdder syncs;
+
+    private FileChannel channel;
+    private List<PendingRecord> pending;
+    private CompletableFuture<Long> rotation;
+    private long rotationLsn;
+    private long firstPendingNanos;
+    private long nextLsn;
+    private volatile long durableLsn;
+    private IOException failure;
+    private boolean recovered;
+    private boolean closed;
+    private Thread flusher;
+
+    public WalletJournal(Path path) throws IOException {
+        this(path, DEFAULT_GROUP_COMMIT_SIZE, DEFAULT_GROUP_COMMIT_INTERVAL);
+    }
+
+    public WalletJournal(Path path, int groupCommitSize, Duration groupCommitInterval) throws IOException {
+        if (path == null || groupCommitInterval == null) {
+            throw new IllegalArgumentException("Journal path and commit interval cannot be null.");
+        }
+        if (groupCommitSize <= 0 || groupCommitInterval.isNegative()) {
+            throw new IllegalArgumentException("Group commit size must be positive and interval non-negative.");
+        }
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        this.path = path;
+        this.channel = openActive(path);
+        this.groupCommitSize = groupCommitSize;
+        this.groupCommitNanos = groupCommitInterval.toNanos();
+        this.lock = new ReentrantLock();
+        this.batchReady = lock.newCondition();
+        this.syncs = new LongAdder();
+        this.pending = new ArrayList<>();
+        this.nextLsn = 1;
+    }
+
+    public long recover(long afterLsn, Consumer<JournalRecord> consumer) throws IOException {
+        if (consumer == null) {
+            throw new IllegalArgumentException("Consumer cannot be null.");
+        }
+
+        lock.lock();
+        try {
+            if (recovered) {
+                throw new IllegalStateException("Journal was already recovered.");
+            }
+
+            Replay replay = new Replay(afterLsn, consumer);
+            for (Path segment : listSegments()) {
+                if (replay.readSegment(segment) < Files.size(segment)) {
+                    Logs.logErrorWithStackTrace(new StackTraceElement[0],
+                        "Archived journal segment " + segment + " has a corrupt tail.");
+                }
+            }
+            long validEnd = replay.readSegment(path);
+
+            if (channel.size() > validEnd) {
+                Logs.logErrorWithStackTrace(new StackTraceElement[0],
+                    "Discarding torn tail of journal " + path + " at offset " + validEnd + ".");
+                channel.truncate(validEnd);
+                channel.force(true);
+            }
+            channel.position(validEnd);
+
+            nextLsn = replay.lastLsn + 1;
+            durableLsn = replay.lastLsn;
+            recovered = true;
+            flusher = Thread.ofPlatform().daemon().name("wallet-journal").start(this::runFlusher);
+            return replay.replayed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public CompletableFuture<Long> append(JournalRecord record) {
+        if (record == null) {
+            throw new IllegalArgumentException("Record cannot be null.");
+        }
+
+        lock.lock();
+        try {
+            if (!recovered || closed) {
+                throw new IllegalStateException("Journal is not open for appending.");
+            }
+            if (failure != null) {
+                return CompletableFuture.failedFuture(failure);
+            }
+
+            long lsn = nextLsn++;
+            PendingRecord entry = new PendingRecord(lsn, encode(record.withLsn(lsn)), new CompletableFuture<>());
+            if (pending.isEmpty()) {
+                firstPendingNanos = System.nanoTime();
+            }
+            pending.add(entry);
+            if (pending.size() == 1 || pending.size() >= groupCommitSize) {
+                batchReady.signal();
+            }
+            return entry.durable();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public CompletableFuture<Long> rotate() {
+        lock.lock();
+        try {
+            if (!recovered || closed) {
+                throw new IllegalStateException("Journal is not open for rotation.");
+            }
+            if (failure != null) {
+                return CompletableFuture.failedFuture(failure);
+            }
+
+            if (rotation == null) {
+                rotation = new CompletableFuture<>();
+                rotationLsn = nextLsn - 1;
+                batchReady.signal();
+            }
+            return rotation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int deleteSegmentsUpTo(long lsn) throws IOException {
+        int deleted = 0;
+        for (Path segment : listSegments()) {
+            if (segmentLsn(segment) <= lsn && Files.deleteIfExists(segment)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    public long getLastLsn() {
+        lock.lock();
+        try {
+            return nextLsn - 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDurableLsn() {
+        return durableLsn;
+    }
+
+    // a failed write closes the journal for good; the server has to be restarted to recover from it
+    public boolean hasFailed() {
+        return getFailure() != null;
+    }
+
+    public long getSyncCount() {
+        return syncs.sum();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Thread running;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            running = flusher;
+            batchReady.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        if (running != null) {
+            try {
+                running.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        channel.close();
+    }
+
+    private void runFlusher() {
+        while (true) {
+            List<PendingRecord> batch;
+            CompletableFuture<Long> rotated = null;
+            long rotatedLsn = 0;
+            lock.lock();
+            try {
+                while (pending.isEmpty() && rotation == null && !closed) {
+                    batchReady.awaitUninterruptibly();
+                }
+                if (pending.isEmpty() && rotation == null) {
+                    return;
+                }
+
+                long remaining = firstPendingNanos + groupCommitNanos - System.nanoTime();
+                while (rotation == null && pending.size() < groupCommitSize && !closed && remaining > 0) {
+                    remaining = awaitBatch(remaining);
+                }
+                batch = takeBatch();
+                if (rotation != null) {
+                    rotated = rotation;
+                    rotatedLsn = rotationLsn;
+                    rotation = null;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+            }
+            if (rotated != null) {
+                rotateSegment(rotatedLsn, rotated);
+            }
+        }
+    }
+
+    private List<PendingRecord> takeBatch() {
+        if (rotation == null) {
+            List<PendingRecord> batch = pending;
+            pending = new ArrayList<>();
+            return batch;
+        }
+
+        int split = 0;
+        while (split < pending.size() && pending.get(split).lsn() <= rotationLsn) {
+            split++;
+        }
+        List<PendingRecord> batch = new ArrayList<>(pending.subList(0, split));
+        pending = new ArrayList<>(pending.subList(split, pending.size()));
+        if (!pending.isEmpty()) {
+            firstPendingNanos = System.nanoTime();
+        }
+        return batch;
+    }
+
+    private void rotateSegment(long lastLsn, CompletableFuture<Long> rotated) {
+        IOException failed = getFailure();
+        if (failed != null) {
+            rotated.completeExceptionally(failed);
+            return;
+        }
+
+        try {
+            if (channel.size() > 0) {
+                channel.force(true);
+                channel.close();
+                Files.move(path, segmentPath(lastLsn), StandardCopyOption.ATOMIC_MOVE);
+                channel = openActive(path);
+            }
+            rotated.complete(lastLsn);
+        } catch (IOException e) {
+            Logs.logErrorWithStackTrace(e.getStackTrace(), "Could not rotate journal " + path + ".");
+            rotated.completeExceptionally(e);
+            reopenAfterFailedRotation();
+        }
+    }
+
+    private void reopenAfterFailedRotation() {
+        if (channel.isOpen()) {
+            return;
+        }
+
+        try {
+            channel = openActive(path);
+        } catch (IOException e) {
+            Logs.logErrorWithStackTrace(e.getStackTrace(), "Could not reopen journal " + path + ".");
+        }
+    }
+
+    private static FileChannel openActive(Path path) throws IOException {
+        FileChannel opened = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        opened.position(opened.size());
+        return opened;
+    }
+
+    private Path segmentPath(long lastLsn) {
+        return path.resolveSibling(path.getFileName() + "." + lastLsn);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        String prefix = path.getFileName() + ".";
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(prefix))
+                .filter(file -> segmentLsn(file) >= 0)
+                .sorted(Comparator.comparingLong(WalletJournal::segmentLsn))
+                .toList();
+        }
+    }
+
+    private static long segmentLsn(Path segment) {
+        String name = segment.getFileName().toString();
+        String suffix = name.substring(name.lastIndexOf('.') + 1);
+        if (suffix.isEmpty() || !suffix.chars().allMatch(Character::isDigit)) {
+            return -1;
+        }
+        return Long.parseLong(suffix);
+    }
+
+    private static final class Replay {
+        private final long afterLsn;
+        private final Consumer<JournalRecord> consumer;
+        private long lastLsn;
+        private long replayed;
+
+        private Replay(long afterLsn, Consumer<JournalRecord> consumer) {
+            this.afterLsn = afterLsn;
+            this.consumer = consumer;
+            this.lastLsn = afterLsn;
+        }
+
+        private long readSegment(Path segment) throws IOException {
+            long validEnd = 0;
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(segment));
+                 DataInputStream data = new DataInputStream(in)) {
+                byte[] payload;
+                while ((payload = readPayload(data)) != null) {
+                    JournalRecord record = decodePayload(payload);
+                    validEnd += HEADER_SIZE + payload.length;
+                    lastLsn = Math.max(lastLsn, record.lsn());
+                    if (record.lsn() > afterLsn) {
+                        consumer.accept(record);
+                        replayed++;
+                    }
+                }
+            }
+            return validEnd;
+        }
+    }
+
+    private long awaitBatch(long nanos) {
+        try {
+            return batchReady.awaitNanos(nanos);
+        } catch (InterruptedException e) {
+            return 0;
+        }
+    }
+
+    private void writeBatch(List<PendingRecord> batch) {
+        ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = batch.get(i).bytes();
+        }
+
+        long batchStart = -1;
+        try {
+            batchStart = channel.position();
+            while (buffers[buffers.length - 1].hasRemaining()) {
+                channel.write(buffers);
+            }
+            channel.force(false);
+            syncs.increment();
+            durableLsn = batch.get(batch.size() - 1).lsn();
+            for (PendingRecord record : batch) {
+                record.durable().complete(record.lsn());
+            }
+        } catch (IOException e) {
+            Logs.logErrorWithStackTrace(e.getStackTrace(), "Could not write journal batch to " + path + ".");
+            discardFrom(batchStart);
+            failClosed(batch, e);
+        }
+    }
+
+    // torn bytes of the failed batch would sit between acknowledged records, so they go before anything else
+    private void discardFrom(long offset) {
+        if (offset < 0) {
+            return;
+        }
+
+        try {
+            channel.truncate(offset);
+            channel.position(offset);
+            channel.force(true);
+        } catch (IOException e) {
+            Logs.logErrorWithStackTrace(e.getStackTrace(),
+                "Could not discard failed batch of journal " + path + "; recovery drops it as a torn tail.");
+        }
+    }
+
+    // nothing is appended after a failed write, so whatever reached the disk stays a prefix of what was acknowledged
+    private void failClosed(List<PendingRecord> batch, IOException cause) {
+        List<PendingRecord> queued;
+        lock.lock();
+        try {
+            failure = cause;
+            queued = pending;
+            pending = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+
+        // newest first, so callers undoing their changes unwind a wallet in reverse order
+        for (int i = queued.size() - 1; i >= 0; i--) {
+            queued.get(i).durable().completeExceptionally(cause);
+        }
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            batch.get(i).durable().completeExceptionally(cause);
+        }
+    }
+
+    private IOException getFailure() {
+        lock.lock();
+        try {
+            return failure;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static ByteBuffer encode(JournalRecord record) {
+        byte[] payload = encodePayload(record);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        buffer.putInt(payload.length);
+        buffer.putInt((int) checksum(payload));
+        buffer.put(payload);
+        return buffer.flip();
+    }
+
+    private static byte[] encodePayload(JournalRecord record) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(record.lsn());
+            out.writeByte(record.type().ordinal());
+            out.writeUTF(record.username());
+            switch (record.type()) {
+                case REGISTER -> out.writeUTF(record.text());
+                case DEPOSIT -> out.writeDouble(record.amount());
+                case BUY -> {
+                    out.writeUTF(record.text());
+                    out.writeDouble(record.amount());
+                    out.writeDouble(record.price());
+                }
+                case SELL -> {
+                    out.writeUTF(record.text());
+                    out.writeDouble(record.price());
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode journal record.", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] readPayload(DataInputStream in) throws IOException {
+        byte[] payload;
+        try {
+            int length = in.readInt();
+            int crc = in.readInt();
+            if (length <= 0 || length > MAX_RECORD_SIZE) {
+                return null;
+            }
+            payload = in.readNBytes(length);
+            if (payload.length != length || (int) checksum(payload) != crc) {
+                return null;
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+
+        return payload;
+    }
+
+    private static JournalRecord decodePayload(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            long lsn = in.readLong();
+            JournalRecord.Type type = JournalRecord.Type.fromCode(in.readByte());
+            if (type == null) {
+                throw new IOException("Unknown journal record type.");
+            }
+            String username = in.readUTF();
+            return switch (type) {
+                case REGISTER -> new JournalRecord(lsn, type, username, in.readUTF(), 0, 0);
+                case DEPOSIT -> new JournalRecord(lsn, type, username, null, in.readDouble(), 0);
+                case BUY -> new JournalRecord(lsn, type, username, in.readUTF(), in.readDouble(), in.readDouble());
+                case SELL -> new JournalRecord(lsn, type, username, in.readUTF(), 0, in.readDouble());
+            };
+        }
+    }
+
+    private static long checksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return crc.getValue();
+    }
+}
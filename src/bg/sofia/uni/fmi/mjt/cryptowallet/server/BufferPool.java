@@ -0,0 +1,49 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+public class BufferPool {
+    private final int bufferSize;
+    private final int maxPooledBuffers;
+    private final Deque<ByteBuffer> freeBuffers;
+
+    public BufferPool(int bufferSize, int maxPooledBuffers) {
+        if (bufferSize <= 0 || maxPooledBuffers < 0) {
+            throw new IllegalArgumentException("Buffer size must be positive and pool size non-negative.");
+        }
+
+        this.bufferSize = bufferSize;
+        this.maxPooledBuffers = maxPooledBuffers;
+        this.freeBuffers = new ArrayDeque<>();
+    }
+
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+
+        buffer.clear();
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (owns(buffer) && freeBuffers.size() < maxPooledBuffers) {
+            freeBuffers.push(buffer);
+        }
+    }
+
+    public boolean owns(ByteBuffer buffer) {
+        return buffer.isDirect() && !buffer.isReadOnly() && buffer.capacity() == bufferSize;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getFreeCount() {
+        return freeBuffers.size();
+    }
+}
@@ -0,0 +1,204 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.server;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.Command;
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.CommandParser;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+public class ClientConnection {
+    public static final int HEADER_SIZE = Integer.BYTES;
+    public static final int MAX_FRAME_SIZE = 16384;
+    public static final int MAX_QUEUED_BYTES = 262144;
+    public static final int RESUME_QUEUED_BYTES = 65536;
+    public static final int MAX_COMMANDS_IN_FLIGHT = 256;
+    private static final int INITIAL_BUFFER_SIZE = 512;
+
+    private ByteBuffer inputBuffer;
+    private final Deque<ByteBuffer> outboundQueue;
+    private final Map<String, ByteBuffer> coalescedPriceUpdates;
+    private long queuedBytes;
+    private boolean readsPaused;
+    private boolean closing;
+    private final SerialExecutor commandQueue;
+    private int commandsInFlight;
+    private volatile boolean closeRequested;
+
+    public ClientConnection() {
+        this(null);
+    }
+
+    public ClientConnection(Executor commandPool) {
+        inputBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        outboundQueue = new ArrayDeque<>();
+        coalescedPriceUpdates = new LinkedHashMap<>();
+        commandQueue = commandPool == null ? null : new SerialExecutor(commandPool);
+    }
+
+    public int read(ReadableByteChannel sc) throws IOException {
+        if (!inputBuffer.hasRemaining()) {
+            inputBuffer = grow(inputBuffer, inputBuffer.capacity() * 2);
+        }
+
+        return sc.read(inputBuffer);
+    }
+
+    public Command nextCommand(CommandParser parser) throws ProtocolException {
+        inputBuffer.flip();
+        try {
+            if (inputBuffer.remaining() < HEADER_SIZE) {
+                return null;
+            }
+
+            int length = inputBuffer.getInt(inputBuffer.position());
+            if (length < 0 || length > MAX_FRAME_SIZE) {
+                throw new ProtocolException("Invalid frame length " + length + ".");
+            }
+
+            if (inputBuffer.remaining() < HEADER_SIZE + length) {
+                if (inputBuffer.capacity() < HEADER_SIZE + length) {
+                    inputBuffer.compact();
+                    inputBuffer = grow(inputBuffer, HEADER_SIZE + length);
+                    inputBuffer.flip();
+                }
+                return null;
+            }
+
+            int start = inputBuffer.position() + HEADER_SIZE;
+            inputBuffer.position(start + length);
+            return parser.parse(inputBuffer, start, start + length);
+        } finally {
+            inputBuffer.compact();
+        }
+    }
+
+    public void enqueue(ByteBuffer response) {
+        outboundQueue.add(response);
+        queuedBytes += response.remaining();
+        if (queuedBytes >= MAX_QUEUED_BYTES) {
+            readsPaused = true;
+        }
+    }
+
+    public boolean flush(WritableByteChannel sc) throws IOException {
+        return flush(sc, null);
+    }
+
+    public void pushPriceUpdate(String assetId, ByteBuffer update) {
+        if (queuedBytes >= RESUME_QUEUED_BYTES || !coalescedPriceUpdates.isEmpty()) {
+            coalescedPriceUpdates.put(assetId, update);
+            return;
+        }
+
+        enqueue(update);
+    }
+
+    public int getCoalescedPriceUpdateCount() {
+        return coalescedPriceUpdates.size();
+    }
+
+    public boolean flush(WritableByteChannel sc, BufferPool pool) throws IOException {
+        boolean drained = writeQueued(sc, pool);
+        if (!coalescedPriceUpdates.isEmpty() && queuedBytes <= RESUME_QUEUED_BYTES) {
+            for (ByteBuffer update : coalescedPriceUpdates.values()) {
+                enqueue(update);
+            }
+            coalescedPriceUpdates.clear();
+            drained = writeQueued(sc, pool);
+        }
+
+        if (readsPaused && queuedBytes <= RESUME_QUEUED_BYTES) {
+            readsPaused = false;
+        }
+
+        return drained;
+    }
+
+    private boolean writeQueued(WritableByteChannel sc, BufferPool pool) throws IOException {
+        ByteBuffer head;
+        while ((head = outboundQueue.peek()) != null) {
+            int written = sc.write(head);
+            queuedBytes -= written;
+            if (head.hasRemaining()) {
+                break;
+            }
+            outboundQueue.poll();
+            if (pool != null) {
+                pool.release(head);
+            }
+        }
+
+        return outboundQueue.isEmpty();
+    }
+
+    public void releaseOutput(BufferPool pool) {
+        ByteBuffer buffer;
+        while ((buffer = outboundQueue.poll()) != null) {
+            pool.release(buffer);
+        }
+        coalescedPriceUpdates.clear();
+        queuedBytes = 0;
+    }
+
+    public boolean hasPendingOutput() {
+        return !outboundQueue.isEmpty();
+    }
+
+    public long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    public boolean areReadsPaused() {
+        return readsPaused;
+    }
+
+    // without a command pool replies are written in command order, so one pending reply holds back the next command
+    public boolean isInputPaused() {
+        int maxInFlight = commandQueue == null ? 1 : MAX_COMMANDS_IN_FLIGHT;
+        return readsPaused || commandsInFlight >= maxInFlight;
+    }
+
+    public void submitCommand(Runnable command) {
+        commandsInFlight++;
+        commandQueue.execute(command);
+    }
+
+    public void awaitReply() {
+        commandsInFlight++;
+    }
+
+    public void completeCommand() {
+        commandsInFlight--;
+    }
+
+    public boolean isCloseRequested() {
+        return closeRequested;
+    }
+
+    public void requestClose() {
+        closeRequested = true;
+    }
+
+    public boolean isClosing() {
+        return closing;
+    }
+
+    public void markClosing() {
+        closing = true;
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+        ByteBuffer grown = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+}
@@ -0,0 +1,14 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.server;
+
+import java.nio.channels.SelectionKey;
+
+// a skipped completion carries no reply and only returns the command's in-flight slot
+public record CommandCompletion(SelectionKey key, String response, boolean skipped) {
+    public CommandCompletion(SelectionKey key, String response) {
+        this(key, response, false);
+    }
+
+    public static CommandCompletion skipped(SelectionKey key) {
+        return new CommandCompletion(key, null, true);
+    }
+}
@@ -1,171 +1,193 @@
 package bg.sofia.uni.fmi.mjt.cryptowallet.server;
 
 import bg.sofia.uni.fmi.mjt.cryptowallet.command.CommandExecutor;
-import bg.sofia.uni.fmi.mjt.cryptowallet.command.Command;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.AssetSnapshotStore;
 import bg.sofia.uni.fmi.mjt.cryptowallet.database.Logs;
 import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.ApiCallRunnable;
 import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.ApiCall;
+import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.CoinApiPriceFeed;
+import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.PriceFeed;
+import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.PriceRefreshScheduler;
+import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.RefreshMetrics;
+import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.RefreshPolicy;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Set;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 public class CryptocurrencyWalletManagerServer {
     private static final int SERVER_PORT = 7777;
     private static final String SERVER_HOST = "localhost";
-    private static final String DISCONNECT = "disconnect";
-    private static final String PROBLEM_OCCURRED_RESPONSE =
-        "A problem occurred while reading input. Try again.";
-    private static final String DISCONNECTED_SUCCESSFULLY_RESPONSE =
-        "Disconnected successfully.";
-    private static final String SHUTDOWN_RESPONSE =
-        "Server was shutdown.";
-    private static final int BUFFER_SIZE = 16384;
-    private static final int TIME_BETWEEN_API_REQUESTS = 30;
-
-    private boolean isServerWorking;
-    private ByteBuffer buffer;
+
+    private volatile boolean isServerWorking;
+    private volatile Selector acceptorSelector;
     private final CommandExecutor commandExecutor;
+    private final ServerConfig config;
+    private final List<SelectorWorker> workers;
+    private ExecutorService commandPool;
+    private volatile PriceRefreshScheduler priceRefreshScheduler;
+    private int nextWorker;
 
     public CryptocurrencyWalletManagerServer(CommandExecutor commandExecutor) {
+        this(commandExecutor, ServerConfig.defaults());
+    }
+
+    public CryptocurrencyWalletManagerServer(CommandExecutor commandExecutor, ServerConfig config) {
         this.commandExecutor = commandExecutor;
+        this.config = config;
+        this.workers = new CopyOnWriteArrayList<>();
         this.isServerWorking = true;
     }
 
     public void startServer() {
+        PricePublisher pricePublisher = new PricePublisher(config.framingMode(),
+            commandExecutor.getPriceSubscriptions(), workers);
+        commandExecutor.getAvailableAssets().addUpdateListener(pricePublisher);
         try (ServerSocketChannel serverSocketChannel = ServerSocketChannel.open()) {
-            Selector selector = Selector.open();
-            configureServerSocketChannel(serverSocketChannel, selector);
-
-            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            serverSocketChannel.bind(new InetSocketAddress(SERVER_HOST, SERVER_PORT));
+            serverSocketChannel.configureBlocking(false);
 
             isServerWorking = true;
-            while (isServerWorking) {
-                handleClientRequests(selector);
+            if (config.executionMode() == ExecutionMode.VIRTUAL_THREADS) {
+                commandPool = Executors.newVirtualThreadPerTaskExecutor();
+            }
+
+            if (config.isSingleReactor()) {
+                runSingleReactor(serverSocketChannel);
+            } else {
+                runMultiReactor(serverSocketChannel);
             }
         } catch (IOException e) {
             throw new RuntimeException("There was a problem with the server socket.", e);
         } catch (Exception e) {
             throw new RuntimeException("Exception was thrown by Autocloseable object");
+        } finally {
+            commandExecutor.getAvailableAssets().removeUpdateListener(pricePublisher);
+            if (commandPool != null) {
+                commandPool.close();
+            }
         }
     }
 
-    private void handleKey(SocketChannel sc, SelectionKey key) throws IOException {
-        String clientInput = readClientInput(sc, key);
+    private void runSingleReactor(ServerSocketChannel serverSocketChannel) throws IOException {
+        SelectorWorker worker = new SelectorWorker(this, commandExecutor, config.framingMode(), commandPool);
+        workers.add(worker);
+        worker.registerAcceptor(serverSocketChannel);
+        worker.run();
+    }
 
-        if (clientInput == null || !key.isValid()) {
-            return;
+    private void runMultiReactor(ServerSocketChannel serverSocketChannel) throws IOException, InterruptedException {
+        List<Thread> workerThreads = new ArrayList<>();
+        for (int i = 0; i < config.reactorCount(); i++) {
+            SelectorWorker worker = new SelectorWorker(this, commandExecutor, config.framingMode(), commandPool);
+            workers.add(worker);
+            Thread thread = new Thread(worker, "selector-worker-" + i);
+            workerThreads.add(thread);
+            thread.start();
         }
 
-        String response = null;
-
-        try {
-            response = commandExecutor
-                .execute(Command.createCommand(clientInput), key);
-        } catch (Exception e) {
-            Logs.logErrorWithStackTrace(e.getStackTrace(), e.getMessage());
+        try (Selector selector = Selector.open()) {
+            acceptorSelector = selector;
+            serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+            while (isServerWorking) {
+                acceptConnections(selector);
+            }
         } finally {
-            sendResponseToClient(sc, response);
+            stop();
+            for (Thread thread : workerThreads) {
+                thread.join();
+            }
         }
     }
 
-    private void handleClientRequests(Selector selector) throws IOException {
+    private void acceptConnections(Selector selector) throws IOException {
         int readyChannels = selector.select();
         if (readyChannels == 0) {
             return;
         }
 
-        Set<SelectionKey> selectedKeys = selector.selectedKeys();
-        Iterator<SelectionKey> keyIterator = selectedKeys.iterator();
-
+        Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
         while (keyIterator.hasNext()) {
             SelectionKey key = keyIterator.next();
-            if (key.isReadable()) {
-                SocketChannel sc = (SocketChannel) key.channel();
-                try {
-                    handleKey(sc, key);
-                } catch (IOException e) {
-                    if (e.getMessage().contains("Connection reset")) {
-                        handleDisconnect(sc, key);
-                    }
+            if (key.isAcceptable()) {
+                SocketChannel accept = ((ServerSocketChannel) key.channel()).accept();
+                if (accept != null) {
+                    nextWorker().addChannel(accept);
                 }
-            } else if (key.isAcceptable()) {
-                accept(selector, key);
             }
             keyIterator.remove();
         }
     }
 
-    private void configureServerSocketChannel(ServerSocketChannel channel, Selector selector) throws IOException {
-        channel.bind(new InetSocketAddress(SERVER_HOST, SERVER_PORT));
-        channel.configureBlocking(false);
-        channel.register(selector, SelectionKey.OP_ACCEPT);
+    private SelectorWorker nextWorker() {
+        SelectorWorker worker = workers.get(nextWorker);
+        nextWorker = (nextWorker + 1) % workers.size();
+        return worker;
     }
 
-    private String readClientInput(SocketChannel sc, SelectionKey key) throws IOException {
-        buffer.clear();
-        int r = sc.read(buffer);
-        //if end of stream is reached
-        if (r == -1) {
-            handleDisconnect(sc, key);
-            return null;
-        }
-
-        buffer.flip();
-        byte[] byteArray = new byte[buffer.remaining()];
-        buffer.get(byteArray);
-        return new String(byteArray, StandardCharsets.UTF_8);
+    // connections each reactor has taken on since start, in worker order
+    public List<Integer> getConnectionsPerWorker() {
+        return workers.stream().map(SelectorWorker::getRegisteredConnectionCount).toList();
     }
 
-    private void handleDisconnect(SocketChannel sc, SelectionKey key) throws IOException {
-        commandExecutor.execute(Command.createCommand(DISCONNECT), key);
-        sc.close();
-        key.cancel();
+    public boolean isServerWorking() {
+        return isServerWorking;
     }
 
-    private void sendResponseToClient(SocketChannel sc, String response) throws IOException {
-        if (response == null) {
-            response = PROBLEM_OCCURRED_RESPONSE;
+    public void stop() {
+        isServerWorking = false;
+        for (SelectorWorker worker : workers) {
+            worker.wakeup();
         }
 
-        buffer.clear();
-        buffer.put(response.getBytes());
-        buffer.flip();
-        sc.write(buffer);
-        if (response.equals(DISCONNECTED_SUCCESSFULLY_RESPONSE)) {
-            sc.close();
-        } else if (response.equals(SHUTDOWN_RESPONSE)) {
-            sc.close();
-            isServerWorking = false;
+        Selector selector = acceptorSelector;
+        if (selector != null) {
+            selector.wakeup();
         }
     }
 
-    private void accept(Selector selector, SelectionKey key) throws IOException {
-        ServerSocketChannel sockChannel = (ServerSocketChannel) key.channel();
-        SocketChannel accept = sockChannel.accept();
-        accept.configureBlocking(false);
-        accept.register(selector, SelectionKey.OP_READ);
+    public void start(ApiCall apiCall) {
+        start(apiCall, RefreshPolicy.defaults());
     }
 
-    public void start(ApiCall apiCall) {
+    public void start(ApiCall apiCall, RefreshPolicy refreshPolicy) {
+        start(apiCall, refreshPolicy, null);
+    }
+
+    public void start(ApiCall apiCall, RefreshPolicy refreshPolicy, AssetSnapshotStore snapshotStore) {
+        start(new CoinApiPriceFeed(apiCall), refreshPolicy, snapshotStore);
+    }
+
+    public void start(PriceFeed priceFeed, RefreshPolicy refreshPolicy, AssetSnapshotStore snapshotStore) {
         try (ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor()) {
-            Runnable apiCallRunnable = new ApiCallRunnable(apiCall, commandExecutor.getAvailableAssets());
-            Thread thread = new Thread(apiCallRunnable);
-            scheduledExecutorService.scheduleAtFixedRate(thread,
-                0, TIME_BETWEEN_API_REQUESTS, TimeUnit.MINUTES);
-            startServer();
+            Runnable apiCallRunnable = new ApiCallRunnable(priceFeed, commandExecutor.getAvailableAssets(),
+                snapshotStore);
+            PriceRefreshScheduler scheduler = new PriceRefreshScheduler(apiCallRunnable,
+                commandExecutor.getAvailableAssets(), refreshPolicy, scheduledExecutorService);
+            priceRefreshScheduler = scheduler;
+            scheduler.start();
+            try {
+                startServer();
+            } finally {
+                scheduler.stop();
+            }
         } catch (Exception e) {
             Logs.logErrorWithStackTrace(e.getStackTrace(), e.getMessage());
         }
     }
+
+    public RefreshMetrics getRefreshMetrics() {
+        PriceRefreshScheduler scheduler = priceRefreshScheduler;
+        return scheduler == null ? null : scheduler.getMetrics();
+    }
 }
\ No newline at end of file
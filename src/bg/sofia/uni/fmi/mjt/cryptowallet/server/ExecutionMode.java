@@ -0,0 +1,6 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.server;
+
+public enum ExecutionMode {
+    INLINE,
+    VIRTUAL_THREADS
+}
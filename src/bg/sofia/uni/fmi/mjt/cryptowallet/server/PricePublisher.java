@@ -0,0 +1,45 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.server;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.AssetsUpdateListener;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.PriceSubscriptions;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PricePublisher implements AssetsUpdateListener {
+    public static final String PRICE_UPDATE_PREFIX = "Price update: ";
+
+    private final FramingMode framingMode;
+    private final PriceSubscriptions subscriptions;
+    private final List<SelectorWorker> workers;
+
+    public PricePublisher(FramingMode framingMode, PriceSubscriptions subscriptions, List<SelectorWorker> workers) {
+        this.framingMode = framingMode;
+        this.subscriptions = subscriptions;
+        this.workers = workers;
+    }
+
+    @Override
+    public void onAssetsUpdated(List<Asset> changedAssets) {
+        // a raw client reads one reply per command, so an unsolicited push would be taken for the next reply
+        if (framingMode == FramingMode.RAW || !subscriptions.hasSubscribers()) {
+            return;
+        }
+
+        Map<String, ByteBuffer> updates = new HashMap<>();
+        for (Asset asset : changedAssets) {
+            updates.put(asset.getAssetId(), ResponseWriter.encodeShared(formatPriceUpdate(asset), framingMode));
+        }
+
+        for (SelectorWorker worker : workers) {
+            worker.publishPriceUpdates(updates);
+        }
+    }
+
+    public static String formatPriceUpdate(Asset asset) {
+        return PRICE_UPDATE_PREFIX + asset.getAssetId() + " " + asset.getPrice();
+    }
+}
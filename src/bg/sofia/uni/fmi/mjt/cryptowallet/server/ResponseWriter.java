@@ -0,0 +1,104 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.server;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.AvailableAssets;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.OfferingsSnapshot;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+public class ResponseWriter {
+    private final FramingMode framingMode;
+    private final BufferPool pool;
+    private final CharsetEncoder encoder;
+    private final Map<String, ByteBuffer> preEncoded;
+    private final AvailableAssets availableAssets;
+
+    public ResponseWriter(FramingMode framingMode, BufferPool pool, Collection<String> constantResponses) {
+        this(framingMode, pool, constantResponses, null);
+    }
+
+    public ResponseWriter(FramingMode framingMode, BufferPool pool, Collection<String> constantResponses,
+                          AvailableAssets availableAssets) {
+        this.framingMode = framingMode;
+        this.availableAssets = availableAssets;
+        this.pool = pool;
+        this.encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.preEncoded = new IdentityHashMap<>();
+        for (String response : constantResponses) {
+            preEncoded.put(response, encodeUnpooled(response).asReadOnlyBuffer());
+        }
+    }
+
+    public ByteBuffer encode(String response) {
+        ByteBuffer constant = preEncoded.get(response);
+        if (constant != null) {
+            return constant.duplicate();
+        }
+
+        if (availableAssets != null) {
+            OfferingsSnapshot offerings = availableAssets.getOfferingsSnapshot();
+            if (response == offerings.getText()) {
+                return offerings.getEncoded(framingMode == FramingMode.LENGTH_PREFIXED);
+            }
+        }
+
+        ByteBuffer buffer = pool.acquire();
+        if (encodeInto(response, buffer)) {
+            return buffer;
+        }
+
+        pool.release(buffer);
+        return encodeUnpooled(response);
+    }
+
+    public void release(ByteBuffer buffer) {
+        pool.release(buffer);
+    }
+
+    public static ByteBuffer encodeShared(String response, FramingMode framingMode) {
+        byte[] payload = response.getBytes(StandardCharsets.UTF_8);
+        int headerSize = framingMode == FramingMode.LENGTH_PREFIXED ? ClientConnection.HEADER_SIZE : 0;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(headerSize + payload.length);
+        if (headerSize > 0) {
+            buffer.putInt(payload.length);
+        }
+        buffer.put(payload).flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    private ByteBuffer encodeUnpooled(String response) {
+        int maxBytes = headerSize() + (int) Math.ceil(response.length() * (double) encoder.maxBytesPerChar());
+        ByteBuffer buffer = ByteBuffer.allocate(maxBytes);
+        encodeInto(response, buffer);
+        return buffer;
+    }
+
+    private boolean encodeInto(String response, ByteBuffer buffer) {
+        buffer.clear();
+        buffer.position(headerSize());
+        encoder.reset();
+        CoderResult result = encoder.encode(CharBuffer.wrap(response), buffer, true);
+        if (result.isOverflow() || encoder.flush(buffer).isOverflow()) {
+            return false;
+        }
+
+        buffer.flip();
+        if (framingMode == FramingMode.LENGTH_PREFIXED) {
+            buffer.putInt(0, buffer.limit() - ClientConnection.HEADER_SIZE);
+        }
+        return true;
+    }
+
+    private int headerSize() {
+        return framingMode == FramingMode.LENGTH_PREFIXED ? ClientConnection.HEADER_SIZE : 0;
+    }
+}
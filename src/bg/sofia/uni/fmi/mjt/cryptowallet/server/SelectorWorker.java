@@ -0,0 +1,407 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.server;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.Command;
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.CommandExecutor;
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.CommandParser;
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.CommandType;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.Logs;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.PriceSubscriptions;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SelectorWorker implements Runnable {
+    private static final Command DISCONNECT = new Command(CommandType.DISCONNECT.getName(), null);
+    private static final String PROBLEM_OCCURRED_RESPONSE =
+        "A problem occurred while reading input. Try again.";
+    private static final String DISCONNECTED_SUCCESSFULLY_RESPONSE =
+        "Disconnected successfully.";
+    private static final String SHUTDOWN_RESPONSE =
+        "Server was shutdown.";
+    private static final String SUBSCRIBE_NEEDS_FRAMING_RESPONSE =
+        "Price updates are only pushed over length-prefixed connections.";
+    private static final int BUFFER_SIZE = 16384;
+    private static final int RESPONSE_BUFFER_SIZE = 4096;
+    private static final int MAX_POOLED_RESPONSE_BUFFERS = 256;
+
+    private final CryptocurrencyWalletManagerServer server;
+    private final CommandExecutor commandExecutor;
+    private final FramingMode framingMode;
+    private final Executor commandPool;
+    private final Selector selector;
+    private final ByteBuffer buffer;
+    private final CommandParser parser;
+    private final BufferPool responsePool;
+    private final ResponseWriter responseWriter;
+    private final Queue<SocketChannel> pendingChannels;
+    private final Queue<CommandCompletion> completions;
+    private final Queue<Map<String, ByteBuffer>> priceUpdates;
+    private final PriceSubscriptions priceSubscriptions;
+    private final Map<SelectionKey, ClientConnection> connections;
+    private final Set<SelectionKey> keysToService;
+    private final AtomicInteger registeredConnections;
+
+    public SelectorWorker(CryptocurrencyWalletManagerServer server, CommandExecutor commandExecutor,
+                          FramingMode framingMode, Executor commandPool) throws IOException {
+        this.server = server;
+        this.commandExecutor = commandExecutor;
+        this.framingMode = framingMode;
+        this.commandPool = commandPool;
+        this.selector = Selector.open();
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.parser = new CommandParser();
+        this.responsePool = new BufferPool(RESPONSE_BUFFER_SIZE, MAX_POOLED_RESPONSE_BUFFERS);
+        List<String> constantResponses = new ArrayList<>(CommandExecutor.getConstantResponses());
+        constantResponses.add(PROBLEM_OCCURRED_RESPONSE);
+        constantResponses.add(SUBSCRIBE_NEEDS_FRAMING_RESPONSE);
+        this.responseWriter = new ResponseWriter(framingMode, responsePool, constantResponses,
+            commandExecutor.getAvailableAssets());
+        this.pendingChannels = new ConcurrentLinkedQueue<>();
+        this.completions = new ConcurrentLinkedQueue<>();
+        this.priceUpdates = new ConcurrentLinkedQueue<>();
+        this.priceSubscriptions = commandExecutor.getPriceSubscriptions();
+        this.connections = new HashMap<>();
+        this.keysToService = new HashSet<>();
+        this.registeredConnections = new AtomicInteger();
+    }
+
+    public void registerAcceptor(ServerSocketChannel channel) throws IOException {
+        channel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public void addChannel(SocketChannel channel) {
+        pendingChannels.add(channel);
+        selector.wakeup();
+    }
+
+    public void wakeup() {
+        selector.wakeup();
+    }
+
+    public int getRegisteredConnectionCount() {
+        return registeredConnections.get();
+    }
+
+    public void publishPriceUpdates(Map<String, ByteBuffer> updates) {
+        priceUpdates.add(updates);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (server.isServerWorking()) {
+                registerPendingChannels();
+                processCompletions();
+                processPriceUpdates();
+                serviceConnections();
+                handleClientRequests();
+            }
+        } catch (IOException e) {
+            Logs.logErrorWithStackTrace(e.getStackTrace(), "Selector worker stopped unexpectedly.");
+            server.stop();
+        } finally {
+            closeSelector();
+        }
+    }
+
+    private void registerPendingChannels() throws IOException {
+        SocketChannel channel;
+        while ((channel = pendingChannels.poll()) != null) {
+            register(channel);
+        }
+    }
+
+    private void register(SocketChannel channel) throws IOException {
+        channel.configureBlocking(false);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        connections.put(key, new ClientConnection(commandPool));
+        registeredConnections.incrementAndGet();
+    }
+
+    private void processCompletions() throws IOException {
+        CommandCompletion completion;
+        while ((completion = completions.poll()) != null) {
+            ClientConnection connection = connections.get(completion.key());
+            if (connection != null) {
+                connection.completeCommand();
+                if (!completion.skipped()) {
+                    respond(connection, completion.response());
+                }
+                keysToService.add(completion.key());
+            }
+        }
+    }
+
+    private void processPriceUpdates() {
+        Map<String, ByteBuffer> updates;
+        while ((updates = priceUpdates.poll()) != null) {
+            for (Map.Entry<SelectionKey, ClientConnection> entry : connections.entrySet()) {
+                Set<String> subscribed = priceSubscriptions.getSubscribedAssets(entry.getKey());
+                if (subscribed.isEmpty() || entry.getValue().isClosing()) {
+                    continue;
+                }
+
+                for (String assetId : subscribed) {
+                    ByteBuffer update = updates.get(assetId);
+                    if (update != null) {
+                        entry.getValue().pushPriceUpdate(assetId, update.duplicate());
+                        keysToService.add(entry.getKey());
+                    }
+                }
+            }
+        }
+    }
+
+    private void serviceConnections() throws IOException {
+        for (SelectionKey key : keysToService) {
+            ClientConnection connection = connections.get(key);
+            if (connection == null) {
+                continue;
+            }
+
+            SocketChannel sc = (SocketChannel) key.channel();
+            try {
+                serviceConnection(sc, key, connection);
+            } catch (IOException e) {
+                handleDisconnect(sc, key);
+            }
+        }
+        keysToService.clear();
+    }
+
+    private void handleClientRequests() throws IOException {
+        int readyChannels = selector.select();
+        if (readyChannels == 0) {
+            return;
+        }
+
+        Set<SelectionKey> selectedKeys = selector.selectedKeys();
+        Iterator<SelectionKey> keyIterator = selectedKeys.iterator();
+
+        while (keyIterator.hasNext()) {
+            SelectionKey key = keyIterator.next();
+            if (key.isAcceptable()) {
+                accept(key);
+            } else if (key.isValid()) {
+                SocketChannel sc = (SocketChannel) key.channel();
+                try {
+                    handleKey(sc, key);
+                } catch (ProtocolException e) {
+                    Logs.logErrorWithStackTrace(e.getStackTrace(), e.getMessage());
+                    handleDisconnect(sc, key);
+                } catch (IOException e) {
+                    handleDisconnect(sc, key);
+                }
+            }
+            keyIterator.remove();
+        }
+    }
+
+    private void handleKey(SocketChannel sc, SelectionKey key) throws IOException {
+        ClientConnection connection = connections.get(key);
+        if (key.isReadable() && !connection.isClosing() && !readInput(sc, key, connection)) {
+            return;
+        }
+
+        serviceConnection(sc, key, connection);
+    }
+
+    private boolean readInput(SocketChannel sc, SelectionKey key, ClientConnection connection) throws IOException {
+        if (framingMode == FramingMode.LENGTH_PREFIXED) {
+            if (connection.read(sc) == -1) {
+                handleDisconnect(sc, key);
+                return false;
+            }
+            return true;
+        }
+
+        Command command = readClientInput(sc, key);
+        if (command == null || !key.isValid()) {
+            return false;
+        }
+
+        dispatch(key, connection, command);
+        return true;
+    }
+
+    private void serviceConnection(SocketChannel sc, SelectionKey key, ClientConnection connection)
+        throws IOException {
+        boolean stoppedByLimit;
+        boolean drained;
+        do {
+            stoppedByLimit = processFrames(key, connection);
+            drained = connection.flush(sc, responsePool);
+        } while (stoppedByLimit && !connection.isInputPaused());
+
+        if (drained && connection.isClosing()) {
+            connections.remove(key);
+            sc.close();
+            return;
+        }
+
+        int interestOps = 0;
+        if (!connection.isClosing() && !connection.isInputPaused()) {
+            interestOps |= SelectionKey.OP_READ;
+        }
+        if (!drained) {
+            interestOps |= SelectionKey.OP_WRITE;
+        }
+        key.interestOps(interestOps);
+    }
+
+    private boolean processFrames(SelectionKey key, ClientConnection connection) throws ProtocolException {
+        if (framingMode != FramingMode.LENGTH_PREFIXED) {
+            return false;
+        }
+
+        while (!connection.isClosing()) {
+            if (connection.isInputPaused()) {
+                return true;
+            }
+
+            Command command = connection.nextCommand(parser);
+            if (command == null) {
+                return false;
+            }
+            dispatch(key, connection, command);
+        }
+
+        return false;
+    }
+
+    private void dispatch(SelectionKey key, ClientConnection connection, Command command) {
+        if (framingMode == FramingMode.RAW && command.type() == CommandType.SUBSCRIBE) {
+            respond(connection, SUBSCRIBE_NEEDS_FRAMING_RESPONSE);
+            return;
+        }
+
+        if (commandPool == null) {
+            CompletableFuture<String> reply = executeAsync(command, key);
+            if (reply.isDone()) {
+                respond(connection, reply.join());
+                return;
+            }
+
+            // the reply completes on another thread; input stays paused until it is posted back to this reactor
+            connection.awaitReply();
+            reply.thenAccept(response -> complete(new CommandCompletion(key, response)));
+            return;
+        }
+
+        connection.submitCommand(() -> {
+            if (connection.isCloseRequested()) {
+                complete(CommandCompletion.skipped(key));
+                return;
+            }
+
+            String response = execute(command, key);
+            if (DISCONNECTED_SUCCESSFULLY_RESPONSE.equals(response) || SHUTDOWN_RESPONSE.equals(response)) {
+                connection.requestClose();
+            }
+            complete(new CommandCompletion(key, response));
+        });
+    }
+
+    private void complete(CommandCompletion completion) {
+        completions.add(completion);
+        selector.wakeup();
+    }
+
+    // command threads in the pool may wait for the reply, the reactor never does
+    private String execute(Command command, SelectionKey key) {
+        return executeAsync(command, key).join();
+    }
+
+    private CompletableFuture<String> executeAsync(Command command, SelectionKey key) {
+        try {
+            return commandExecutor.executeAsync(command, key).exceptionally(e -> {
+                Logs.logErrorWithStackTrace(e.getStackTrace(), e.getMessage());
+                return null;
+            });
+        } catch (Exception e) {
+            Logs.logErrorWithStackTrace(e.getStackTrace(), e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private void respond(ClientConnection connection, String response) {
+        if (response == null) {
+            response = PROBLEM_OCCURRED_RESPONSE;
+        }
+
+        connection.enqueue(responseWriter.encode(response));
+        if (response.equals(DISCONNECTED_SUCCESSFULLY_RESPONSE)) {
+            connection.markClosing();
+        } else if (response.equals(SHUTDOWN_RESPONSE)) {
+            connection.markClosing();
+            server.stop();
+        }
+    }
+
+    private Command readClientInput(SocketChannel sc, SelectionKey key) throws IOException {
+        buffer.clear();
+        int r = sc.read(buffer);
+        //if end of stream is reached
+        if (r == -1) {
+            handleDisconnect(sc, key);
+            return null;
+        }
+
+        buffer.flip();
+        return parser.parse(buffer);
+    }
+
+    private void handleDisconnect(SocketChannel sc, SelectionKey key) throws IOException {
+        ClientConnection connection = connections.remove(key);
+        if (connection != null) {
+            connection.releaseOutput(responsePool);
+        }
+        if (commandPool == null || connection == null) {
+            commandExecutor.execute(DISCONNECT, key);
+        } else {
+            connection.requestClose();
+            connection.submitCommand(() -> commandExecutor.execute(DISCONNECT, key));
+        }
+        sc.close();
+        key.cancel();
+    }
+
+    private void accept(SelectionKey key) throws IOException {
+        ServerSocketChannel sockChannel = (ServerSocketChannel) key.channel();
+        SocketChannel accept = sockChannel.accept();
+        if (accept != null) {
+            register(accept);
+        }
+    }
+
+    private void closeSelector() {
+        try {
+            for (SelectionKey key : selector.keys()) {
+                if (key.channel() instanceof SocketChannel) {
+                    key.channel().close();
+                }
+            }
+            selector.close();
+        } catch (IOException e) {
+            Logs.logErrorWithStackTrace(e.getStackTrace(), "Could not close selector.");
+        }
+    }
+}
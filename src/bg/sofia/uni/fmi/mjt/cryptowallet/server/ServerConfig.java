@@ -0,0 +1,22 @@
+package bg.sofia.uni.fmi.mjt.cryptowallet.server;
+
+public record ServerConfig(int reactorCount, FramingMode framingMode, ExecutionMode executionMode) {
+    private static final int SINGLE_REACTOR = 1;
+
+    public ServerConfig {
+        if (reactorCount < SINGLE_REACTOR) {
+            throw new IllegalArgumentException("Reactor count must be positive.");
+        }
+        if (framingMode == null || executionMode == null) {
+            throw new IllegalArgumentException("Framing and execution mode cannot be null.");
+        }
+    }
+
+    public static ServerConfig defaults() {
+        return new ServerConfig(SINGLE_REACTOR, FramingMode.RAW, ExecutionMode.INLINE);
+    }
+
+    public boolean isSingleReactor() {
+        return reactorCount == SINGLE_REACTOR;
+    }
+}
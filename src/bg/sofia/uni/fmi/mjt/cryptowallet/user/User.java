@@ -8,6 +8,7 @@ import java.security.NoSuchAlgorithmException;
 import java.util.Objects;
 
 public class User implements Serializable {
+    private static final long serialVersionUID = 5179954198079076503L;
     private static final String HASHING_ALGORITHM = "MD5";
     private static final int HASHING_CONSTANT_1 = 0xff;
     private static final int HASHING_CONSTANT_2 = 0x100;
@@ -17,12 +18,24 @@ public class User implements Serializable {
     private final Wallet wallet;
 
     public User(String username, String password) {
-        this.password = hashPassword(password);
+        this(username, hashPassword(password), new Wallet());
+    }
+
+    private User(String username, String passwordHash, Wallet wallet) {
+        this.password = passwordHash;
         this.username = username;
-        this.wallet = new Wallet();
+        this.wallet = wallet;
+    }
+
+    public static User withPasswordHash(String username, String passwordHash) {
+        return withPasswordHash(username, passwordHash, new Wallet());
+    }
+
+    public static User withPasswordHash(String username, String passwordHash, Wallet wallet) {
+        return new User(username, passwordHash, wallet);
     }
 
-    private String hashPassword(String password) {
+    private static String hashPassword(String password) {
         String generatedPassword;
         try {
             MessageDigest md = MessageDigest.getInstance(HASHING_ALGORITHM);
@@ -49,19 +62,26 @@ public class User implements Serializable {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         User user = (User) o;
-        return Objects.equals(username, user.username) && Objects.equals(password, user.password) &&
-            Objects.equals(wallet, user.wallet);
+        return Objects.equals(username, user.username);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(username, password, wallet);
+        return Objects.hashCode(username);
     }
 
     public String getUsername() {
         return username;
     }
 
+    public User snapshot() {
+        return new User(username, password, wallet.copy());
+    }
+
+    public String getPasswordHash() {
+        return password;
+    }
+
     public Wallet getWallet() {
         return wallet;
     }
@@ -12,12 +12,15 @@ import java.util.Map;
 import java.util.HashSet;
 import java.util.HashMap;
 import java.util.Objects;
+import java.util.TreeSet;
 
 public class Wallet implements Serializable {
+    private static final long serialVersionUID = 1631178505561050361L;
     private static final double START_BALANCE = 0.0;
     private double balance;
     private final Map<String, Set<Double>> purchasedAssetsAmount;
     private final Map<String, Double> purchasedAssets;
+    private long lastLsn;
 
     public Wallet() {
         balance = START_BALANCE;
@@ -25,7 +28,22 @@ public class Wallet implements Serializable {
         purchasedAssets = new HashMap<>();
     }
 
-    public void depositMoney(double amount) {
+    public static Wallet restore(double balance, Map<String, Double> purchasePrices,
+                                 Map<String, Set<Double>> purchasedAmounts, long lastLsn) {
+        Wallet wallet = new Wallet();
+        wallet.balance = balance;
+        wallet.lastLsn = lastLsn;
+        wallet.purchasedAssets.putAll(purchasePrices);
+        for (Map.Entry<String, Set<Double>> entry : purchasedAmounts.entrySet()) {
+            wallet.purchasedAssetsAmount.put(entry.getKey(), new HashSet<>(entry.getValue()));
+        }
+        return wallet;
+    }
+
+    public synchronized void depositMoney(double amount) {
+        if (!Double.isFinite(amount)) {
+            throw new IllegalArgumentException("Deposited amount must be a finite number");
+        }
         if (amount < START_BALANCE) {
             throw new IllegalArgumentException("Deposited amount cannot be negative");
         }
@@ -33,58 +51,120 @@ public class Wallet implements Serializable {
         balance += amount;
     }
 
-    public void buyAsset(String id, double toPay, AvailableAssets availableAssets)
+    public synchronized Asset buyAsset(String id, double toPay, AvailableAssets availableAssets)
         throws NoSuchAssetExistsException, InsufficientBalanceException {
         if (id == null || availableAssets == null) {
             throw new IllegalArgumentException("Id or AvailableAssets cannot be null.");
         }
 
-        if (toPay < START_BALANCE) {
-            throw new IllegalArgumentException("Cannot pay negative amount of money.");
+        return buyAssetAt(availableAssets.find(id), toPay);
+    }
+
+    // the quote is resolved by the caller, so nothing waits on the network while the wallet is locked
+    public synchronized Asset buyAssetAt(Asset quote, double toPay)
+        throws NoSuchAssetExistsException, InsufficientBalanceException {
+        if (!Double.isFinite(toPay) || toPay < START_BALANCE) {
+            throw new IllegalArgumentException("Cannot pay negative or non-finite amount of money.");
         }
 
         if (toPay > balance) {
             throw new InsufficientBalanceException("Not enough money available.");
         }
 
-        Asset asset = availableAssets.find(id);
-        if (asset == null) {
+        if (quote == null) {
             throw new NoSuchAssetExistsException("No such asset exists");
         }
 
-        if (!purchasedAssetsAmount.containsKey(asset.getAssetId())) {
-            purchasedAssetsAmount.put(asset.getAssetId(), new HashSet<>());
-            purchasedAssets.put(asset.getAssetId(), asset.getPrice());
+        applyPurchase(quote.getAssetId(), toPay, quote.getPrice());
+        return quote;
+    }
+
+    public synchronized void applyPurchase(String id, double toPay, double price) {
+        if (!purchasedAssetsAmount.containsKey(id)) {
+            purchasedAssetsAmount.put(id, new HashSet<>());
+            purchasedAssets.put(id, price);
         }
 
-        purchasedAssetsAmount.get(asset.getAssetId()).add(toPay / asset.getPrice());
+        purchasedAssetsAmount.get(id).add(toPay / price);
         balance -= toPay;
     }
 
-    public void sellAsset(String id, AvailableAssets availableAssets)
+    public synchronized Asset sellAsset(String id, AvailableAssets availableAssets)
         throws NoSuchAssetExistsException, NoSuchAssetPurchasedException {
         if (id == null || availableAssets == null) {
             throw new IllegalArgumentException("ID or AvailableAssets cannot be null.");
         }
 
+        return sellAssetAt(id, availableAssets.find(id));
+    }
+
+    public synchronized Asset sellAssetAt(String id, Asset quote)
+        throws NoSuchAssetExistsException, NoSuchAssetPurchasedException {
+        if (id == null) {
+            throw new IllegalArgumentException("ID cannot be null.");
+        }
+
         if (!purchasedAssets.containsKey(id)) {
             throw new NoSuchAssetPurchasedException("No such asset was purchased");
         }
 
-        Asset asset = availableAssets.find(id);
-
-        if (asset == null) {
+        if (quote == null) {
             throw new NoSuchAssetExistsException("No such asset exists");
         }
 
+        applySale(id, quote.getPrice());
+        return quote;
+    }
+
+    public synchronized boolean hasPurchased(String id) {
+        return purchasedAssets.containsKey(id);
+    }
+
+    public synchronized void applySale(String id, double price) {
+        Set<Double> amounts = purchasedAssetsAmount.remove(id);
+        purchasedAssets.remove(id);
+        if (amounts == null) {
+            return;
+        }
+
         double toAdd = 0.0;
-        for (double amount : purchasedAssetsAmount.get(id)) {
-            toAdd += amount * asset.getPrice();
+        for (double amount : amounts) {
+            toAdd += amount * price;
         }
 
         balance += toAdd;
-        purchasedAssetsAmount.remove(id);
-        purchasedAssets.remove(id);
+    }
+
+    public synchronized void markJournaled(long lsn) {
+        lastLsn = Math.max(lastLsn, lsn);
+    }
+
+    public synchronized long getLastLsn() {
+        return lastLsn;
+    }
+
+    public synchronized Wallet copy() {
+        return restore(balance, purchasedAssets, purchasedAssetsAmount, lastLsn);
+    }
+
+    // undoes a change that could not be journaled, unless a later change still has to be undone first
+    public synchronized boolean rollBack(Wallet before, long journaledLsn) {
+        if (before == null) {
+            throw new IllegalArgumentException("Previous wallet state cannot be null.");
+        }
+        if (lastLsn != journaledLsn) {
+            return false;
+        }
+
+        balance = before.balance;
+        purchasedAssets.clear();
+        purchasedAssets.putAll(before.purchasedAssets);
+        purchasedAssetsAmount.clear();
+        for (Map.Entry<String, Set<Double>> entry : before.purchasedAssetsAmount.entrySet()) {
+            purchasedAssetsAmount.put(entry.getKey(), new HashSet<>(entry.getValue()));
+        }
+        lastLsn = before.lastLsn;
+        return true;
     }
 
     @Override
@@ -95,7 +175,7 @@ public class Wallet implements Serializable {
             '}';
     }
 
-    public String getWalletSummary() {
+    public synchronized String getWalletSummary() {
         StringBuilder sb = new StringBuilder();
         sb.append("Wallet summary : ").append(System.lineSeparator())
             .append("Current balance: $").append(balance).append(System.lineSeparator());
@@ -110,16 +190,37 @@ public class Wallet implements Serializable {
         return sb.toString();
     }
 
-    public String getWalletOverallSummary(AvailableAssets availableAssets) {
+    public synchronized String getWalletOverallSummary(AvailableAssets availableAssets) {
         if (availableAssets == null) {
             throw new IllegalArgumentException("Available assets cannot be null");
         }
+
+        Map<String, Asset> quotes = new HashMap<>();
+        for (String id : purchasedAssets.keySet()) {
+            Asset asset = availableAssets.find(id);
+            if (asset != null) {
+                quotes.put(id, asset);
+            }
+        }
+        return getWalletOverallSummary(quotes);
+    }
+
+    // quotes are resolved by the caller; held assets without one are listed instead of silently left out
+    public synchronized String getWalletOverallSummary(Map<String, Asset> quotes) {
+        if (quotes == null) {
+            throw new IllegalArgumentException("Quotes cannot be null");
+        }
         StringBuilder sb = new StringBuilder();
         sb.append("Overall winnings: $");
         double winnings = START_BALANCE;
+        Set<String> unpriced = new TreeSet<>();
 
         for (String id : purchasedAssets.keySet()) {
-            Asset asset = availableAssets.find(id);
+            Asset asset = quotes.get(id);
+            if (asset == null) {
+                unpriced.add(id);
+                continue;
+            }
             double sum = 0.0;
             for (double amount : purchasedAssetsAmount.get(id)) {
                 sum += amount;
@@ -128,9 +229,17 @@ public class Wallet implements Serializable {
         }
 
         sb.append(winnings).append(System.lineSeparator());
+        if (!unpriced.isEmpty()) {
+            sb.append("Not included, no current price: ").append(String.join(", ", unpriced))
+                .append(System.lineSeparator());
+        }
         return sb.toString();
     }
 
+    public synchronized Set<String> getPurchasedIds() {
+        return Set.copyOf(purchasedAssets.keySet());
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
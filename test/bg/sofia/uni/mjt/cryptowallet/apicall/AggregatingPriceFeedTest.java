@@ -0,0 +1,82 @@
+package bg.sofia.uni.mjt.cryptowallet.apicall;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.AggregatingPriceFeed;
+import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.PriceFeed;
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AggregatingPriceFeedTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @Test
+    public void testMedianPricePerAsset() {
+        AggregatingPriceFeed feed = new AggregatingPriceFeed(List.of(answering(100, 20), answering(110, 22),
+            answering(300, 21)), AggregatingPriceFeed.Mode.MEDIAN, 3, TIMEOUT);
+
+        List<Asset> assets = feed.fetchAssets(10).join();
+
+        assertEquals(List.of(new Asset("BTC", "Bitcoin", 1, 110), new Asset("ETH", "Ethereum", 1, 21)), assets);
+    }
+
+    @Test
+    public void testQuorumDoesNotWaitForSlowFeed() {
+        PriceFeed stuck = limit -> new CompletableFuture<>();
+        AggregatingPriceFeed feed = new AggregatingPriceFeed(List.of(stuck, answering(100, 20), answering(120, 30)),
+            AggregatingPriceFeed.Mode.MEDIAN, 2, TIMEOUT);
+
+        List<Asset> assets = feed.fetchAssets(10).orTimeout(1, TimeUnit.SECONDS).join();
+
+        assertEquals(new Asset("BTC", "Bitcoin", 1, 110), assets.get(0));
+        assertEquals(1, feed.getHedgedFetchCount());
+    }
+
+    @Test
+    public void testFailingFeedIsSkipped() {
+        PriceFeed down = limit -> CompletableFuture.failedFuture(new IllegalStateException("down"));
+        AggregatingPriceFeed feed = new AggregatingPriceFeed(List.of(down, answering(100, 20)),
+            AggregatingPriceFeed.Mode.FIRST_HEALTHY, 1, TIMEOUT);
+
+        assertEquals(List.of(new Asset("BTC", "Bitcoin", 1, 100), new Asset("ETH", "Ethereum", 1, 20)),
+            feed.fetchAssets(10).join());
+    }
+
+    @Test
+    public void testTimedOutFeedStillAllowsPartialAnswer() {
+        PriceFeed stuck = limit -> new CompletableFuture<>();
+        AggregatingPriceFeed feed = new AggregatingPriceFeed(List.of(stuck, answering(100, 20)),
+            AggregatingPriceFeed.Mode.MEDIAN, 2, Duration.ofMillis(100));
+
+        assertEquals(2, feed.fetchAssets(10).join().size());
+        assertEquals(1, feed.getFailureCount(stuck.getName()));
+    }
+
+    @Test
+    public void testAllFeedsFailing() {
+        PriceFeed down = limit -> CompletableFuture.failedFuture(new IllegalStateException("down"));
+        AggregatingPriceFeed feed = new AggregatingPriceFeed(List.of(down, down),
+            AggregatingPriceFeed.Mode.MEDIAN, 2, TIMEOUT);
+
+        assertThrows(CompletionException.class, () -> feed.fetchAssets(10).join(),
+            "CompletionException expected but was never thrown");
+    }
+
+    @Test
+    public void testInvalidQuorum() {
+        assertThrows(IllegalArgumentException.class, () -> new AggregatingPriceFeed(List.of(answering(1, 1)),
+            AggregatingPriceFeed.Mode.MEDIAN, 2, TIMEOUT), "IllegalArgumentException expected but was never thrown");
+    }
+
+    private static PriceFeed answering(double bitcoinPrice, double ethereumPrice) {
+        return limit -> CompletableFuture.completedFuture(List.of(new Asset("BTC", "Bitcoin", 1, bitcoinPrice),
+            new Asset("ETH", "Ethereum", 1, ethereumPrice)));
+    }
+}
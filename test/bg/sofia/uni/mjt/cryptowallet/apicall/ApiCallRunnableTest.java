@@ -10,9 +10,13 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static java.net.HttpURLConnection.HTTP_OK;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -22,7 +26,7 @@ import static org.mockito.Mockito.when;
 @ExtendWith(MockitoExtension.class)
 public class ApiCallRunnableTest {
     @Mock
-    public HttpResponse<String> response;
+    public HttpResponse<InputStream> response;
 
     public static AvailableAssets availableAssets;
     public static ApiCallRunnable apiCallRunnable;
@@ -37,16 +41,16 @@ public class ApiCallRunnableTest {
 
     @Test
     public void testRunUpdatedInformation() {
-        when(apiCall.getResponse()).thenReturn(response);
+        when(apiCall.getResponseStreamAsync()).thenReturn(CompletableFuture.completedFuture(response));
         when(response.statusCode()).thenReturn(HTTP_OK);
-        when(response.body()).thenReturn("[\n" +
+        when(response.body()).thenReturn(body("[\n" +
             "  {\n" +
             "    \"asset_id\": \"BTC\",\n" +
             "    \"name\": \"Bitcoin\",\n" +
             "    \"type_is_crypto\": 1,\n" +
             "    \"price_usd\": 10.0\n" +
             "  }\n" +
-            "]");
+            "]"));
 
         apiCallRunnable.run();
 
@@ -56,4 +60,31 @@ public class ApiCallRunnableTest {
         assertEquals(expectedCryptoCoins, availableAssets.getAvailableAssets(),
             "Run method is not working properly.");
     }
+
+    @Test
+    public void testRunKeepsMostTradedCryptoAssets() {
+        AvailableAssets limited = new AvailableAssets(2);
+        ApiCallRunnable limitedRunnable = new ApiCallRunnable(apiCall, limited);
+        when(apiCall.getResponseStreamAsync()).thenReturn(CompletableFuture.completedFuture(response));
+        when(response.statusCode()).thenReturn(HTTP_OK);
+        when(response.body()).thenReturn(body("[" +
+            "{\"asset_id\": \"BTC\", \"name\": \"Bitcoin\", \"type_is_crypto\": 1, " +
+            "\"price_usd\": 10.0, \"volume_1day_usd\": 300.0}," +
+            "{\"asset_id\": \"USD\", \"name\": \"US Dollar\", \"type_is_crypto\": 0, " +
+            "\"volume_1day_usd\": 1000.0}," +
+            "{\"asset_id\": \"DOGE\", \"name\": \"Dogecoin\", \"type_is_crypto\": 1, " +
+            "\"price_usd\": 0.1, \"volume_1day_usd\": 100.0}," +
+            "{\"asset_id\": \"ETH\", \"name\": \"Ethereum\", \"type_is_crypto\": 1, " +
+            "\"price_usd\": 5.0, \"volume_1day_usd\": 200.0, \"chain_addresses\": [{\"network_id\": \"x\"}]}" +
+            "]"));
+
+        limitedRunnable.run();
+
+        Set<Asset> expected = Set.of(new Asset("BTC", "Bitcoin", 1, 10.0), new Asset("ETH", "Ethereum", 1, 5.0));
+        assertEquals(expected, limited.getAvailableAssets(), "Only the most traded crypto assets should be kept.");
+    }
+
+    private static InputStream body(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
 }
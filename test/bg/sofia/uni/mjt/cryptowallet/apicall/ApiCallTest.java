@@ -6,12 +6,31 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
@@ -32,4 +51,89 @@ public class ApiCallTest {
         when(httpClient.send(any(HttpRequest.class), eq(HttpResponse.BodyHandlers.ofString()))).thenReturn(response);
         assertEquals(response, apiCall.getResponse(), "Response is not valid.");
     }
+
+    @Test
+    public void testGetResponseStreamAsyncDecompressesGzip() throws Exception {
+        byte[] payload = "[{\"asset_id\": \"BTC\", \"type_is_crypto\": 1, \"price_usd\": 10.0}]"
+            .getBytes(StandardCharsets.UTF_8);
+        AtomicReference<String> acceptEncoding = new AtomicReference<>();
+        HttpServer server = startServer(exchange -> {
+            acceptEncoding.set(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(payload);
+            }
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, compressed.size());
+            exchange.getResponseBody().write(compressed.toByteArray());
+            exchange.close();
+        });
+
+        try {
+            HttpResponse<InputStream> response = localApiCall(server, Duration.ofSeconds(5), 1)
+                .getResponseStreamAsync().get(10, TimeUnit.SECONDS);
+
+            assertEquals(HttpURLConnection.HTTP_OK, response.statusCode());
+            assertEquals("gzip", acceptEncoding.get());
+            try (InputStream body = ApiCall.openBody(response)) {
+                assertArrayEquals(payload, body.readAllBytes());
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testGetResponseStreamAsyncRetriesServerErrors() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = startServer(exchange -> {
+            int status = requests.incrementAndGet() < 3 ? HttpURLConnection.HTTP_UNAVAILABLE : HttpURLConnection.HTTP_OK;
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+
+        try {
+            HttpResponse<InputStream> response = localApiCall(server, Duration.ofSeconds(5), 3)
+                .getResponseStreamAsync().get(10, TimeUnit.SECONDS);
+
+            assertEquals(HttpURLConnection.HTTP_OK, response.statusCode());
+            assertEquals(3, requests.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testGetResponseStreamTimesOut() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        HttpServer server = startServer(exchange -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+
+        try {
+            assertNull(localApiCall(server, Duration.ofMillis(200), 1).getResponseStream(),
+                "Timed out request should not produce a response.");
+        } finally {
+            release.countDown();
+            server.stop(0);
+        }
+    }
+
+    private static HttpServer startServer(HttpHandler handler) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(ApiCall.API_ENDPOINT_PATH, handler);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        return server;
+    }
+
+    private static ApiCall localApiCall(HttpServer server, Duration timeout, int maxAttempts) {
+        URI baseUri = URI.create("http://localhost:" + server.getAddress().getPort());
+        return new ApiCall(HttpClient.newHttpClient(), "testKey", baseUri, timeout, maxAttempts, Duration.ofMillis(10));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,161 @@
+package bg.sofia.uni.mjt.cryptowallet.apicall;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.ApiCall;
+import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.AssetQuoteService;
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.AvailableAssets;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class AssetQuoteServiceTest {
+    private static final Asset SOL = new Asset("SOL", "Solana", 1, 20.0);
+
+    private HttpServer server;
+    private AtomicInteger requests;
+    private CountDownLatch release;
+    private AtomicReference<Instant> now;
+    private Clock clock;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        requests = new AtomicInteger();
+        release = new CountDownLatch(0);
+        now = new AtomicReference<>(Instant.parse("2024-01-01T00:00:00Z"));
+        clock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return now.get();
+            }
+        };
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(ApiCall.API_ENDPOINT_PATH, exchange -> {
+            requests.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            String id = exchange.getRequestURI().getPath().substring(ApiCall.API_ENDPOINT_PATH.length());
+            byte[] body = ("[{\"asset_id\": \"" + id + "\", \"name\": \"Solana\", \"type_is_crypto\": 1, " +
+                "\"price_usd\": 20.0}]").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    public void testConcurrentQuotesAreCoalesced() {
+        release = new CountDownLatch(1);
+        AssetQuoteService service = service(10);
+
+        List<CompletableFuture<Asset>> quotes = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            quotes.add(service.quoteAsync("SOL"));
+        }
+        release.countDown();
+
+        for (CompletableFuture<Asset> quote : quotes) {
+            assertEquals(SOL, quote.join());
+        }
+        assertEquals(1, requests.get());
+        assertEquals(1, service.getUpstreamCallCount());
+        assertEquals(49, service.getCoalescedCallCount());
+    }
+
+    @Test
+    public void testQuotesAreCachedUntilTtlExpires() {
+        AssetQuoteService service = service(10);
+
+        assertEquals(SOL, service.quote("SOL"));
+        assertEquals(SOL, service.quote("SOL"));
+        assertEquals(1, requests.get());
+
+        now.set(now.get().plus(Duration.ofMinutes(2)));
+        assertEquals(SOL, service.quote("SOL"));
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void testUpstreamRateIsBounded() {
+        AssetQuoteService service = service(2);
+
+        service.quote("SOL");
+        service.quote("ADA");
+        assertNull(service.quote("DOT"), "Quote beyond the burst should be throttled.");
+        assertEquals(2, requests.get());
+        assertEquals(1, service.getThrottledCallCount());
+    }
+
+    @Test
+    public void testIdsThatAreNotAssetCodesNeverReachUpstream() {
+        AssetQuoteService service = service(10);
+
+        assertNull(service.quoteAsync("../exchangerate/BTC").join());
+        assertNull(service.quoteAsync("BTC?filter=all").join());
+        assertNull(service.quoteAsync("").join());
+        assertEquals(0, requests.get());
+        assertEquals(0, service.getUpstreamCallCount());
+    }
+
+    @Test
+    public void testAvailableAssetsQuotesAssetsOutsideSnapshot() {
+        AvailableAssets availableAssets = new AvailableAssets();
+        availableAssets.setQuoteSource(service(10));
+
+        assertNull(availableAssets.find("SOL"), "Lookups must not go to the network.");
+        assertEquals(SOL, availableAssets.quote("SOL").join());
+    }
+
+    private AssetQuoteService service(int burst) {
+        URI baseUri = URI.create("http://localhost:" + server.getAddress().getPort());
+        ApiCall apiCall = new ApiCall(HttpClient.newHttpClient(), "testKey", baseUri, Duration.ofSeconds(5), 1,
+            Duration.ofMillis(10));
+        return new AssetQuoteService(apiCall, Duration.ofMinutes(1), 0.001, burst, Duration.ofSeconds(5), clock);
+    }
+}
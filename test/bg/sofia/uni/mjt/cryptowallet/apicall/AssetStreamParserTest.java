@@ -0,0 +1,45 @@
+package bg.sofia.uni.mjt.cryptowallet.apicall;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.AssetStreamParser;
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AssetStreamParserTest {
+    private final AssetStreamParser parser = new AssetStreamParser();
+
+    @Test
+    public void testParseTopAssetsOrdersByVolume() throws IOException {
+        String json = "[" +
+            "{\"asset_id\": \"A\", \"name\": \"A\", \"type_is_crypto\": 1, \"price_usd\": 1.0, \"volume_1day_usd\": 1.0}," +
+            "{\"asset_id\": \"B\", \"name\": \"B\", \"type_is_crypto\": 1, \"price_usd\": 2.0, \"volume_1day_usd\": 3.0}," +
+            "{\"asset_id\": \"C\", \"name\": \"C\", \"type_is_crypto\": 1, \"price_usd\": 3.0, \"volume_1day_usd\": 2.0}" +
+            "]";
+
+        List<Asset> top = parser.parseTopAssets(new StringReader(json), 2);
+
+        assertEquals(List.of(new Asset("B", "B", 1, 2.0), new Asset("C", "C", 1, 3.0)), top);
+    }
+
+    @Test
+    public void testParseTopAssetsSkipsAssetsWithoutPrice() throws IOException {
+        String json = "[" +
+            "{\"asset_id\": \"A\", \"name\": null, \"type_is_crypto\": 1, \"volume_1day_usd\": 5.0}," +
+            "{\"asset_id\": \"B\", \"name\": \"B\", \"type_is_crypto\": 1, \"price_usd\": 2.0}" +
+            "]";
+
+        assertEquals(List.of(new Asset("B", "B", 1, 2.0)), parser.parseTopAssets(new StringReader(json), 10));
+    }
+
+    @Test
+    public void testParseTopAssetsMalformedResponse() {
+        assertThrows(IOException.class, () -> parser.parseTopAssets(new StringReader("{\"error\": \"x\"}"), 10),
+            "IOException expected but was never thrown");
+    }
+}
@@ -0,0 +1,154 @@
+package bg.sofia.uni.mjt.cryptowallet.apicall;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.PriceRefreshScheduler;
+import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.RefreshMetrics;
+import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.RefreshMetrics.CircuitState;
+import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.RefreshPolicy;
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.AvailableAssets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PriceRefreshSchedulerTest {
+    private static final RefreshPolicy POLICY = new RefreshPolicy(Duration.ofMinutes(30), Duration.ofMinutes(2),
+        Duration.ofSeconds(10), Duration.ofMinutes(1), 3, Duration.ofMinutes(15), true, 0.05);
+
+    private MutableClock clock;
+    private AvailableAssets availableAssets;
+
+    @BeforeEach
+    public void setUp() {
+        clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+        availableAssets = new AvailableAssets(AvailableAssets.DEFAULT_MAX_ASSET_COUNT, clock);
+    }
+
+    @Test
+    public void testFailuresBackOffWithJitterAndOpenCircuit() {
+        PriceRefreshScheduler scheduler = scheduler(() -> {
+            throw new RuntimeException("Response from API was null.");
+        });
+
+        Duration first = scheduler.refreshOnce();
+        assertTrue(first.compareTo(Duration.ofSeconds(5)) >= 0 && first.compareTo(Duration.ofSeconds(10)) <= 0);
+        Duration second = scheduler.refreshOnce();
+        assertTrue(second.compareTo(Duration.ofSeconds(10)) >= 0 && second.compareTo(Duration.ofSeconds(20)) <= 0);
+
+        assertEquals(Duration.ofMinutes(15), scheduler.refreshOnce());
+        assertEquals(CircuitState.OPEN, scheduler.getMetrics().circuitState());
+
+        clock.advance(Duration.ofMinutes(5));
+        assertEquals(Duration.ofMinutes(10), scheduler.refreshOnce());
+        RefreshMetrics metrics = scheduler.getMetrics();
+        assertEquals(3, metrics.failures());
+        assertEquals(1, metrics.rejected());
+    }
+
+    @Test
+    public void testHalfOpenSuccessClosesCircuit() {
+        AtomicInteger calls = new AtomicInteger();
+        PriceRefreshScheduler scheduler = scheduler(() -> {
+            if (calls.incrementAndGet() <= 3) {
+                throw new RuntimeException("A problem occurred with response.");
+            }
+            availableAssets.updateAvailableAssets(Set.of(new Asset("BTC", "Bitcoin", 1, 100)));
+        });
+
+        for (int i = 0; i < 3; i++) {
+            scheduler.refreshOnce();
+        }
+        clock.advance(Duration.ofMinutes(15));
+        scheduler.refreshOnce();
+
+        RefreshMetrics metrics = scheduler.getMetrics();
+        assertEquals(CircuitState.CLOSED, metrics.circuitState());
+        assertEquals(0, metrics.consecutiveFailures());
+        assertEquals(1, metrics.successes());
+        assertEquals(Duration.ZERO, metrics.snapshotAge());
+    }
+
+    @Test
+    public void testAdaptiveIntervalFollowsVolatility() {
+        AtomicInteger price = new AtomicInteger(100);
+        PriceRefreshScheduler scheduler = scheduler(() ->
+            availableAssets.updateAvailableAssets(Set.of(new Asset("BTC", "Bitcoin", 1, price.get()))));
+
+        scheduler.refreshOnce();
+        price.set(110);
+        assertEquals(Duration.ofMinutes(15), scheduler.refreshOnce());
+        price.set(121);
+        assertEquals(Duration.ofMinutes(7).plusSeconds(30), scheduler.refreshOnce());
+        assertEquals(Duration.ofMinutes(15), scheduler.refreshOnce());
+        assertEquals(Duration.ofMinutes(30), scheduler.refreshOnce());
+    }
+
+    @Test
+    public void testFailingRefreshDoesNotCancelSchedule() throws InterruptedException {
+        RefreshPolicy fastPolicy = new RefreshPolicy(Duration.ofMillis(20), Duration.ofMillis(10),
+            Duration.ofMillis(10), Duration.ofMillis(20), 10, Duration.ofMillis(50), false, 0.05);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch succeeded = new CountDownLatch(1);
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        PriceRefreshScheduler scheduler = new PriceRefreshScheduler(() -> {
+            if (calls.incrementAndGet() <= 2) {
+                throw new RuntimeException("Response from API was null.");
+            }
+            succeeded.countDown();
+        }, availableAssets, fastPolicy, executor);
+
+        try {
+            scheduler.start();
+            assertTrue(succeeded.await(5, TimeUnit.SECONDS), "Refresh should recover after failures.");
+        } finally {
+            scheduler.stop();
+            executor.shutdownNow();
+        }
+        assertEquals(2, scheduler.getMetrics().failures());
+    }
+
+    private PriceRefreshScheduler scheduler(Runnable task) {
+        return new PriceRefreshScheduler(task, availableAssets, POLICY, null, clock, new Random(42));
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
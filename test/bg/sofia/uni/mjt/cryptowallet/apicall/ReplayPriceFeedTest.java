@@ -0,0 +1,57 @@
+package bg.sofia.uni.mjt.cryptowallet.apicall;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.apicall.ReplayPriceFeed;
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ReplayPriceFeedTest {
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void testRecordingsArePlayedBackInOrder() throws IOException {
+        Path first = Files.writeString(directory.resolve("first.json"), recording(10.0), StandardCharsets.UTF_8);
+        Path second = directory.resolve("second.json.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(second))) {
+            out.write(recording(12.5).getBytes(StandardCharsets.UTF_8));
+        }
+
+        ReplayPriceFeed feed = new ReplayPriceFeed(List.of(first, second));
+
+        assertEquals(List.of(new Asset("BTC", "Bitcoin", 1, 10.0)), feed.fetchAssets(10).join());
+        assertEquals(List.of(new Asset("BTC", "Bitcoin", 1, 12.5)), feed.fetchAssets(10).join());
+        assertEquals(List.of(new Asset("BTC", "Bitcoin", 1, 10.0)), feed.fetchAssets(10).join(),
+            "Playback should wrap around to the first recording.");
+    }
+
+    @Test
+    public void testMissingRecordingFails() {
+        ReplayPriceFeed feed = new ReplayPriceFeed(List.of(directory.resolve("missing.json")));
+
+        assertThrows(CompletionException.class, () -> feed.fetchAssets(10).join(),
+            "CompletionException expected but was never thrown");
+    }
+
+    @Test
+    public void testNoRecordings() {
+        assertThrows(IllegalArgumentException.class, () -> new ReplayPriceFeed(List.of()),
+            "IllegalArgumentException expected but was never thrown");
+    }
+
+    private static String recording(double price) {
+        return "[{\"asset_id\": \"BTC\", \"name\": \"Bitcoin\", \"type_is_crypto\": 1, \"price_usd\": " + price + "}]";
+    }
+}
@@ -3,8 +3,12 @@ package bg.sofia.uni.mjt.cryptowallet.command;
 import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
 import bg.sofia.uni.fmi.mjt.cryptowallet.command.Command;
 import bg.sofia.uni.fmi.mjt.cryptowallet.command.CommandExecutor;
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.CommandParser;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.AssetSnapshot;
 import bg.sofia.uni.fmi.mjt.cryptowallet.database.AvailableAssets;
-import bg.sofia.uni.fmi.mjt.cryptowallet.database.UserSet;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.PriceHistory;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.UserExporter;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.UserRepository;
 import bg.sofia.uni.fmi.mjt.cryptowallet.exception.InsufficientBalanceException;
 import bg.sofia.uni.fmi.mjt.cryptowallet.exception.NoSuchAssetExistsException;
 import bg.sofia.uni.fmi.mjt.cryptowallet.exception.NoSuchAssetPurchasedException;
@@ -17,23 +21,34 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
-import java.util.HashSet;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public class CommandExecutorTest {
 
     private CommandExecutor commandExecutor;
 
     @Mock
-    private UserSet userSet;
+    private UserRepository userSet;
     @Mock
     private AvailableAssets availableAssets;
     @Mock
@@ -42,6 +57,8 @@ public class CommandExecutorTest {
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(availableAssets.getSnapshot()).thenReturn(AssetSnapshot.empty());
+        when(availableAssets.quote(any())).thenReturn(CompletableFuture.completedFuture(null));
         commandExecutor = new CommandExecutor(userSet, availableAssets);
     }
 
@@ -49,7 +66,7 @@ public class CommandExecutorTest {
     public void testRegister() {
         try {
             Command registerCommand = new Command("register", new String[] {"username", "password"});
-            userSet.addUser(any(User.class));
+            userSet.create(any(User.class));
             String result = commandExecutor.execute(registerCommand, selectionKey);
             assertEquals("Registered successfully.", result);
         } catch (UserAlreadyExistsException e) {
@@ -78,7 +95,7 @@ public class CommandExecutorTest {
         try {
             String existingUsername = "existingUser";
             doThrow(new UserAlreadyExistsException("Account already exists"))
-                .when(userSet).addUser(any(User.class));
+                .when(userSet).create(any(User.class));
             Command registerCommand = new Command("register", new String[]{existingUsername, "password"});
             String result = commandExecutor.execute(registerCommand, selectionKey);
             assertEquals("Such account already exists", result);
@@ -90,7 +107,7 @@ public class CommandExecutorTest {
     @Test
     public void testLogin() {
         User user = new User("username", "password");
-        when(userSet.getUsers()).thenReturn(Set.of(user));
+        when(userSet.acquire("username")).thenReturn(user);
         Command loginCommand = new Command("login", new String[]{"username", "password"});
         String result = commandExecutor.execute(loginCommand, selectionKey);
         assertEquals("Logged in successfully.", result);
@@ -114,7 +131,7 @@ public class CommandExecutorTest {
 
     @Test
     public void testLoginWhenAccountDoesNotExist() {
-        when(userSet.getUsers()).thenReturn(new HashSet<>());
+        when(userSet.acquire("nonExistentUser")).thenReturn(null);
         Command loginCommand = new Command("login", new String[]{"nonExistentUser", "password"});
         String result = commandExecutor.execute(loginCommand, selectionKey);
         assertEquals("No such account exists.", result);
@@ -123,7 +140,7 @@ public class CommandExecutorTest {
     @Test
     public void testLoginWhenPasswordDoesNotMatch() {
         User existingUser = new User("existingUser", "correctPassword");
-        when(userSet.getUsers()).thenReturn(Set.of(existingUser));
+        when(userSet.acquire("existingUser")).thenReturn(existingUser);
         Command loginCommand = new Command("login", new String[]{"existingUser", "incorrectPassword"});
         String result = commandExecutor.execute(loginCommand, selectionKey);
         assertEquals("Incorrect password. Please try again.", result);
@@ -214,12 +231,65 @@ public class CommandExecutorTest {
     public void testBuy() {
         User user = new User("username", "password");
         when(selectionKey.attachment()).thenReturn(user);
-        when(availableAssets.find("id")).thenReturn(new Asset("id", "Bitcoin", 1, 1000));
+        when(availableAssets.quote("id")).thenReturn(CompletableFuture.completedFuture(new Asset("id", "Bitcoin", 1,
+            1000)));
         Command buyCommand = new Command("buy", new String[]{"id", "0"});
         String result = commandExecutor.execute(buyCommand, selectionKey);
         assertEquals("Transaction completed", result);
     }
 
+    @Test
+    public void testBuyWaitsForQuoteWithoutLockingWallet() {
+        User user = new User("username", "password");
+        user.getWallet().depositMoney(100);
+        when(selectionKey.attachment()).thenReturn(user);
+        CompletableFuture<Asset> quote = new CompletableFuture<>();
+        when(availableAssets.quote("SOL")).thenReturn(quote);
+
+        CompletableFuture<String> reply = commandExecutor.executeAsync(new Command("buy", new String[]{"SOL", "40"}),
+            selectionKey);
+        assertFalse(reply.isDone());
+        assertFalse(Thread.holdsLock(user.getWallet()));
+        assertEquals(100, user.getWallet().getBalance());
+
+        quote.complete(new Asset("SOL", "Solana", 1, 20));
+        assertEquals("Transaction completed", reply.join());
+        assertEquals(60, user.getWallet().getBalance());
+        assertEquals(Set.of(2.0), user.getWallet().getPurchasedAssetsAmount().get("SOL"));
+    }
+
+    @Test
+    public void testBuyIsDroppedWhenClientLeavesBeforeQuote() {
+        User user = new User("username", "password");
+        user.getWallet().depositMoney(100);
+        when(selectionKey.attachment()).thenReturn(user);
+        CompletableFuture<Asset> quote = new CompletableFuture<>();
+        when(availableAssets.quote("SOL")).thenReturn(quote);
+
+        CompletableFuture<String> reply = commandExecutor.executeAsync(new Command("buy", new String[]{"SOL", "40"}),
+            selectionKey);
+        when(selectionKey.attachment()).thenReturn(null);
+        quote.complete(new Asset("SOL", "Solana", 1, 20));
+
+        assertEquals("Log in first or create an account to perform this action.", reply.join());
+        assertEquals(100, user.getWallet().getBalance());
+    }
+
+    @Test
+    public void testTradesThatCannotSucceedDoNotAskForQuotes() {
+        User user = new User("username", "password");
+        user.getWallet().depositMoney(10);
+        when(selectionKey.attachment()).thenReturn(user);
+
+        assertEquals("Amount cannot be negative.",
+            commandExecutor.execute(new Command("buy", new String[]{"SOL", "-5"}), selectionKey));
+        assertEquals("You do not have enough on balance.",
+            commandExecutor.execute(new Command("buy", new String[]{"SOL", "40"}), selectionKey));
+        assertEquals("No such asset was purchased.",
+            commandExecutor.execute(new Command("sell", new String[]{"SOL"}), selectionKey));
+        verify(availableAssets, never()).quote(any());
+    }
+
     @Test
     public void testBuyNullKetAttachment() {
         when(selectionKey.attachment()).thenReturn(null);
@@ -237,6 +307,21 @@ public class CommandExecutorTest {
         assertEquals("Invalid arguments", result);
     }
 
+    @Test
+    public void testNonFiniteAmountsAreInvalid() {
+        User user = new User("username", "password");
+        when(selectionKey.attachment()).thenReturn(user);
+
+        for (String amount : new String[]{"NaN", "Infinity", "-Infinity", "1e400"}) {
+            assertEquals("Amount of money is invalid.",
+                commandExecutor.execute(new Command("deposit", new String[]{amount}), selectionKey));
+            assertEquals("Amount of money is invalid.",
+                commandExecutor.execute(new Command("buy", new String[]{"ETH", amount}), selectionKey));
+        }
+        assertEquals(0, user.getWallet().getBalance());
+        verify(availableAssets, never()).quote(any());
+    }
+
     @Test
     public void testBuyInvalidAmountArgument() {
         User loggedInUser = mock(User.class);
@@ -253,8 +338,8 @@ public class CommandExecutorTest {
             Wallet mockedWallet = mock(Wallet.class);
             when(selectionKey.attachment()).thenReturn(loggedInUser);
             when(loggedInUser.getWallet()).thenReturn(mockedWallet);
-            doThrow(IllegalArgumentException.class).when(mockedWallet).buyAsset(any(String.class),
-                any(double.class), any(AvailableAssets.class));
+            doThrow(IllegalArgumentException.class).when(mockedWallet).buyAssetAt(any(),
+                any(double.class));
             Command buyCommand = new Command("buy", new String[] {"ETH", "-100"});
             String result = commandExecutor.execute(buyCommand, selectionKey);
             assertEquals("Amount cannot be negative.", result);
@@ -270,8 +355,8 @@ public class CommandExecutorTest {
             Wallet mockedWallet = mock(Wallet.class);
             when(selectionKey.attachment()).thenReturn(loggedInUser);
             when(loggedInUser.getWallet()).thenReturn(mockedWallet);
-            doThrow(InsufficientBalanceException.class).when(mockedWallet).buyAsset(any(String.class),
-                any(double.class), any(AvailableAssets.class));
+            doThrow(InsufficientBalanceException.class).when(mockedWallet).buyAssetAt(any(),
+                any(double.class));
             Command buyCommand = new Command("buy", new String[] {"ETH", "100"});
             String result = commandExecutor.execute(buyCommand, selectionKey);
             assertEquals("You do not have enough on balance.", result);
@@ -287,8 +372,9 @@ public class CommandExecutorTest {
             Wallet mockedWallet = mock(Wallet.class);
             when(selectionKey.attachment()).thenReturn(loggedInUser);
             when(loggedInUser.getWallet()).thenReturn(mockedWallet);
-            doThrow(NoSuchAssetExistsException.class).when(mockedWallet).buyAsset(any(String.class),
-                any(double.class), any(AvailableAssets.class));
+            when(mockedWallet.getBalance()).thenReturn(1000.0);
+            doThrow(NoSuchAssetExistsException.class).when(mockedWallet).buyAssetAt(any(),
+                any(double.class));
             Command buyCommand = new Command("buy", new String[] {"ETH", "100"});
             String result = commandExecutor.execute(buyCommand, selectionKey);
             assertEquals("No such asset is available for purchasing.", result);
@@ -302,7 +388,9 @@ public class CommandExecutorTest {
         try {
             User user = new User("username", "password");
             when(selectionKey.attachment()).thenReturn(user);
-            when(availableAssets.find("id")).thenReturn(new Asset("id", "Bitcoin", 1, 1000));
+            Asset asset = new Asset("id", "Bitcoin", 1, 1000);
+            when(availableAssets.find("id")).thenReturn(asset);
+            when(availableAssets.quote("id")).thenReturn(CompletableFuture.completedFuture(asset));
             user.getWallet().buyAsset("id", 0, availableAssets);
             Command sellCommand = new Command("sell", new String[] {"id"});
             String result = commandExecutor.execute(sellCommand, selectionKey);
@@ -336,8 +424,9 @@ public class CommandExecutorTest {
             Wallet mockedWallet = mock(Wallet.class);
             when(selectionKey.attachment()).thenReturn(loggedInUser);
             when(loggedInUser.getWallet()).thenReturn(mockedWallet);
-            doThrow(NoSuchAssetExistsException.class).when(mockedWallet).sellAsset(any(String.class),
-                any(AvailableAssets.class));
+            when(mockedWallet.hasPurchased("ETH")).thenReturn(true);
+            doThrow(NoSuchAssetExistsException.class).when(mockedWallet).sellAssetAt(any(String.class),
+                any());
             Command sellCommand = new Command("sell", new String[] {"ETH"});
             String result = commandExecutor.execute(sellCommand, selectionKey);
             assertEquals("No such asset is available for purchasing.", result);
@@ -353,8 +442,9 @@ public class CommandExecutorTest {
             Wallet mockedWallet = mock(Wallet.class);
             when(selectionKey.attachment()).thenReturn(loggedInUser);
             when(loggedInUser.getWallet()).thenReturn(mockedWallet);
-            doThrow(NoSuchAssetPurchasedException.class).when(mockedWallet).sellAsset(any(String.class),
-                any(AvailableAssets.class));
+            when(mockedWallet.hasPurchased("ETH")).thenReturn(true);
+            doThrow(NoSuchAssetPurchasedException.class).when(mockedWallet).sellAssetAt(any(String.class),
+                any());
             Command sellCommand = new Command("sell", new String[] {"ETH"});
             String result = commandExecutor.execute(sellCommand, selectionKey);
             assertEquals("No such asset was purchased.", result);
@@ -390,13 +480,32 @@ public class CommandExecutorTest {
         when(selectionKey.attachment()).thenReturn(loggedInUser);
         Wallet wallet = mock(Wallet.class);
         String expectedOverallSummary = "Bitcoin: 2.0 BTC\nEthereum: 5.0 ETH\nTotal balance: $10000\n";
-        when(wallet.getWalletOverallSummary(availableAssets)).thenReturn(expectedOverallSummary);
+        when(wallet.getWalletOverallSummary(anyMap())).thenReturn(expectedOverallSummary);
         when(loggedInUser.getWallet()).thenReturn(wallet);
         String result = commandExecutor.execute(new Command("get-wallet-overall-summary", null), selectionKey);
 
         assertEquals(expectedOverallSummary, result);
     }
 
+    @Test
+    public void testGetWalletOverallSummaryQuotesAssetsOutsideSnapshot() {
+        User user = new User("username", "password");
+        user.getWallet().depositMoney(100);
+        user.getWallet().applyPurchase("DOGE", 10, 0.1);
+        user.getWallet().applyPurchase("GONE", 10, 1);
+        when(selectionKey.attachment()).thenReturn(user);
+        CompletableFuture<Asset> quote = new CompletableFuture<>();
+        when(availableAssets.quote("DOGE")).thenReturn(quote);
+
+        CompletableFuture<String> reply = commandExecutor.executeAsync(
+            new Command("get-wallet-overall-summary", null), selectionKey);
+        assertFalse(reply.isDone());
+        quote.complete(new Asset("DOGE", "Dogecoin", 1, 0.2));
+
+        assertEquals("Overall winnings: $10.0" + System.lineSeparator()
+            + "Not included, no current price: GONE" + System.lineSeparator(), reply.join());
+    }
+
     @Test
     public void testGetWalletOverallSummaryNullKetAttachment() {
         when(selectionKey.attachment()).thenReturn(null);
@@ -430,4 +539,147 @@ public class CommandExecutorTest {
         String result = commandExecutor.execute(new Command(unknownCommand, null), selectionKey);
         assertEquals("Unknown command.", result);
     }
+
+    @Test
+    public void testSubscribe() {
+        when(selectionKey.attachment()).thenReturn(new User("username", "password"));
+        when(availableAssets.getSnapshot()).thenReturn(new AssetSnapshot(1, Instant.EPOCH,
+            List.of(new Asset("BTC", "Bitcoin", 1, 1000))));
+        String result = commandExecutor.execute(new Command("subscribe", new String[]{"BTC"}), selectionKey);
+        assertEquals("Subscribed to price updates.", result);
+        assertEquals(Set.of("BTC"), commandExecutor.getPriceSubscriptions().getSubscribedAssets(selectionKey));
+    }
+
+    @Test
+    public void testSubscribeAssetDoesNotExist() {
+        when(selectionKey.attachment()).thenReturn(new User("username", "password"));
+        String result = commandExecutor.execute(new Command("subscribe", new String[]{"BTC"}), selectionKey);
+        assertEquals("No such asset is available for purchasing.", result);
+        assertFalse(commandExecutor.getPriceSubscriptions().hasSubscribers());
+    }
+
+    @Test
+    public void testSubscribeWithoutArguments() {
+        when(selectionKey.attachment()).thenReturn(new User("username", "password"));
+        String result = commandExecutor.execute(new Command("subscribe", null), selectionKey);
+        assertEquals("Invalid arguments", result);
+    }
+
+    @Test
+    public void testSubscribeToMoreAssetsThanAccepted() {
+        when(selectionKey.attachment()).thenReturn(new User("username", "password"));
+        List<Asset> assets = new ArrayList<>();
+        StringBuilder line = new StringBuilder("subscribe");
+        for (int i = 0; i <= CommandParser.MAX_ARGUMENTS; i++) {
+            assets.add(new Asset("ID" + i, "Asset " + i, 1, 1000));
+            line.append(" ID").append(i);
+        }
+        when(availableAssets.getSnapshot()).thenReturn(new AssetSnapshot(1, Instant.EPOCH, assets));
+
+        Command command = new CommandParser().parse(ByteBuffer.wrap(line.toString().getBytes(StandardCharsets.UTF_8)));
+        String result = commandExecutor.execute(command, selectionKey);
+        assertEquals("Too many arguments, at most 8 are accepted.", result);
+        assertFalse(commandExecutor.getPriceSubscriptions().hasSubscribers());
+
+        String[] ids = assets.stream().map(Asset::getAssetId).toArray(String[]::new);
+        result = commandExecutor.execute(new Command("subscribe", ids), selectionKey);
+        assertEquals("Too many arguments, at most 8 are accepted.", result);
+
+        String[] accepted = Arrays.copyOf(ids, CommandParser.MAX_ARGUMENTS);
+        result = commandExecutor.execute(new Command("subscribe", accepted), selectionKey);
+        assertEquals("Subscribed to price updates.", result);
+        assertEquals(Set.of(accepted), commandExecutor.getPriceSubscriptions().getSubscribedAssets(selectionKey));
+    }
+
+    @Test
+    public void testUnsubscribeAndDisconnectDropSubscriptions() {
+        when(selectionKey.attachment()).thenReturn(new User("username", "password"));
+        when(availableAssets.getSnapshot()).thenReturn(new AssetSnapshot(1, Instant.EPOCH,
+            List.of(new Asset("BTC", "Bitcoin", 1, 1000))));
+        commandExecutor.execute(new Command("subscribe", new String[]{"BTC"}), selectionKey);
+
+        String result = commandExecutor.execute(new Command("unsubscribe", null), selectionKey);
+        assertEquals("Unsubscribed from price updates.", result);
+        assertFalse(commandExecutor.getPriceSubscriptions().hasSubscribers());
+
+        commandExecutor.execute(new Command("subscribe", new String[]{"BTC"}), selectionKey);
+        commandExecutor.execute(new Command("disconnect", null), selectionKey);
+        assertFalse(commandExecutor.getPriceSubscriptions().hasSubscribers());
+    }
+
+    @Test
+    public void testSubscribeIgnoresOnDemandQuotes() {
+        when(selectionKey.attachment()).thenReturn(new User("username", "password"));
+        when(availableAssets.getSnapshot()).thenReturn(AssetSnapshot.empty());
+        when(availableAssets.find("DOGE")).thenReturn(new Asset("DOGE", "Dogecoin", 1, 0.1));
+        String result = commandExecutor.execute(new Command("subscribe", new String[]{"DOGE"}), selectionKey);
+        assertEquals("No such asset is available for purchasing.", result);
+        assertFalse(commandExecutor.getPriceSubscriptions().hasSubscribers());
+    }
+
+    @Test
+    public void testPriceHistory() {
+        when(selectionKey.attachment()).thenReturn(new User("username", "password"));
+        commandExecutor.getPriceHistory().record("BTC", 0, 1000);
+        commandExecutor.getPriceHistory().record("BTC", 1_000, 1200);
+        String result = commandExecutor.execute(new Command("price-history", new String[]{"BTC", "minute"}),
+            selectionKey);
+        assertTrue(result.contains("1970-01-01T00:00:00Z open: 1000.0 high: 1200.0 low: 1000.0 close: 1200.0"));
+    }
+
+    @Test
+    public void testPriceHistoryInvalidInterval() {
+        when(selectionKey.attachment()).thenReturn(new User("username", "password"));
+        String result = commandExecutor.execute(new Command("price-history", new String[]{"BTC", "week"}),
+            selectionKey);
+        assertEquals("Invalid arguments", result);
+    }
+
+    @Test
+    public void testPriceHistoryWithoutRecords() {
+        when(selectionKey.attachment()).thenReturn(new User("username", "password"));
+        String result = commandExecutor.execute(new Command("price-history", new String[]{"BTC", "day"}),
+            selectionKey);
+        assertEquals("No price history is recorded for this asset.", result);
+    }
+
+    @Test
+    public void testExportRequiresAdministrator() {
+        UserExporter exporter = mock(UserExporter.class);
+        CommandExecutor executor = new CommandExecutor(userSet, availableAssets, new PriceHistory(), exporter,
+            Set.of("admin"));
+        when(selectionKey.attachment()).thenReturn(new User("username", "password"));
+        String result = executor.execute(new Command("export", null), selectionKey);
+        assertEquals("Only administrators can export user data.", result);
+        verify(exporter, never()).startExport();
+    }
+
+    @Test
+    public void testExportNotLoggedIn() {
+        String result = commandExecutor.execute(new Command("export", null), selectionKey);
+        assertEquals("Log in first or create an account to perform this action.", result);
+    }
+
+    @Test
+    public void testExportStarted() {
+        UserExporter exporter = mock(UserExporter.class);
+        Path target = Path.of("database", "exports", "users.jsonl");
+        when(exporter.startExport()).thenReturn(new UserExporter.Export(target, new CompletableFuture<>()))
+            .thenReturn(null);
+        CommandExecutor executor = new CommandExecutor(userSet, availableAssets, new PriceHistory(), exporter,
+            Set.of("admin"));
+        when(selectionKey.attachment()).thenReturn(new User("admin", "password"));
+
+        assertEquals("Export started, writing to " + target,
+            executor.execute(new Command("export", null), selectionKey));
+        assertEquals("An export is already running.", executor.execute(new Command("export", null), selectionKey));
+    }
+
+    @Test
+    public void testDepositCapturesStateBeforeUpdate() {
+        User user = new User("username", "password");
+        when(selectionKey.attachment()).thenReturn(user);
+        commandExecutor.execute(new Command("deposit", new String[]{"100"}), selectionKey);
+        verify(userSet).beforeUpdate(user);
+    }
 }
@@ -0,0 +1,126 @@
+package bg.sofia.uni.mjt.cryptowallet.command;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.Command;
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.CommandParser;
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.CommandType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandParserTest {
+    private CommandParser parser;
+
+    @BeforeEach
+    public void setUp() {
+        parser = new CommandParser();
+    }
+
+    private Command parse(String input) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(input.length() * 4);
+        buffer.put(input.getBytes(StandardCharsets.UTF_8)).flip();
+        return parser.parse(buffer);
+    }
+
+    @Test
+    public void testParseOneWordCommand() {
+        Command command = parse("list-offerings");
+        assertEquals(CommandType.LIST_OFFERINGS, command.type());
+        assertEquals(Command.createCommand("list-offerings"), command);
+    }
+
+    @Test
+    public void testParseStringArguments() {
+        Command command = parse("login desi 123");
+        assertEquals(CommandType.LOGIN, command.type());
+        assertEquals("login", command.command());
+        assertArrayEquals(new String[] {"desi", "123"}, command.arguments());
+        assertFalse(command.hasAmount());
+    }
+
+    @Test
+    public void testParseDepositAmountInPlace() {
+        Command command = parse("deposit 100.25");
+        assertEquals(CommandType.DEPOSIT, command.type());
+        assertEquals(100.25, command.amount());
+        assertEquals(0, command.arguments().length);
+        assertEquals(1, command.argumentCount());
+    }
+
+    @Test
+    public void testParseBuyAmountInPlace() {
+        Command command = parse("buy BTC -0.5");
+        assertArrayEquals(new String[] {"BTC"}, command.arguments());
+        assertEquals(-0.5, command.amount());
+        assertEquals(2, command.argumentCount());
+    }
+
+    @Test
+    public void testParseInvalidAmountKeptAsArgument() {
+        Command command = parse("deposit 1e3");
+        assertFalse(command.hasAmount());
+        assertArrayEquals(new String[] {"1e3"}, command.arguments());
+    }
+
+    @Test
+    public void testParseAmountMatchesParseDouble() {
+        for (String amount : new String[] {"0", "1", "0.1", "123.456", "99999.99999", "0.000001"}) {
+            assertEquals(Double.parseDouble(amount), parse("deposit " + amount).amount(),
+                "Amount " + amount + " was not parsed exactly.");
+        }
+    }
+
+    @Test
+    public void testParseUnknownCommand() {
+        Command command = parse("unknown-command");
+        assertEquals(CommandType.UNKNOWN, command.type());
+        assertEquals("unknown-command", command.command());
+        assertNull(command.arguments());
+    }
+
+    @Test
+    public void testParseRepeatedSpaces() {
+        Command command = parse("  sell   ETH ");
+        assertEquals(CommandType.SELL, command.type());
+        assertArrayEquals(new String[] {"ETH"}, command.arguments());
+    }
+
+    @Test
+    public void testParseAllowedArguments() {
+        Command command = parse("subscribe BTC ETH SOL ADA DOT XRP LTC DOGE");
+        assertEquals(CommandType.SUBSCRIBE, command.type());
+        assertArrayEquals(new String[] {"BTC", "ETH", "SOL", "ADA", "DOT", "XRP", "LTC", "DOGE"},
+            command.arguments());
+    }
+
+    @Test
+    public void testParseTooManyArguments() {
+        Command command = parse("subscribe BTC ETH SOL ADA DOT XRP LTC DOGE TRX");
+        assertEquals(CommandType.TOO_MANY_ARGUMENTS, command.type());
+        assertEquals("subscribe", command.command());
+        assertNull(command.arguments());
+    }
+
+    @Test
+    public void testParseRangeLeavesBufferPosition() {
+        ByteBuffer buffer = ByteBuffer.wrap("xxhelpyy".getBytes(StandardCharsets.UTF_8));
+        Command command = parser.parse(buffer, 2, 6);
+        assertEquals(CommandType.HELP, command.type());
+        assertEquals(0, buffer.position());
+        assertTrue(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testParseNullBuffer() {
+        assertThrows(IllegalArgumentException.class, () -> parser.parse(null),
+            "IllegalArgumentException expected but was never thrown");
+    }
+}
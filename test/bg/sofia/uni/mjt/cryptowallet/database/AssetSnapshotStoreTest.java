@@ -0,0 +1,77 @@
+package bg.sofia.uni.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.AssetSnapshot;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.AssetSnapshotStore;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.AvailableAssets;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AssetSnapshotStoreTest {
+    private static final Instant FETCHED_AT = Instant.parse("2024-01-01T12:00:00Z");
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void testSaveAndLoadRoundTrip() throws IOException {
+        AssetSnapshotStore store = new AssetSnapshotStore(directory.resolve("assets.snapshot"));
+        store.save(new AssetSnapshot(7, FETCHED_AT, List.of(new Asset("BTC", "Bitcoin", 1, 42000.5),
+            new Asset("ETH", "Ethereum", 1, 2200.25))));
+
+        AssetSnapshot loaded = store.load().orElseThrow();
+
+        assertEquals(7, loaded.getVersion());
+        assertEquals(FETCHED_AT, loaded.getFetchedAt());
+        assertTrue(loaded.isRestored());
+        assertEquals(new Asset("BTC", "Bitcoin", 1, 42000.5), loaded.find("BTC"));
+        assertEquals(new Asset("ETH", "Ethereum", 1, 2200.25), loaded.find("ETH"));
+    }
+
+    @Test
+    public void testLoadMissingSnapshot() throws IOException {
+        assertFalse(new AssetSnapshotStore(directory.resolve("missing.snapshot")).load().isPresent());
+    }
+
+    @Test
+    public void testLoadCorruptSnapshot() throws IOException {
+        Path path = directory.resolve("assets.snapshot");
+        AssetSnapshotStore store = new AssetSnapshotStore(path);
+        store.save(new AssetSnapshot(1, FETCHED_AT, List.of(new Asset("BTC", "Bitcoin", 1, 100))));
+
+        byte[] data = Files.readAllBytes(path);
+        data[data.length / 2] ^= 1;
+        Files.write(path, data);
+
+        assertThrows(IOException.class, store::load, "IOException expected but was never thrown");
+    }
+
+    @Test
+    public void testRestoredSnapshotIsServedUntilFirstRefresh() throws IOException {
+        AssetSnapshotStore store = new AssetSnapshotStore(directory.resolve("assets.snapshot"));
+        store.save(new AssetSnapshot(3, FETCHED_AT, List.of(new Asset("BTC", "Bitcoin", 1, 100))));
+
+        AvailableAssets availableAssets = new AvailableAssets();
+        assertTrue(availableAssets.restore(store.load().orElseThrow()));
+        assertEquals(new Asset("BTC", "Bitcoin", 1, 100), availableAssets.find("BTC"));
+        assertTrue(availableAssets.listOfferings().contains(FETCHED_AT.toString()));
+
+        availableAssets.updateAvailableAssets(Set.of(new Asset("BTC", "Bitcoin", 1, 110)));
+        assertEquals(4, availableAssets.getSnapshot().getVersion());
+        assertFalse(availableAssets.getSnapshot().isRestored());
+        assertFalse(availableAssets.restore(store.load().orElseThrow()),
+            "A restored snapshot must not replace fresh prices.");
+    }
+}
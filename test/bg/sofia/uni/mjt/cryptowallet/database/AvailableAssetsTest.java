@@ -4,12 +4,23 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.AssetSnapshot;
 import bg.sofia.uni.fmi.mjt.cryptowallet.database.AvailableAssets;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.OfferingsSnapshot;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class AvailableAssetsTest {
@@ -87,5 +98,72 @@ public class AvailableAssetsTest {
 
         assertEquals(expected, availableAssets.listOfferings());
     }
-}
 
+    @Test
+    public void testOfferingsSnapshotIsVersionedPerUpdate() {
+        OfferingsSnapshot initial = availableAssets.getOfferingsSnapshot();
+
+        availableAssets.updateAvailableAssets(Set.of(new Asset("BTC", "Bitcoin", 1, 100)));
+        OfferingsSnapshot updated = availableAssets.getOfferingsSnapshot();
+
+        assertEquals(initial.getVersion() + 1, updated.getVersion());
+        assertSame(updated.getText(), availableAssets.listOfferings());
+        assertSame(availableAssets.listOfferings(), availableAssets.listOfferings(),
+            "Offerings must not be rebuilt between refreshes.");
+
+        ByteBuffer raw = updated.getEncoded(false);
+        byte[] bytes = new byte[raw.remaining()];
+        raw.get(bytes);
+        assertEquals(updated.getText(), new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testUpdateListenerReceivesOnlyChangedAssets() {
+        availableAssets.updateAvailableAssets(Set.of(new Asset("BTC", "Bitcoin", 1, 100),
+            new Asset("ETH", "Ethereum", 1, 100)));
+
+        List<Asset> changed = new ArrayList<>();
+        availableAssets.addUpdateListener(changed::addAll);
+        availableAssets.updateAvailableAssets(Set.of(new Asset("BTC", "Bitcoin", 1, 200),
+            new Asset("ETH", "Ethereum", 1, 100), new Asset("DOGE", "Dogecoin", 1, 1)));
+
+        assertEquals(2, changed.size());
+        assertTrue(changed.contains(new Asset("BTC", "Bitcoin", 1, 200)));
+        assertTrue(changed.contains(new Asset("DOGE", "Dogecoin", 1, 1)));
+    }
+
+    @Test
+    public void testSnapshotIsReplacedNotMutated() {
+        Instant fetchedAt = Instant.parse("2024-01-01T00:00:00Z");
+        AvailableAssets assets = new AvailableAssets(AvailableAssets.DEFAULT_MAX_ASSET_COUNT,
+            Clock.fixed(fetchedAt, ZoneOffset.UTC));
+        assets.updateAvailableAssets(Set.of(new Asset("BTC", "Bitcoin", 1, 100)));
+        AssetSnapshot first = assets.getSnapshot();
+
+        assets.updateAvailableAssets(Set.of(new Asset("ETH", "Ethereum", 1, 100)));
+        AssetSnapshot second = assets.getSnapshot();
+
+        assertEquals(first.getVersion() + 1, second.getVersion());
+        assertEquals(fetchedAt, second.getFetchedAt());
+        assertEquals(new Asset("BTC", "Bitcoin", 1, 100), first.find("BTC"));
+        assertNull(second.find("BTC"));
+        assertEquals(new Asset("ETH", "Ethereum", 1, 100), assets.find("ETH"));
+    }
+
+    @Test
+    public void testMaxAssetCountIsConfigurable() {
+        Set<Asset> assets = new HashSet<>();
+        for (int i = 0; i < 300; i++) {
+            assets.add(new Asset("A" + i, "Asset " + i, 1, i));
+        }
+        assets.add(new Asset("USD", "US Dollar", 0, 1));
+
+        AvailableAssets limited = new AvailableAssets(250);
+        limited.updateAvailableAssets(assets);
+
+        assertEquals(250, limited.getAvailableAssets().size());
+        assertNull(limited.find("USD"));
+        assertThrows(IllegalArgumentException.class, () -> new AvailableAssets(0),
+            "IllegalArgumentException expected but was never thrown");
+    }
+}
@@ -0,0 +1,13 @@
+package bg.sofia.uni.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.UserRepository;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.UserSet;
+
+import java.nio.file.Path;
+
+public class FileUserRepositoryTest extends UserRepositoryContractTest {
+    @Override
+    protected UserRepository open(Path directory) {
+        return new UserSet(directory.resolve("users.txt").toString());
+    }
+}
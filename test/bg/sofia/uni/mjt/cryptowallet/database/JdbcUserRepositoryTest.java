@@ -0,0 +1,15 @@
+package bg.sofia.uni.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.JdbcUserRepository;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.UserRepository;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+// runs against an embedded H2 database, so com.h2database:h2 has to be on the test classpath
+public class JdbcUserRepositoryTest extends UserRepositoryContractTest {
+    @Override
+    protected UserRepository open(Path directory) throws SQLException {
+        return new JdbcUserRepository("jdbc:h2:" + directory.resolve("users").toAbsolutePath());
+    }
+}
@@ -0,0 +1,269 @@
+package bg.sofia.uni.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.Command;
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.CommandExecutor;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.AvailableAssets;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.LazyUserRepository;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.LazyUserStore;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.UserRepository;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.WalletJournal;
+import bg.sofia.uni.fmi.mjt.cryptowallet.exception.UserAlreadyExistsException;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class LazyUserRepositoryTest extends UserRepositoryContractTest {
+    private static final int RESIDENT_USERS = 4;
+
+    @Override
+    protected UserRepository open(Path directory) throws IOException {
+        return new LazyUserRepository(new LazyUserStore(directory.resolve("users")), null, RESIDENT_USERS);
+    }
+
+    private LazyUserRepository open(int residentUsers) throws IOException {
+        return new LazyUserRepository(new LazyUserStore(directory.resolve("users")), null, residentUsers);
+    }
+
+    @Test
+    public void testResidentUsersAreBounded() throws Exception {
+        try (LazyUserRepository set = open(2)) {
+            for (int i = 0; i < 5; i++) {
+                set.create(new User("user" + i, "pass"));
+            }
+
+            assertEquals(2, set.getResidentUserCount());
+            assertNotNull(set.getUser("user0"));
+            assertNull(set.getUser("missing"));
+            assertEquals(2, set.getResidentUserCount());
+        }
+    }
+
+    @Test
+    public void testRegisteringExistingUserOnDiskFails() throws Exception {
+        try (LazyUserRepository set = open(1)) {
+            set.create(new User("alice", "pass"));
+            set.create(new User("bob", "pass"));
+
+            assertThrows(UserAlreadyExistsException.class, () -> set.create(new User("alice", "other")),
+                "UserAlreadyExistsException was expected but was never thrown.");
+        }
+    }
+
+    @Test
+    public void testPinnedUserIsNotEvicted() throws Exception {
+        try (LazyUserRepository set = open(1)) {
+            set.create(new User("alice", "pass"));
+            User alice = set.acquire("alice");
+            set.create(new User("bob", "pass"));
+            set.create(new User("carol", "pass"));
+
+            assertSame(alice, set.getUser("alice"));
+            set.release(alice);
+            set.getUser("bob");
+            assertEquals(1, set.getResidentUserCount());
+        }
+    }
+
+    @Test
+    public void testConcurrentLookupsOfEvictedUserShareOneInstance() throws Exception {
+        try (LazyUserRepository set = open(1)) {
+            set.create(new User("alice", "pass"));
+            set.create(new User("bob", "pass"));
+            assertEquals(1, set.getResidentUserCount());
+
+            List<Future<User>> lookups = new ArrayList<>();
+            try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+                for (int i = 0; i < 32; i++) {
+                    lookups.add(executor.submit(() -> set.acquire("alice")));
+                }
+            }
+
+            User alice = lookups.getFirst().get();
+            for (Future<User> lookup : lookups) {
+                assertSame(alice, lookup.get());
+            }
+            assertSame(alice, set.getUser("alice"));
+        }
+    }
+
+    @Test
+    public void testConcurrentUpdatesSurviveEvictions() throws Exception {
+        int users = 5;
+        int deposits = 800;
+        try (LazyUserRepository set = open(2)) {
+            for (int i = 0; i < users; i++) {
+                set.create(new User("user" + i, "pass"));
+            }
+
+            try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+                for (int i = 0; i < deposits; i++) {
+                    String username = "user" + i % users;
+                    executor.submit(() -> {
+                        User user = set.acquire(username);
+                        synchronized (user.getWallet()) {
+                            user.getWallet().depositMoney(1);
+                            set.updateWallet(user);
+                        }
+                        set.release(user);
+                    });
+                }
+            }
+            assertEquals(2, set.getResidentUserCount());
+        }
+
+        try (LazyUserRepository reopened = open(2)) {
+            double total = 0;
+            for (int i = 0; i < users; i++) {
+                total += reopened.getUser("user" + i).getWallet().getBalance();
+            }
+            assertEquals(deposits, total, "Every deposit should reach the store.");
+        }
+    }
+
+    @Test
+    public void testEvictedWalletsAreWrittenBack() throws Exception {
+        try (LazyUserRepository set = open(1)) {
+            set.create(new User("alice", "pass"));
+            User alice = set.acquire("alice");
+            alice.getWallet().depositMoney(25);
+            set.updateWallet(alice);
+            set.release(alice);
+            set.create(new User("bob", "pass"));
+
+            assertEquals(25, set.getUser("alice").getWallet().getBalance());
+        }
+
+        try (LazyUserRepository reopened = open(1)) {
+            assertEquals(0, reopened.getResidentUserCount());
+            assertEquals(25, reopened.getUser("alice").getWallet().getBalance());
+        }
+    }
+
+    @Test
+    public void testCheckpointWritesOnlyDirtyUsers() throws Exception {
+        LazyUserStore store = new LazyUserStore(directory.resolve("users"));
+        try (LazyUserRepository set = new LazyUserRepository(store, null, 100)) {
+            for (int i = 0; i < 50; i++) {
+                set.create(new User("user" + i, "pass"));
+            }
+            set.checkpoint();
+            assertEquals(0, set.getDirtyUserCount());
+            long sizeAfterFirstCheckpoint = store.getDataSize();
+
+            User user = set.acquire("user7");
+            user.getWallet().depositMoney(10);
+            set.updateWallet(user);
+            set.release(user);
+            assertEquals(1, set.getDirtyUserCount());
+            set.checkpoint();
+
+            long recordSize = sizeAfterFirstCheckpoint / 50;
+            assertTrue(store.getDataSize() - sizeAfterFirstCheckpoint <= recordSize + recordSize / 2,
+                "Only the changed user should be appended.");
+            set.checkpoint();
+            assertEquals(0, set.getDirtyUserCount());
+        }
+    }
+
+    @Test
+    public void testSnapshotReadsUnwrittenUsersFromMemory() throws Exception {
+        LazyUserStore store = new LazyUserStore(directory.resolve("users"));
+        try (LazyUserRepository set = new LazyUserRepository(store, null, 100)) {
+            for (int i = 0; i < 3; i++) {
+                set.create(new User("user" + i, "pass"));
+            }
+            set.checkpoint();
+            User user = set.acquire("user0");
+            user.getWallet().depositMoney(10);
+            set.updateWallet(user);
+            set.release(user);
+            set.create(new User("late", "pass"));
+            long dataSize = store.getDataSize();
+
+            Map<String, Double> balances = new HashMap<>();
+            set.forEachInSnapshot(snapshot -> assertNull(balances.put(snapshot.getUsername(),
+                snapshot.getWallet().getBalance())));
+
+            assertEquals(4, balances.size());
+            assertEquals(10, balances.get("user0"));
+            assertTrue(balances.containsKey("late"));
+            assertEquals(2, set.getDirtyUserCount(), "The export should not write users back.");
+            assertEquals(dataSize, store.getDataSize());
+        }
+    }
+
+    @Test
+    public void testTradePendingOnQuoteSurvivesDisconnect() throws Exception {
+        AvailableAssets assets = mock(AvailableAssets.class);
+        CompletableFuture<Asset> quote = new CompletableFuture<>();
+        when(assets.quote("SOL")).thenReturn(quote);
+
+        try (LazyUserRepository set = open(0)) {
+            CommandExecutor executor = new CommandExecutor(set, assets);
+            SelectionKey session = mock(SelectionKey.class);
+            executor.execute(new Command("register", new String[] {"alice", "secret"}), session);
+            User alice = set.acquire("alice");
+            when(session.attachment()).thenReturn(alice);
+            executor.execute(new Command("deposit", new String[] {"100"}), session);
+
+            CompletableFuture<String> reply = executor.executeAsync(new Command("buy", new String[] {"SOL", "40"}),
+                session);
+            // the mocked key keeps handing out alice, as if the trade had checked the session before it closed
+            executor.execute(new Command("disconnect", new String[0]), session);
+            assertEquals(1, set.getResidentUserCount());
+
+            quote.complete(new Asset("SOL", "Solana", 1, 20));
+            assertEquals("Transaction completed", reply.join());
+            assertEquals(0, set.getResidentUserCount());
+        }
+
+        try (LazyUserRepository reopened = open(0)) {
+            assertEquals(60, reopened.getUser("alice").getWallet().getBalance());
+        }
+    }
+
+    @Test
+    public void testJournalIsReplayedIntoLazyStore() throws IOException {
+        Path journalPath = directory.resolve("wallet.journal");
+        Path storePath = directory.resolve("users");
+        LazyUserRepository users = new LazyUserRepository(new LazyUserStore(storePath),
+            new WalletJournal(journalPath, 4, Duration.ZERO), 1);
+        CommandExecutor executor = new CommandExecutor(users, new AvailableAssets());
+        executor.execute(new Command("register", new String[] {"alice", "secret"}), mock(SelectionKey.class));
+        executor.execute(new Command("register", new String[] {"bob", "secret"}), mock(SelectionKey.class));
+        users.checkpoint();
+
+        SelectionKey session = mock(SelectionKey.class);
+        when(session.attachment()).thenReturn(users.acquire("alice"));
+        executor.execute(new Command("deposit", new String[] {"100"}), session);
+        users.getJournal().close();
+
+        try (LazyUserRepository recovered = new LazyUserRepository(new LazyUserStore(storePath),
+            new WalletJournal(journalPath), 1)) {
+            assertEquals(100, recovered.getUser("alice").getWallet().getBalance());
+            assertNotNull(recovered.getUser("bob"));
+        }
+    }
+}
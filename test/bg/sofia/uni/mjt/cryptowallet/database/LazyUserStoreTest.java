@@ -0,0 +1,225 @@
+package bg.sofia.uni.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.LazyUserStore;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import bg.sofia.uni.fmi.mjt.cryptowallet.wallet.Wallet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LazyUserStoreTest {
+    private static final String PASSWORD_HASH = new User("any", "secret").getPasswordHash();
+
+    @TempDir
+    private Path directory;
+
+    private static User createUser(String username, double balance) {
+        return User.withPasswordHash(username, PASSWORD_HASH,
+            Wallet.restore(balance, Map.of("BTC", 100.0), Map.of("BTC", Set.of(0.5)), 3));
+    }
+
+    @Test
+    public void testStoreAndLoad() throws IOException {
+        try (LazyUserStore store = new LazyUserStore(directory)) {
+            store.store(createUser("alice", 10));
+            store.store(createUser("bob", 20));
+
+            assertEquals(2, store.size());
+            assertTrue(store.contains("alice"));
+            assertFalse(store.contains("carol"));
+            assertNull(store.load("carol"));
+            assertEquals(createUser("bob", 20).getWallet(), store.load("bob").getWallet());
+        }
+    }
+
+    @Test
+    public void testLatestRecordWins() throws IOException {
+        try (LazyUserStore store = new LazyUserStore(directory)) {
+            store.store(createUser("alice", 10));
+            store.store(createUser("alice", 30));
+
+            assertEquals(1, store.size());
+            assertEquals(30, store.load("alice").getWallet().getBalance());
+        }
+    }
+
+    @Test
+    public void testReopenKeepsUsersAndCheckpoint() throws IOException {
+        try (LazyUserStore store = new LazyUserStore(directory)) {
+            store.store(createUser("alice", 10));
+            store.checkpoint(42);
+        }
+
+        try (LazyUserStore store = new LazyUserStore(directory)) {
+            assertEquals(1, store.size());
+            assertEquals(42, store.getCheckpointLsn());
+            assertEquals(10, store.load("alice").getWallet().getBalance());
+        }
+    }
+
+    @Test
+    public void testCompactionKeepsOnlyLatestRecords() throws IOException {
+        try (LazyUserStore store = new LazyUserStore(directory)) {
+            for (int round = 0; round < 5; round++) {
+                for (int i = 0; i < 100; i++) {
+                    store.store(createUser("user" + i, round));
+                }
+            }
+            long liveSize = store.getLiveDataSize();
+            assertTrue(store.getDataSize() > 4 * liveSize);
+
+            store.compact();
+            assertEquals(liveSize, store.getDataSize());
+            assertEquals(100, store.size());
+            assertEquals(4, store.load("user42").getWallet().getBalance());
+
+            store.store(createUser("user42", 9));
+            assertEquals(9, store.load("user42").getWallet().getBalance());
+        }
+
+        try (LazyUserStore store = new LazyUserStore(directory)) {
+            assertEquals(100, store.size());
+            assertEquals(9, store.load("user42").getWallet().getBalance());
+            assertEquals(4, store.load("user3").getWallet().getBalance());
+        }
+    }
+
+    @Test
+    public void testCompactionIsSkippedForSmallStores() throws IOException {
+        try (LazyUserStore store = new LazyUserStore(directory)) {
+            store.store(createUser("alice", 1));
+            store.store(createUser("alice", 2));
+
+            assertFalse(store.compactIfWasteful());
+        }
+    }
+
+    @Test
+    public void testIndexGrowsPastInitialCapacity() throws IOException {
+        int users = 60_000;
+        try (LazyUserStore store = new LazyUserStore(directory)) {
+            for (int i = 0; i < users; i++) {
+                store.store(createUser("user" + i, i));
+            }
+        }
+
+        try (LazyUserStore store = new LazyUserStore(directory)) {
+            assertEquals(users, store.size());
+            for (int i = 0; i < users; i += 997) {
+                assertEquals(i, store.load("user" + i).getWallet().getBalance());
+            }
+        }
+    }
+
+    @Test
+    public void testUncleanIndexIsRebuiltAndTornTailTruncated() throws IOException {
+        Path crashed = directory.resolve("crashed");
+        Files.createDirectories(crashed);
+        try (LazyUserStore store = new LazyUserStore(directory)) {
+            store.store(createUser("alice", 10));
+            store.store(createUser("bob", 20));
+            store.store(createUser("alice", 15));
+            store.checkpoint(7);
+            long validSize = store.getDataSize();
+
+            Files.copy(directory.resolve(LazyUserStore.DATA_FILE), crashed.resolve(LazyUserStore.DATA_FILE));
+            Files.copy(directory.resolve(LazyUserStore.INDEX_FILE), crashed.resolve(LazyUserStore.INDEX_FILE));
+            Files.write(crashed.resolve(LazyUserStore.DATA_FILE), new byte[] {0, 0, 1, 0, 5, 5},
+                StandardOpenOption.APPEND);
+
+            try (LazyUserStore recovered = new LazyUserStore(crashed)) {
+                assertEquals(validSize, recovered.getDataSize());
+                assertEquals(2, recovered.size());
+                assertEquals(7, recovered.getCheckpointLsn());
+                assertEquals(15, recovered.load("alice").getWallet().getBalance());
+                assertEquals(20, recovered.load("bob").getWallet().getBalance());
+            }
+        }
+    }
+
+    @Test
+    public void testRemovedUserStaysRemovedWhenIndexIsRebuilt() throws IOException {
+        Path crashed = directory.resolve("crashed");
+        Files.createDirectories(crashed);
+        try (LazyUserStore store = new LazyUserStore(directory)) {
+            store.store(createUser("alice", 10));
+            store.store(createUser("bob", 20));
+            assertTrue(store.remove("alice"));
+            assertFalse(store.remove("alice"));
+            assertNull(store.load("alice"));
+            assertEquals(1, store.size());
+            assertTrue(store.getDataSize() > store.getLiveDataSize(), "The removed record and tombstone are waste.");
+
+            Files.copy(directory.resolve(LazyUserStore.DATA_FILE), crashed.resolve(LazyUserStore.DATA_FILE));
+            try (LazyUserStore recovered = new LazyUserStore(crashed)) {
+                assertEquals(1, recovered.size());
+                assertFalse(recovered.contains("alice"));
+                assertEquals(20, recovered.load("bob").getWallet().getBalance());
+                assertEquals(store.getLiveDataSize(), recovered.getLiveDataSize());
+            }
+        }
+    }
+
+    @Test
+    public void testRemovalKeepsCollidingUsersReachable() throws IOException {
+        int users = 40_000;
+        try (LazyUserStore store = new LazyUserStore(directory)) {
+            for (int i = 0; i < users; i++) {
+                store.store(createUser("user" + i, i));
+            }
+            for (int i = 0; i < users; i += 2) {
+                assertTrue(store.remove("user" + i));
+            }
+
+            assertEquals(users / 2, store.size());
+            for (int i = 0; i < users; i++) {
+                assertEquals(i % 2 == 1, store.contains("user" + i), "Wrong membership for user" + i);
+            }
+            store.compact();
+            assertEquals(users / 2, store.size());
+            assertEquals(users - 1, store.load("user" + (users - 1)).getWallet().getBalance());
+        }
+    }
+
+    @Test
+    public void testSnapshotIgnoresLaterStoresAndHoldsBackCompaction() throws IOException {
+        try (LazyUserStore store = new LazyUserStore(directory)) {
+            store.store(createUser("alice", 10));
+            store.store(createUser("bob", 20));
+
+            Map<String, Double> balances = new HashMap<>();
+            try (LazyUserStore.StoreSnapshot snapshot = store.openSnapshot()) {
+                store.store(createUser("alice", 99));
+                store.store(createUser("carol", 30));
+                assertThrows(IllegalStateException.class, store::compact,
+                    "IllegalStateException expected but was never thrown");
+
+                snapshot.forEach(user -> balances.put(user.getUsername(), user.getWallet().getBalance()));
+            }
+
+            assertEquals(Map.of("alice", 10.0, "bob", 20.0), balances);
+            assertEquals(99, store.load("alice").getWallet().getBalance());
+            store.compact();
+            assertEquals(3, store.size());
+        }
+
+        try (var files = Files.list(directory)) {
+            assertEquals(Set.of(LazyUserStore.DATA_FILE, LazyUserStore.INDEX_FILE),
+                files.map(file -> file.getFileName().toString()).collect(Collectors.toSet()));
+        }
+    }
+}
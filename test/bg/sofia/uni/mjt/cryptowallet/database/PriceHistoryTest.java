@@ -0,0 +1,114 @@
+package bg.sofia.uni.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.AvailableAssets;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.Candle;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.CandleInterval;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.PriceHistory;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PriceHistoryTest {
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 60 * MINUTE;
+
+    @Test
+    public void testTicksAreDownsampledToCandles() {
+        PriceHistory history = new PriceHistory();
+        history.record("BTC", 0, 10);
+        history.record("BTC", 10_000, 15);
+        history.record("BTC", 20_000, 8);
+        history.record("BTC", MINUTE + 5_000, 12);
+
+        assertEquals(List.of(new Candle(Instant.EPOCH, 10, 15, 8, 8),
+            new Candle(Instant.ofEpochMilli(MINUTE), 12, 12, 12, 12)),
+            history.getCandles("BTC", CandleInterval.MINUTE));
+        assertEquals(List.of(new Candle(Instant.EPOCH, 10, 15, 8, 12)), history.getCandles("BTC", CandleInterval.HOUR));
+        assertEquals(4, history.getCandles("BTC", CandleInterval.TICK).size());
+    }
+
+    @Test
+    public void testRingBufferKeepsMostRecentCandles() {
+        PriceHistory history = new PriceHistory();
+        int capacity = CandleInterval.HOUR.getCapacity();
+        for (int i = 0; i < capacity + 10; i++) {
+            history.record("BTC", i * HOUR, i);
+        }
+
+        List<Candle> candles = history.getCandles("BTC", CandleInterval.HOUR);
+        assertEquals(capacity, candles.size());
+        assertEquals(10, candles.get(0).open());
+        assertEquals(capacity + 9, candles.get(capacity - 1).close());
+        assertEquals(CandleInterval.TICK.getCapacity(), history.getCandles("BTC", CandleInterval.TICK).size());
+    }
+
+    @Test
+    public void testTrackedAssetsAreBounded() {
+        PriceHistory history = new PriceHistory(2, Clock.systemUTC());
+        history.record("BTC", 3, 1);
+        history.record("ETH", 1, 1);
+        history.record("SOL", 2, 1);
+
+        assertEquals(2, history.getTrackedAssetCount());
+        assertTrue(history.getCandles("ETH", CandleInterval.TICK).isEmpty(), "The stalest asset should be evicted.");
+        assertTrue(history.getMaxMemoryBytes() > 0);
+    }
+
+    @Test
+    public void testHistoryFollowsAssetUpdates() {
+        Instant now = Instant.parse("2024-01-01T10:15:00Z");
+        AvailableAssets availableAssets = new AvailableAssets();
+        PriceHistory history = new PriceHistory(10, Clock.fixed(now, ZoneOffset.UTC));
+        availableAssets.addUpdateListener(history);
+
+        availableAssets.updateAvailableAssets(Set.of(new Asset("BTC", "Bitcoin", 1, 100)));
+
+        assertEquals(List.of(new Candle(Instant.parse("2024-01-01T00:00:00Z"), 100, 100, 100, 100)),
+            history.getCandles("BTC", CandleInterval.DAY));
+        assertNull(history.listPriceHistory("ETH", CandleInterval.DAY));
+    }
+
+    @Test
+    public void testSteadyPricesStillGetCandles() {
+        AtomicReference<Instant> now = new AtomicReference<>(Instant.parse("2024-01-01T10:15:00Z"));
+        Clock clock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return now.get();
+            }
+        };
+        AvailableAssets availableAssets = new AvailableAssets();
+        PriceHistory history = new PriceHistory(10, clock);
+        availableAssets.addUpdateListener(history);
+
+        availableAssets.updateAvailableAssets(Set.of(new Asset("BTC", "Bitcoin", 1, 100)));
+        now.set(now.get().plusSeconds(MINUTE / 1000));
+        availableAssets.updateAvailableAssets(Set.of(new Asset("BTC", "Bitcoin", 1, 100)));
+
+        assertEquals(List.of(new Candle(Instant.parse("2024-01-01T10:15:00Z"), 100, 100, 100, 100),
+            new Candle(Instant.parse("2024-01-01T10:16:00Z"), 100, 100, 100, 100)),
+            history.getCandles("BTC", CandleInterval.MINUTE));
+        assertEquals(2, history.getCandles("BTC", CandleInterval.TICK).size());
+    }
+}
@@ -0,0 +1,93 @@
+package bg.sofia.uni.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.UserSet;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardedUserSetTest {
+    private static final int USER_COUNT = 200;
+
+    @TempDir
+    private Path directory;
+
+    private String usersPath() {
+        return directory.resolve("users.txt").toString();
+    }
+
+    private List<String> userFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private void register(UserSet set) throws Exception {
+        for (int i = 0; i < USER_COUNT; i++) {
+            User user = new User("user" + i, "pass");
+            user.getWallet().depositMoney(i);
+            set.addUser(user);
+        }
+    }
+
+    @Test
+    public void testShardsRoundTrip() throws Exception {
+        try (UserSet set = new UserSet(usersPath(), null, 4)) {
+            register(set);
+        }
+
+        assertEquals(List.of("users.txt.0", "users.txt.1", "users.txt.2", "users.txt.3"), userFiles());
+        try (UserSet set = new UserSet(usersPath(), null, 4)) {
+            assertEquals(USER_COUNT, set.getUsers().size());
+            assertEquals(42, set.getUser("user42").getWallet().getBalance());
+            assertTrue(set.getUser("user199").passMatch("pass"));
+        }
+    }
+
+    @Test
+    public void testSingleFileIsMigratedToShards() throws Exception {
+        try (UserSet set = new UserSet(usersPath())) {
+            register(set);
+        }
+        assertEquals(List.of("users.txt"), userFiles());
+
+        try (UserSet set = new UserSet(usersPath(), null, 3)) {
+            assertEquals(USER_COUNT, set.getUsers().size());
+        }
+        assertEquals(List.of("users.txt.0", "users.txt.1", "users.txt.2"), userFiles());
+    }
+
+    @Test
+    public void testReshardingKeepsEveryUser() throws Exception {
+        try (UserSet set = new UserSet(usersPath(), null, 8)) {
+            register(set);
+        }
+
+        try (UserSet set = new UserSet(usersPath(), null, 2)) {
+            assertEquals(USER_COUNT, set.getUsers().size());
+        }
+        assertEquals(List.of("users.txt.0", "users.txt.1"), userFiles());
+
+        try (UserSet set = new UserSet(usersPath())) {
+            assertEquals(USER_COUNT, set.getUsers().size());
+            assertEquals(7, set.getUser("user7").getWallet().getBalance());
+        }
+        assertFalse(userFiles().contains("users.txt.0"));
+    }
+
+    @Test
+    public void testInvalidShardCount() {
+        assertThrows(IllegalArgumentException.class, () -> new UserSet(usersPath(), null, 0),
+            "IllegalArgumentException expected but was never thrown");
+    }
+}
@@ -0,0 +1,191 @@
+package bg.sofia.uni.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.LazyUserStore;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.UserCodec;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.UserFileMigration;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import bg.sofia.uni.fmi.mjt.cryptowallet.wallet.Wallet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UserCodecTest {
+    @TempDir
+    private Path directory;
+
+    private static User createUser() {
+        Wallet wallet = Wallet.restore(150.5, Map.of("BTC", 42000.0, "ETH", 2200.0),
+            Map.of("BTC", Set.of(0.001, 0.0025), "ETH", Set.of(0.5)), 17);
+        return User.withPasswordHash("desi", new User("desi", "123").getPasswordHash(), wallet);
+    }
+
+    private static byte[] encode(long lsn, List<User> users) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        UserCodec.write(out, lsn, users);
+        return out.toByteArray();
+    }
+
+    private static List<User> decode(byte[] data, long expectedLsn) throws IOException {
+        List<User> users = new ArrayList<>();
+        assertEquals(expectedLsn, UserCodec.read(new ByteArrayInputStream(data), users::add));
+        return users;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        User user = createUser();
+        List<User> decoded = decode(encode(42, List.of(user, new User("test", "456"))), 42);
+
+        assertEquals(2, decoded.size());
+        assertEquals(user, decoded.get(0));
+        assertEquals(user.getPasswordHash(), decoded.get(0).getPasswordHash());
+        assertEquals(user.getWallet(), decoded.get(0).getWallet());
+        assertEquals(17, decoded.get(0).getWallet().getLastLsn());
+        assertEquals(0, decoded.get(1).getWallet().getBalance());
+    }
+
+    @Test
+    public void testRoundTripWithoutUsers() throws IOException {
+        assertEquals(0, decode(encode(3, List.of()), 3).size());
+    }
+
+    @Test
+    public void testCorruptFileIsRejected() throws IOException {
+        byte[] data = encode(1, List.of(createUser()));
+        data[data.length / 2] ^= 1;
+
+        assertThrows(IOException.class, () -> decode(data, 1), "IOException expected but was never thrown");
+    }
+
+    @Test
+    public void testCorruptFileYieldsNoUsers() throws IOException {
+        byte[] data = encode(1, List.of(createUser(), new User("test", "456")));
+        // the last user's record sits right before the end marker and checksum
+        data[data.length - Long.BYTES - 2] ^= 1;
+        Path path = directory.resolve("users.txt");
+        Files.write(path, data);
+
+        List<User> streamed = new ArrayList<>();
+        assertThrows(IOException.class, () -> UserCodec.read(new ByteArrayInputStream(data), streamed::add),
+            "IOException expected but was never thrown");
+        List<User> read = new ArrayList<>();
+        assertThrows(IOException.class, () -> UserCodec.read(path, read::add),
+            "IOException expected but was never thrown");
+
+        assertTrue(streamed.isEmpty());
+        assertTrue(read.isEmpty());
+    }
+
+    @Test
+    public void testFileIsReadAfterVerification() throws IOException {
+        Path path = directory.resolve("users.txt");
+        Files.write(path, encode(8, List.of(createUser())));
+
+        List<User> read = new ArrayList<>();
+        assertEquals(8, UserCodec.read(path, read::add));
+        assertEquals(List.of(createUser()), read);
+    }
+
+    @Test
+    public void testTruncatedFileIsRejected() throws IOException {
+        byte[] data = encode(1, List.of(createUser()));
+        byte[] truncated = new byte[data.length - 3];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+
+        assertThrows(IOException.class, () -> decode(truncated, 1), "IOException expected but was never thrown");
+    }
+
+    @Test
+    public void testUnsupportedVersionIsRejected() throws IOException {
+        byte[] data = encode(1, List.of());
+        data[Integer.BYTES] = UserCodec.FORMAT_VERSION + 1;
+
+        assertThrows(IOException.class, () -> decode(data, 1), "IOException expected but was never thrown");
+    }
+
+    @Test
+    public void testReadsLegacySerializedFile() throws IOException {
+        User user = createUser();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(9L);
+            out.writeObject(user);
+        }
+
+        List<User> decoded = decode(bytes.toByteArray(), 9);
+        assertEquals(List.of(user), decoded);
+        assertEquals(user.getWallet(), decoded.get(0).getWallet());
+    }
+
+    @Test
+    public void testMigrationRewritesLegacyFile() throws IOException {
+        Path path = directory.resolve("users.txt");
+        try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(path))) {
+            out.writeObject(5L);
+            out.writeObject(createUser());
+            out.writeObject(new User("test", "456"));
+        }
+
+        assertEquals(2, UserFileMigration.migrate(path, path));
+
+        List<User> migrated = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(path)) {
+            assertEquals(5, UserCodec.read(in, migrated::add));
+        }
+        assertEquals(List.of(createUser(), new User("test", "456")), migrated);
+        assertEquals(createUser().getWallet(), migrated.get(0).getWallet());
+    }
+
+    @Test
+    public void testImportPublishesCompleteStore() throws IOException {
+        Path legacy = directory.resolve("users.txt");
+        try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(legacy))) {
+            out.writeObject(5L);
+            out.writeObject(createUser());
+            out.writeObject(new User("test", "456"));
+        }
+        Path storeDirectory = directory.resolve("users");
+
+        assertEquals(2, UserFileMigration.importInto(legacy, storeDirectory));
+
+        assertFalse(Files.exists(directory.resolve("users.migrating")));
+        try (LazyUserStore store = new LazyUserStore(storeDirectory)) {
+            assertEquals(2, store.size());
+            assertEquals(5, store.getCheckpointLsn());
+            assertEquals(createUser().getWallet(), store.load("desi").getWallet());
+        }
+    }
+
+    @Test
+    public void testFailedImportLeavesNoStore() throws IOException {
+        Path usersFile = directory.resolve("users.txt");
+        byte[] data = encode(1, List.of(createUser(), new User("test", "456")));
+        data[data.length - Long.BYTES - 2] ^= 1;
+        Files.write(usersFile, data);
+        Path storeDirectory = directory.resolve("users");
+
+        assertThrows(IOException.class, () -> UserFileMigration.importInto(usersFile, storeDirectory),
+            "IOException expected but was never thrown");
+        assertFalse(Files.exists(storeDirectory));
+        assertFalse(Files.exists(directory.resolve("users.migrating")));
+
+        Files.write(usersFile, encode(1, List.of(createUser(), new User("test", "456"))));
+        assertEquals(2, UserFileMigration.importInto(usersFile, storeDirectory));
+    }
+}
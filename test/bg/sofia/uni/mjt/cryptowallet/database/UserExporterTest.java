@@ -0,0 +1,135 @@
+package bg.sofia.uni.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.LazyUserStore;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.UserExporter;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.UserImporter;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.UserSet;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import bg.sofia.uni.fmi.mjt.cryptowallet.wallet.Wallet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UserExporterTest {
+    private static final String PASSWORD_HASH = new User("any", "secret").getPasswordHash();
+
+    @TempDir
+    private Path directory;
+
+    private static User createUser(String username, double balance) {
+        return User.withPasswordHash(username, PASSWORD_HASH,
+            Wallet.restore(balance, Map.of("BTC", 100.0, "ETH", 20.0), Map.of("BTC", Set.of(0.5, 1.5),
+                "ETH", Set.of(2.0)), 7));
+    }
+
+    private UserSet createUsers(String... usernames) throws Exception {
+        UserSet users = new UserSet(directory.resolve("users.txt").toString());
+        for (int i = 0; i < usernames.length; i++) {
+            users.addUser(createUser(usernames[i], i * 10));
+        }
+        return users;
+    }
+
+    @Test
+    public void testExportAndImportRoundTrip() throws Exception {
+        Path export = directory.resolve("export").resolve("users.jsonl");
+        try (UserSet users = createUsers("alice", "bob", "carol")) {
+            assertEquals(3, UserExporter.export(users, export));
+        }
+        assertEquals(3, Files.readAllLines(export).size());
+
+        try (LazyUserStore store = new LazyUserStore(directory.resolve("imported"))) {
+            assertEquals(3, UserImporter.importInto(export, store));
+
+            User bob = store.load("bob");
+            assertTrue(bob.passMatch("secret"));
+            assertEquals(10, bob.getWallet().getBalance());
+            assertEquals(Map.of("BTC", 100.0, "ETH", 20.0), bob.getWallet().getPurchasedAssets());
+            assertEquals(Map.of("BTC", Set.of(0.5, 1.5), "ETH", Set.of(2.0)),
+                bob.getWallet().getPurchasedAssetsAmount());
+            assertEquals(0, bob.getWallet().getLastLsn(), "Journal positions must not leak into another server.");
+        }
+    }
+
+    @Test
+    public void testExportSkipsUsersWithNonFiniteAmounts() throws Exception {
+        Path export = directory.resolve("users.jsonl");
+        try (UserSet users = createUsers("alice", "bob")) {
+            users.addUser(User.withPasswordHash("broken", PASSWORD_HASH,
+                Wallet.restore(Double.NaN, Map.of(), Map.of(), 0)));
+            users.addUser(User.withPasswordHash("unbounded", PASSWORD_HASH,
+                Wallet.restore(1, Map.of("BTC", 100.0), Map.of("BTC", Set.of(Double.POSITIVE_INFINITY)), 0)));
+
+            assertEquals(2, UserExporter.export(users, export));
+        }
+
+        try (LazyUserStore store = new LazyUserStore(directory.resolve("imported"))) {
+            assertEquals(2, UserImporter.importInto(export, store));
+            assertNotNull(store.load("alice"));
+            assertFalse(store.contains("broken"));
+        }
+    }
+
+    @Test
+    public void testImportSkipsExistingUsers() throws Exception {
+        Path export = directory.resolve("users.jsonl");
+        try (UserSet users = createUsers("alice", "bob")) {
+            UserExporter.export(users, export);
+        }
+
+        try (UserSet target = new UserSet(directory.resolve("target.txt").toString())) {
+            target.addUser(new User("alice", "other"));
+
+            assertEquals(1, UserImporter.importInto(export, target));
+            assertTrue(target.getUser("alice").passMatch("other"));
+            assertTrue(target.getUser("bob").passMatch("secret"));
+        }
+    }
+
+    @Test
+    public void testImportRejectsMalformedExport() throws IOException {
+        Path export = directory.resolve("users.jsonl");
+        Files.write(export, List.of("{\"username\":\"alice\",\"passwordHash\":\"x\",\"balance\":1}",
+            "{\"username\":\"bob\",\"balance\":\"much\"}"));
+
+        try (LazyUserStore store = new LazyUserStore(directory.resolve("imported"))) {
+            assertThrows(IOException.class, () -> UserImporter.importInto(export, store),
+                "IOException expected but was never thrown");
+        }
+    }
+
+    @Test
+    public void testStartExportWritesInBackground() throws Exception {
+        Clock clock = Clock.fixed(Instant.parse("2024-01-01T12:00:00Z"), ZoneOffset.UTC);
+        Path exports = directory.resolve("exports");
+        try (UserSet users = createUsers("alice", "bob")) {
+            UserExporter exporter = new UserExporter(users, exports, clock);
+
+            UserExporter.Export export = exporter.startExport();
+            assertNotNull(export);
+            assertEquals(exports.resolve("users-20240101-120000-000.jsonl"), export.path());
+            assertEquals(2, export.exported().join());
+            assertFalse(exporter.isRunning());
+        }
+
+        try (var files = Files.list(exports)) {
+            assertEquals(List.of("users-20240101-120000-000.jsonl"),
+                files.map(file -> file.getFileName().toString()).toList());
+        }
+    }
+}
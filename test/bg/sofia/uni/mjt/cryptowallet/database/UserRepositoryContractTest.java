@@ -0,0 +1,205 @@
+package bg.sofia.uni.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.UserRepository;
+import bg.sofia.uni.fmi.mjt.cryptowallet.exception.UserAlreadyExistsException;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public abstract class UserRepositoryContractTest {
+    @TempDir
+    protected Path directory;
+
+    protected abstract UserRepository open(Path directory) throws Exception;
+
+    @Test
+    public void testCreateAndFind() throws Exception {
+        try (UserRepository users = open(directory)) {
+            users.create(new User("alice", "secret"));
+
+            User alice = users.findByUsername("alice");
+            assertNotNull(alice);
+            assertTrue(alice.passMatch("secret"));
+            assertNull(users.findByUsername("bob"));
+            assertNull(users.findByUsername(null));
+        }
+    }
+
+    @Test
+    public void testCreateExistingUserFails() throws Exception {
+        try (UserRepository users = open(directory)) {
+            users.create(new User("alice", "secret"));
+
+            assertThrows(UserAlreadyExistsException.class, () -> users.create(new User("alice", "other")),
+                "UserAlreadyExistsException was expected but was never thrown.");
+        }
+    }
+
+    @Test
+    public void testRemovedUserIsGoneAfterReopen() throws Exception {
+        try (UserRepository users = open(directory)) {
+            users.create(new User("alice", "secret"));
+            users.create(new User("bob", "secret"));
+
+            users.remove("alice");
+            assertNull(users.findByUsername("alice"));
+            assertNull(users.acquire("alice"));
+        }
+
+        try (UserRepository users = open(directory)) {
+            assertNull(users.findByUsername("alice"));
+            assertNotNull(users.findByUsername("bob"));
+            users.create(new User("alice", "other"));
+            assertTrue(users.findByUsername("alice").passMatch("other"));
+        }
+    }
+
+    @Test
+    public void testAcquiredUserIsSharedUntilReleased() throws Exception {
+        try (UserRepository users = open(directory)) {
+            users.create(new User("alice", "secret"));
+
+            User first = users.acquire("alice");
+            User second = users.acquire("alice");
+            assertSame(first, second);
+            assertSame(first, users.findByUsername("alice"));
+            users.release(second);
+            users.release(first);
+            assertNull(users.acquire("bob"));
+        }
+    }
+
+    @Test
+    public void testUpdatedWalletSurvivesReopen() throws Exception {
+        try (UserRepository users = open(directory)) {
+            users.create(new User("alice", "secret"));
+            users.create(new User("bob", "secret"));
+
+            User alice = users.acquire("alice");
+            alice.getWallet().depositMoney(125.5);
+            users.updateWallet(alice);
+            users.release(alice);
+        }
+
+        try (UserRepository users = open(directory)) {
+            assertEquals(125.5, users.findByUsername("alice").getWallet().getBalance());
+            assertEquals(0, users.findByUsername("bob").getWallet().getBalance());
+            assertTrue(users.findByUsername("alice").passMatch("secret"));
+        }
+    }
+
+    @Test
+    public void testForEachBatchVisitsEveryUserOnce() throws Exception {
+        try (UserRepository users = open(directory)) {
+            for (int i = 0; i < 25; i++) {
+                users.create(new User("user" + i, "pass"));
+            }
+
+            Set<String> seen = new HashSet<>();
+            int[] visited = {0};
+            users.forEachBatch(7, batch -> {
+                assertTrue(batch.size() <= 7);
+                visited[0] += batch.size();
+                batch.forEach(user -> seen.add(user.getUsername()));
+            });
+
+            assertEquals(25, visited[0]);
+            assertEquals(25, seen.size());
+        }
+    }
+
+    @Test
+    public void testForEachBatchHandsOutCopies() throws Exception {
+        try (UserRepository users = open(directory)) {
+            users.create(new User("alice", "secret"));
+            User alice = users.acquire("alice");
+
+            users.forEachBatch(10, batch -> batch.get(0).getWallet().depositMoney(50));
+            assertEquals(0, alice.getWallet().getBalance());
+            users.release(alice);
+        }
+    }
+
+    @Test
+    public void testInvalidBatchSize() throws Exception {
+        try (UserRepository users = open(directory)) {
+            assertThrows(IllegalArgumentException.class, () -> users.forEachBatch(0, List::size),
+                "IllegalArgumentException expected but was never thrown");
+        }
+    }
+
+    @Test
+    public void testSnapshotVisitsEveryUserOnce() throws Exception {
+        try (UserRepository users = open(directory)) {
+            for (int i = 0; i < 25; i++) {
+                users.create(new User("user" + i, "pass"));
+            }
+            User first = users.acquire("user0");
+            first.getWallet().depositMoney(10);
+            users.updateWallet(first);
+            users.release(first);
+
+            Map<String, Double> balances = new HashMap<>();
+            users.forEachInSnapshot(user -> assertNull(balances.put(user.getUsername(),
+                user.getWallet().getBalance())));
+
+            assertEquals(25, balances.size());
+            assertEquals(10, balances.get("user0"));
+        }
+    }
+
+    @Test
+    public void testSnapshotIgnoresChangesMadeWhileItRuns() throws Exception {
+        try (UserRepository users = open(directory)) {
+            for (int i = 0; i < 10; i++) {
+                users.create(new User("user" + i, "pass"));
+            }
+            List<User> sessions = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                sessions.add(users.acquire("user" + i));
+            }
+
+            Map<String, Double> balances = new HashMap<>();
+            users.forEachInSnapshot(user -> {
+                if (balances.isEmpty()) {
+                    for (User session : sessions) {
+                        synchronized (session.getWallet()) {
+                            users.beforeUpdate(session);
+                            session.getWallet().depositMoney(100);
+                            users.updateWallet(session);
+                        }
+                    }
+                    try {
+                        users.create(new User("late", "pass"));
+                    } catch (UserAlreadyExistsException e) {
+                        fail(e);
+                    }
+                }
+                balances.put(user.getUsername(), user.getWallet().getBalance());
+            });
+
+            assertEquals(10, balances.size());
+            assertFalse(balances.containsKey("late"));
+            balances.values().forEach(balance -> assertEquals(0, balance));
+            assertEquals(100, users.findByUsername("user3").getWallet().getBalance());
+            sessions.forEach(users::release);
+        }
+    }
+}
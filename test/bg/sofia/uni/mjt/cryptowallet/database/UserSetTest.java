@@ -11,11 +11,15 @@ import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.fail;
 
 public class UserSetTest {
@@ -69,6 +73,46 @@ public class UserSetTest {
         }
     }
 
+    @Test
+    public void testGetUserByUsername() {
+        try (UserSet set = new UserSet(FILE_PATH)) {
+            assertEquals(U2, set.getUser("test"));
+            assertNull(set.getUser("missing"));
+        }
+    }
+
+    @Test
+    public void testConcurrentRegistrationOfSameUsername() throws InterruptedException {
+        try (UserSet set = new UserSet(FILE_PATH)) {
+            AtomicInteger registered = new AtomicInteger();
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                threads.add(Thread.ofVirtual().start(() -> {
+                    try {
+                        set.addUser(new User("racer", "pass"));
+                        registered.incrementAndGet();
+                    } catch (UserAlreadyExistsException e) {
+                        // expected for all but one thread
+                    }
+                }));
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertEquals(1, registered.get());
+        }
+    }
+
+    @Test
+    public void testHashCodeDoesNotDependOnWallet() {
+        User user = new User("depositor", "pass");
+        int hashCode = user.hashCode();
+        user.getWallet().depositMoney(100);
+
+        assertEquals(hashCode, user.hashCode());
+    }
+
     @AfterAll
     public static void teardown() {
         try {
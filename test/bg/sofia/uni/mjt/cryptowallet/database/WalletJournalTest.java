@@ -0,0 +1,248 @@
+package bg.sofia.uni.mjt.cryptowallet.database;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.Command;
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.CommandExecutor;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.AvailableAssets;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.JournalRecord;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.UserSet;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.WalletJournal;
+import bg.sofia.uni.fmi.mjt.cryptowallet.user.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class WalletJournalTest {
+    private static final Duration LONG_INTERVAL = Duration.ofSeconds(30);
+    private static final Path FULL_DEVICE = Path.of("/dev/full");
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void testAppendedRecordsAreReplayed() throws IOException {
+        Path path = directory.resolve("wallet.journal");
+        try (WalletJournal journal = new WalletJournal(path)) {
+            journal.recover(0, record -> { });
+            journal.append(JournalRecord.register("alice", "hash"));
+            journal.append(JournalRecord.deposit("alice", 100));
+            journal.append(JournalRecord.buy("alice", "BTC", 40, 20000));
+            assertEquals(4L, journal.append(JournalRecord.sell("alice", "BTC", 21000)).join());
+        }
+
+        List<JournalRecord> replayed = new ArrayList<>();
+        try (WalletJournal journal = new WalletJournal(path)) {
+            assertEquals(2, journal.recover(2, replayed::add));
+            assertEquals(5L, journal.append(JournalRecord.deposit("alice", 1)).join());
+        }
+
+        assertEquals(List.of(new JournalRecord(3, JournalRecord.Type.BUY, "alice", "BTC", 40, 20000),
+            new JournalRecord(4, JournalRecord.Type.SELL, "alice", "BTC", 0, 21000)), replayed);
+    }
+
+    @Test
+    public void testRecordsAreCommittedInGroups() throws IOException {
+        try (WalletJournal journal = new WalletJournal(directory.resolve("wallet.journal"), 8, LONG_INTERVAL)) {
+            journal.recover(0, record -> { });
+            List<CompletableFuture<Long>> durable = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                durable.add(journal.append(JournalRecord.deposit("alice", i)));
+            }
+
+            CompletableFuture.allOf(durable.toArray(CompletableFuture[]::new)).join();
+            assertEquals(1, journal.getSyncCount());
+            assertEquals(8, journal.getDurableLsn());
+        }
+    }
+
+    @Test
+    public void testPartialGroupIsCommittedAfterInterval() throws IOException {
+        try (WalletJournal journal = new WalletJournal(directory.resolve("wallet.journal"), 1000,
+            Duration.ofMillis(20))) {
+            journal.recover(0, record -> { });
+            CompletableFuture<Long> first = journal.append(JournalRecord.deposit("alice", 1));
+            CompletableFuture<Long> second = journal.append(JournalRecord.deposit("alice", 2));
+
+            assertEquals(2L, second.join());
+            assertEquals(1L, first.join());
+        }
+    }
+
+    @Test
+    public void testTornTailIsDiscarded() throws IOException {
+        Path path = directory.resolve("wallet.journal");
+        try (WalletJournal journal = new WalletJournal(path)) {
+            journal.recover(0, record -> { });
+            journal.append(JournalRecord.deposit("alice", 10)).join();
+        }
+        long validSize = Files.size(path);
+        Files.write(path, new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        List<JournalRecord> replayed = new ArrayList<>();
+        try (WalletJournal journal = new WalletJournal(path)) {
+            journal.recover(0, replayed::add);
+            assertEquals(validSize, Files.size(path));
+            assertEquals(2L, journal.append(JournalRecord.deposit("alice", 5)).join());
+        }
+        assertEquals(1, replayed.size());
+    }
+
+    @Test
+    public void testAppendBeforeRecoveryIsRejected() throws IOException {
+        try (WalletJournal journal = new WalletJournal(directory.resolve("wallet.journal"))) {
+            assertThrows(IllegalStateException.class, () -> journal.append(JournalRecord.deposit("alice", 1)),
+                "IllegalStateException expected but was never thrown");
+        }
+    }
+
+    @Test
+    public void testWalletMutationsSurviveCrash() throws IOException {
+        String usersPath = directory.resolve("users.txt").toString();
+        Path journalPath = directory.resolve("wallet.journal");
+        AvailableAssets availableAssets = new AvailableAssets();
+        availableAssets.updateAvailableAssets(Set.of(new Asset("BTC", "Bitcoin", 1, 50)));
+
+        UserSet users = new UserSet(usersPath, new WalletJournal(journalPath, 4, Duration.ofMillis(1)));
+        CommandExecutor executor = new CommandExecutor(users, availableAssets);
+        SelectionKey anonymous = mock(SelectionKey.class);
+        executor.execute(new Command("register", new String[] {"alice", "secret"}), anonymous);
+        SelectionKey session = mock(SelectionKey.class);
+        when(session.attachment()).thenReturn(users.getUser("alice"));
+        executor.execute(new Command("deposit", new String[] {"100"}), session);
+        executor.execute(new Command("buy", new String[] {"BTC", "40"}), session);
+        users.getJournal().close();
+
+        try (UserSet recovered = new UserSet(usersPath, new WalletJournal(journalPath))) {
+            User alice = recovered.getUser("alice");
+            assertNotNull(alice);
+            assertTrue(alice.passMatch("secret"));
+            assertEquals(60, alice.getWallet().getBalance());
+            assertEquals(Set.of(0.8), alice.getWallet().getPurchasedAssetsAmount().get("BTC"));
+        }
+    }
+
+    @Test
+    public void testFailedWriteClosesJournal() throws IOException {
+        assumeTrue(Files.isWritable(FULL_DEVICE), "Needs a device that rejects every write.");
+
+        try (WalletJournal journal = new WalletJournal(FULL_DEVICE, 1, Duration.ZERO)) {
+            journal.recover(0, record -> { });
+            CompletableFuture<Long> failed = journal.append(JournalRecord.deposit("alice", 1));
+
+            assertThrows(CompletionException.class, failed::join, "CompletionException expected but was never thrown");
+            assertTrue(journal.hasFailed());
+            assertTrue(journal.append(JournalRecord.deposit("alice", 2)).isCompletedExceptionally());
+            assertTrue(journal.rotate().isCompletedExceptionally());
+        }
+    }
+
+    @Test
+    public void testChangesThatCannotBeJournaledAreRolledBack() throws Exception {
+        assumeTrue(Files.isWritable(FULL_DEVICE), "Needs a device that rejects every write.");
+
+        String usersPath = directory.resolve("users.txt").toString();
+        try (UserSet users = new UserSet(usersPath, new WalletJournal(FULL_DEVICE, 1, Duration.ZERO))) {
+            User alice = new User("alice", "secret");
+            users.addUser(alice);
+            CommandExecutor executor = new CommandExecutor(users, new AvailableAssets());
+            SelectionKey session = mock(SelectionKey.class);
+            when(session.attachment()).thenReturn(alice);
+
+            // the first deposit fails in the flusher, the second is rejected by the closed journal
+            for (int i = 0; i < 2; i++) {
+                assertEquals("The change could not be recorded. Try again later.",
+                    executor.execute(new Command("deposit", new String[] {"100"}), session));
+                assertEquals(0, alice.getWallet().getBalance());
+            }
+        }
+    }
+
+    @Test
+    public void testRegistrationsThatCannotBeJournaledAreUndone() throws Exception {
+        assumeTrue(Files.isWritable(FULL_DEVICE), "Needs a device that rejects every write.");
+
+        String usersPath = directory.resolve("users.txt").toString();
+        try (UserSet users = new UserSet(usersPath, new WalletJournal(FULL_DEVICE, 1, Duration.ZERO))) {
+            CommandExecutor executor = new CommandExecutor(users, new AvailableAssets());
+
+            assertEquals("The change could not be recorded. Try again later.",
+                executor.execute(new Command("register", new String[] {"alice", "secret"}), mock(SelectionKey.class)));
+            assertNull(users.findByUsername("alice"));
+            assertEquals("No such account exists.",
+                executor.execute(new Command("login", new String[] {"alice", "secret"}), mock(SelectionKey.class)));
+        }
+    }
+
+    @Test
+    public void testRotatedSegmentsAreReplayedUntilDeleted() throws IOException {
+        Path path = directory.resolve("wallet.journal");
+        try (WalletJournal journal = new WalletJournal(path)) {
+            journal.recover(0, record -> { });
+            for (int i = 0; i < 3; i++) {
+                journal.append(JournalRecord.deposit("alice", i));
+            }
+            assertEquals(3L, journal.rotate().join());
+            journal.append(JournalRecord.deposit("alice", 3)).join();
+        }
+        assertTrue(Files.exists(directory.resolve("wallet.journal.3")));
+
+        List<JournalRecord> replayed = new ArrayList<>();
+        try (WalletJournal journal = new WalletJournal(path)) {
+            assertEquals(4, journal.recover(0, replayed::add));
+            assertEquals(1, journal.deleteSegmentsUpTo(3));
+        }
+        assertEquals(List.of(1L, 2L, 3L, 4L), replayed.stream().map(JournalRecord::lsn).toList());
+
+        try (WalletJournal journal = new WalletJournal(path)) {
+            assertEquals(1, journal.recover(0, record -> { }));
+            assertEquals(5L, journal.append(JournalRecord.deposit("alice", 4)).join());
+        }
+    }
+
+    @Test
+    public void testCheckpointDuringMutationsRecoversEveryDeposit() throws Exception {
+        String usersPath = directory.resolve("users.txt").toString();
+        Path journalPath = directory.resolve("wallet.journal");
+        UserSet users = new UserSet(usersPath, new WalletJournal(journalPath, 16, Duration.ZERO));
+        CommandExecutor executor = new CommandExecutor(users, new AvailableAssets());
+        executor.execute(new Command("register", new String[] {"alice", "secret"}), mock(SelectionKey.class));
+        SelectionKey session = mock(SelectionKey.class);
+        when(session.attachment()).thenReturn(users.getUser("alice"));
+
+        Thread depositor = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < 2000; i++) {
+                executor.execute(new Command("deposit", new String[] {"1"}), session);
+            }
+        });
+        while (depositor.isAlive()) {
+            users.checkpoint();
+        }
+        depositor.join();
+        users.getJournal().close();
+
+        try (UserSet recovered = new UserSet(usersPath, new WalletJournal(journalPath))) {
+            assertEquals(2000, recovered.getUser("alice").getWallet().getBalance());
+            assertTrue(recovered.getCheckpointLsn() > 0);
+        }
+    }
+}
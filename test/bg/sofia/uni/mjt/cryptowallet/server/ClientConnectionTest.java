@@ -0,0 +1,174 @@
+package bg.sofia.uni.mjt.cryptowallet.server;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.Command;
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.CommandParser;
+import bg.sofia.uni.fmi.mjt.cryptowallet.server.ClientConnection;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ClientConnectionTest {
+    private ClientConnection connection;
+    private CommandParser parser;
+
+    @BeforeEach
+    public void setUp() {
+        connection = new ClientConnection();
+        parser = new CommandParser();
+    }
+
+    private static byte[] frames(String... commands) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String command : commands) {
+            byte[] payload = command.getBytes(StandardCharsets.UTF_8);
+            out.writeBytes(ByteBuffer.allocate(Integer.BYTES).putInt(payload.length).array());
+            out.writeBytes(payload);
+        }
+        return out.toByteArray();
+    }
+
+    private void feed(byte[] bytes) throws IOException {
+        connection.read(Channels.newChannel(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    public void testPipelinedFramesInOneRead() throws IOException {
+        feed(frames("login desi 123", "deposit 100", "list-offerings"));
+
+        assertEquals(Command.createCommand("login desi 123").command(), connection.nextCommand(parser).command());
+        assertEquals(100.0, connection.nextCommand(parser).amount());
+        assertEquals("list-offerings", connection.nextCommand(parser).command());
+        assertNull(connection.nextCommand(parser));
+    }
+
+    @Test
+    public void testFrameSplitAcrossReads() throws IOException {
+        byte[] bytes = frames("buy BTC 100");
+        byte[] first = new byte[3];
+        byte[] second = new byte[bytes.length - first.length];
+        System.arraycopy(bytes, 0, first, 0, first.length);
+        System.arraycopy(bytes, first.length, second, 0, second.length);
+
+        feed(first);
+        assertNull(connection.nextCommand(parser));
+        feed(second);
+        Command command = connection.nextCommand(parser);
+        assertEquals("buy", command.command());
+        assertArrayEquals(new String[] {"BTC"}, command.arguments());
+        assertEquals(100.0, command.amount());
+    }
+
+    @Test
+    public void testFrameLargerThanInitialBuffer() throws IOException {
+        String username = "a".repeat(2000);
+        byte[] bytes = frames("register " + username + " 123");
+        ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+
+        Command command = null;
+        while (command == null) {
+            connection.read(Channels.newChannel(in));
+            command = connection.nextCommand(parser);
+        }
+        assertArrayEquals(new String[] {username, "123"}, command.arguments());
+    }
+
+    @Test
+    public void testInvalidFrameLength() throws IOException {
+        feed(ByteBuffer.allocate(Integer.BYTES).putInt(-1).array());
+        assertThrows(ProtocolException.class, () -> connection.nextCommand(parser),
+            "ProtocolException expected but was never thrown");
+    }
+
+    @Test
+    public void testResponsesAreFlushedInOrder() throws IOException {
+        connection.enqueue(ByteBuffer.wrap(frames("Logged in successfully.")));
+        connection.enqueue(ByteBuffer.wrap(frames("Transaction completed")));
+        assertTrue(connection.hasPendingOutput());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(connection.flush(Channels.newChannel(out)));
+        assertFalse(connection.hasPendingOutput());
+        assertEquals(0, connection.getQueuedBytes());
+        assertArrayEquals(frames("Logged in successfully.", "Transaction completed"), out.toByteArray());
+    }
+
+    @Test
+    public void testPartialWriteKeepsRestQueued() throws IOException {
+        connection.enqueue(ByteBuffer.wrap(new byte[100]));
+        connection.enqueue(ByteBuffer.wrap(new byte[100]));
+
+        assertFalse(connection.flush(limitedChannel(150)));
+        assertEquals(50, connection.getQueuedBytes());
+        assertTrue(connection.flush(limitedChannel(150)));
+        assertFalse(connection.hasPendingOutput());
+    }
+
+    @Test
+    public void testReadsPausedUntilQueueDrains() throws IOException {
+        connection.enqueue(ByteBuffer.wrap(new byte[ClientConnection.MAX_QUEUED_BYTES]));
+        assertTrue(connection.areReadsPaused());
+
+        connection.flush(limitedChannel(ClientConnection.MAX_QUEUED_BYTES - ClientConnection.RESUME_QUEUED_BYTES - 1));
+        assertTrue(connection.areReadsPaused());
+
+        connection.flush(limitedChannel(1));
+        assertFalse(connection.areReadsPaused());
+    }
+
+    private static WritableByteChannel limitedChannel(int limit) {
+        return new WritableByteChannel() {
+            private int left = limit;
+
+            @Override
+            public int write(ByteBuffer src) {
+                int n = Math.min(left, src.remaining());
+                src.position(src.position() + n);
+                left -= n;
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Test
+    public void testPriceUpdatesCoalesceWhileBehind() throws IOException {
+        connection.enqueue(ByteBuffer.wrap(new byte[ClientConnection.MAX_QUEUED_BYTES]));
+        connection.pushPriceUpdate("BTC", ByteBuffer.wrap(frames("Price update: BTC 1.0")));
+        connection.pushPriceUpdate("ETH", ByteBuffer.wrap(frames("Price update: ETH 2.0")));
+        connection.pushPriceUpdate("BTC", ByteBuffer.wrap(frames("Price update: BTC 3.0")));
+        assertEquals(2, connection.getCoalescedPriceUpdateCount());
+        assertEquals(ClientConnection.MAX_QUEUED_BYTES, connection.getQueuedBytes());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(connection.flush(Channels.newChannel(out)));
+        assertEquals(0, connection.getCoalescedPriceUpdateCount());
+
+        byte[] written = out.toByteArray();
+        byte[] updates = new byte[written.length - ClientConnection.MAX_QUEUED_BYTES];
+        System.arraycopy(written, ClientConnection.MAX_QUEUED_BYTES, updates, 0, updates.length);
+        assertArrayEquals(frames("Price update: BTC 3.0", "Price update: ETH 2.0"), updates);
+    }
+}
@@ -0,0 +1,198 @@
+package bg.sofia.uni.mjt.cryptowallet.server;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.command.CommandExecutor;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.AvailableAssets;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.UserSet;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.WalletJournal;
+import bg.sofia.uni.fmi.mjt.cryptowallet.server.CryptocurrencyWalletManagerServer;
+import bg.sofia.uni.fmi.mjt.cryptowallet.server.ExecutionMode;
+import bg.sofia.uni.fmi.mjt.cryptowallet.server.FramingMode;
+import bg.sofia.uni.fmi.mjt.cryptowallet.server.ServerConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CryptocurrencyWalletManagerServerTest {
+    private static final InetSocketAddress ADDRESS = new InetSocketAddress("localhost", 7777);
+    private static final int CONNECT_ATTEMPTS = 100;
+    private static final long CONNECT_RETRY_MILLIS = 50;
+
+    @TempDir
+    private Path directory;
+
+    private static SocketChannel connect() throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return SocketChannel.open(ADDRESS);
+            } catch (IOException e) {
+                if (attempt == CONNECT_ATTEMPTS) {
+                    throw e;
+                }
+                Thread.sleep(CONNECT_RETRY_MILLIS);
+            }
+        }
+    }
+
+    private static String send(SocketChannel channel, String command) throws IOException {
+        write(channel, command);
+        return read(channel);
+    }
+
+    private static void write(SocketChannel channel, String command) throws IOException {
+        byte[] payload = command.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer request = ByteBuffer.allocate(Integer.BYTES + payload.length).putInt(payload.length).put(payload);
+        request.flip();
+        while (request.hasRemaining()) {
+            channel.write(request);
+        }
+    }
+
+    private static String read(SocketChannel channel) throws IOException {
+        ByteBuffer header = readFully(channel, ByteBuffer.allocate(Integer.BYTES));
+        return new String(readFully(channel, ByteBuffer.allocate(header.getInt())).array(), StandardCharsets.UTF_8);
+    }
+
+    private static String sendRaw(SocketChannel channel, String command) throws IOException {
+        ByteBuffer request = ByteBuffer.wrap(command.getBytes(StandardCharsets.UTF_8));
+        while (request.hasRemaining()) {
+            channel.write(request);
+        }
+
+        ByteBuffer response = ByteBuffer.allocate(4096);
+        channel.read(response);
+        return new String(response.array(), 0, response.position(), StandardCharsets.UTF_8);
+    }
+
+    private static ByteBuffer readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                throw new IOException("Connection closed by server.");
+            }
+        }
+        return buffer.flip();
+    }
+
+    @Test
+    @Timeout(30)
+    public void testClientsAreServedByEveryReactor() throws Exception {
+        UserSet users = new UserSet(directory.resolve("users.txt").toString());
+        CommandExecutor executor = new CommandExecutor(users, new AvailableAssets());
+        CryptocurrencyWalletManagerServer server = new CryptocurrencyWalletManagerServer(executor,
+            new ServerConfig(3, FramingMode.LENGTH_PREFIXED, ExecutionMode.INLINE));
+        Thread serverThread = Thread.ofPlatform().name("test-server").start(server::startServer);
+
+        List<SocketChannel> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < 6; i++) {
+                SocketChannel client = connect();
+                clients.add(client);
+                assertEquals("Registered successfully.", send(client, "register user" + i + " pass"));
+            }
+
+            // every command goes to the reactor that owns the connection, so interleave the clients
+            for (int i = 0; i < clients.size(); i++) {
+                assertEquals("Logged in successfully.", send(clients.get(i), "login user" + i + " pass"));
+            }
+            for (int i = 0; i < clients.size(); i++) {
+                assertEquals("Transaction completed", send(clients.get(i), "deposit " + (i + 1) * 10));
+            }
+            for (int i = 0; i < clients.size(); i++) {
+                String summary = send(clients.get(i), "get-wallet-summary");
+                assertTrue(summary.contains("Current balance: $" + (i + 1) * 10.0), summary);
+            }
+
+            assertEquals(List.of(2, 2, 2), server.getConnectionsPerWorker());
+            assertEquals("Server was shutdown.", send(clients.get(0), "shutdown"));
+        } finally {
+            server.stop();
+            serverThread.join();
+            for (SocketChannel client : clients) {
+                client.close();
+            }
+        }
+
+        for (int i = 0; i < 6; i++) {
+            assertEquals((i + 1) * 10.0, users.getUser("user" + i).getWallet().getBalance());
+        }
+    }
+
+    @Test
+    @Timeout(30)
+    public void testInlineReactorKeepsServingWhileRepliesWaitForGroupCommit() throws Exception {
+        int clientCount = 4;
+        // the interval is far beyond the timeout, so only a full batch can be flushed
+        WalletJournal journal = new WalletJournal(directory.resolve("wallet.journal"), clientCount,
+            Duration.ofMinutes(5));
+        UserSet users = new UserSet(directory.resolve("users.txt").toString(), journal);
+        CryptocurrencyWalletManagerServer server = new CryptocurrencyWalletManagerServer(
+            new CommandExecutor(users, new AvailableAssets()),
+            new ServerConfig(1, FramingMode.LENGTH_PREFIXED, ExecutionMode.INLINE));
+        Thread serverThread = Thread.ofPlatform().name("test-server").start(server::startServer);
+
+        List<SocketChannel> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < clientCount; i++) {
+                clients.add(connect());
+            }
+
+            for (int i = 0; i < clientCount; i++) {
+                write(clients.get(i), "register user" + i + " pass");
+            }
+            for (SocketChannel client : clients) {
+                assertEquals("Registered successfully.", read(client));
+            }
+            for (int i = 0; i < clientCount; i++) {
+                assertEquals("Logged in successfully.", send(clients.get(i), "login user" + i + " pass"));
+            }
+            for (SocketChannel client : clients) {
+                write(client, "deposit 10");
+            }
+            for (SocketChannel client : clients) {
+                assertEquals("Transaction completed", read(client));
+            }
+
+            assertEquals(2, journal.getSyncCount(), "Each round of commands should share one sync.");
+            assertEquals("Server was shutdown.", send(clients.get(0), "shutdown"));
+        } finally {
+            server.stop();
+            serverThread.join();
+            for (SocketChannel client : clients) {
+                client.close();
+            }
+            users.close();
+        }
+    }
+
+    @Test
+    @Timeout(30)
+    public void testRawConnectionsCannotSubscribe() throws Exception {
+        UserSet users = new UserSet(directory.resolve("users.txt").toString());
+        CryptocurrencyWalletManagerServer server = new CryptocurrencyWalletManagerServer(
+            new CommandExecutor(users, new AvailableAssets()), ServerConfig.defaults());
+        Thread serverThread = Thread.ofPlatform().name("test-server").start(server::startServer);
+
+        try (SocketChannel client = connect()) {
+            assertEquals("Registered successfully.", sendRaw(client, "register alice pass"));
+            assertEquals("Logged in successfully.", sendRaw(client, "login alice pass"));
+            assertEquals("Price updates are only pushed over length-prefixed connections.",
+                sendRaw(client, "subscribe BTC"));
+            assertEquals("Server was shutdown.", sendRaw(client, "shutdown"));
+        } finally {
+            server.stop();
+            serverThread.join();
+        }
+    }
+}
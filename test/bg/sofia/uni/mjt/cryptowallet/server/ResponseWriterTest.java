@@ -0,0 +1,99 @@
+package bg.sofia.uni.mjt.cryptowallet.server;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.asset.Asset;
+import bg.sofia.uni.fmi.mjt.cryptowallet.database.AvailableAssets;
+import bg.sofia.uni.fmi.mjt.cryptowallet.server.BufferPool;
+import bg.sofia.uni.fmi.mjt.cryptowallet.server.FramingMode;
+import bg.sofia.uni.fmi.mjt.cryptowallet.server.ResponseWriter;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResponseWriterTest {
+    private static final String CONSTANT = "Transaction completed";
+
+    private static String decode(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testConstantResponseIsPreEncodedReadOnly() {
+        ResponseWriter writer = new ResponseWriter(FramingMode.RAW, new BufferPool(64, 4), List.of(CONSTANT));
+
+        ByteBuffer first = writer.encode(CONSTANT);
+        ByteBuffer second = writer.encode(CONSTANT);
+
+        assertTrue(first.isReadOnly());
+        assertNotSame(first, second);
+        assertEquals(CONSTANT, decode(first));
+        first.position(first.limit());
+        assertEquals(CONSTANT, decode(second), "Consuming one duplicate must not affect another.");
+    }
+
+    @Test
+    public void testDynamicResponseUsesPooledBuffer() {
+        BufferPool pool = new BufferPool(64, 4);
+        ResponseWriter writer = new ResponseWriter(FramingMode.RAW, pool, List.of());
+
+        ByteBuffer buffer = writer.encode("Wallet summary : $100.0 – ✓");
+        assertTrue(pool.owns(buffer));
+        assertEquals("Wallet summary : $100.0 – ✓", decode(buffer));
+
+        writer.release(buffer);
+        assertEquals(1, pool.getFreeCount());
+        assertSame(buffer, writer.encode("Overall winnings: $0.0"));
+    }
+
+    @Test
+    public void testFramedResponseHasLengthHeader() {
+        ResponseWriter writer = new ResponseWriter(FramingMode.LENGTH_PREFIXED, new BufferPool(64, 4),
+            List.of(CONSTANT));
+
+        for (String response : List.of(CONSTANT, "Ünïcödé")) {
+            ByteBuffer buffer = writer.encode(response);
+            int length = buffer.getInt(buffer.position());
+            assertEquals(buffer.remaining() - Integer.BYTES, length);
+            assertEquals(response, decode(buffer.duplicate().position(buffer.position() + Integer.BYTES)));
+        }
+    }
+
+    @Test
+    public void testResponseLargerThanPoolBuffer() {
+        BufferPool pool = new BufferPool(16, 4);
+        ResponseWriter writer = new ResponseWriter(FramingMode.RAW, pool, List.of());
+        String large = "Asset ID: BTC".repeat(100);
+
+        ByteBuffer buffer = writer.encode(large);
+        assertFalse(pool.owns(buffer));
+        assertEquals(large, decode(buffer));
+        assertEquals(1, pool.getFreeCount(), "The too small pooled buffer must be returned.");
+    }
+
+    @Test
+    public void testOfferingsServedFromSharedSnapshot() {
+        AvailableAssets availableAssets = new AvailableAssets();
+        availableAssets.updateAvailableAssets(Set.of(new Asset("BTC", "Bitcoin", 1, 100)));
+        BufferPool pool = new BufferPool(64, 4);
+        ResponseWriter writer = new ResponseWriter(FramingMode.LENGTH_PREFIXED, pool, List.of(), availableAssets);
+
+        ByteBuffer first = writer.encode(availableAssets.listOfferings());
+        ByteBuffer second = writer.encode(availableAssets.listOfferings());
+
+        assertTrue(first.isReadOnly());
+        assertFalse(pool.owns(first));
+        assertEquals(availableAssets.listOfferings(),
+            decode(first.duplicate().position(first.position() + Integer.BYTES)));
+        assertEquals(first, second);
+    }
+}
@@ -0,0 +1,46 @@
+package bg.sofia.uni.mjt.cryptowallet.server;
+
+import bg.sofia.uni.fmi.mjt.cryptowallet.server.SerialExecutor;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SerialExecutorTest {
+    private static final int TASK_COUNT = 1000;
+
+    @Test
+    public void testTasksRunInSubmissionOrderWithoutOverlap() throws InterruptedException {
+        List<Integer> order = new ArrayList<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(TASK_COUNT);
+
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            SerialExecutor serialExecutor = new SerialExecutor(pool);
+            for (int i = 0; i < TASK_COUNT; i++) {
+                int id = i;
+                serialExecutor.execute(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    order.add(id);
+                    running.decrementAndGet();
+                    done.countDown();
+                });
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, maxRunning.get(), "Tasks of one connection must not overlap.");
+        for (int i = 0; i < TASK_COUNT; i++) {
+            assertEquals(i, order.get(i));
+        }
+    }
+}
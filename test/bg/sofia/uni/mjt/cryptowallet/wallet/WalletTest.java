@@ -16,6 +16,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 public class WalletTest {
@@ -39,6 +40,17 @@ public class WalletTest {
         assertThrows(IllegalArgumentException.class, () -> wallet.depositMoney(-100));
     }
 
+    @Test
+    public void testNonFiniteAmountsAreRejected() {
+        wallet.depositMoney(100);
+
+        assertThrows(IllegalArgumentException.class, () -> wallet.depositMoney(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> wallet.depositMoney(Double.POSITIVE_INFINITY));
+        assertThrows(IllegalArgumentException.class,
+            () -> wallet.buyAssetAt(new Asset("BTC", "Bitcoin", 1, 100), Double.NaN));
+        assertEquals(100, wallet.getBalance());
+    }
+
     @Test
     public void testBuyAsset() throws NoSuchAssetExistsException, InsufficientBalanceException {
         Asset asset = new Asset("BTC", "Bitcoin", 1, 100);
@@ -206,6 +218,34 @@ public class WalletTest {
         assertEquals(expectedOverallSummary, wallet.getWalletOverallSummary(availableAssets));
     }
 
+    @Test
+    public void testRollBackUnwindsNewestChangeFirst() {
+        Wallet initial = wallet.copy();
+        wallet.depositMoney(100);
+        wallet.markJournaled(1);
+        Wallet afterFirst = wallet.copy();
+        wallet.depositMoney(50);
+        wallet.markJournaled(2);
+
+        assertFalse(wallet.rollBack(initial, 1), "An older change cannot be undone before a newer one.");
+        assertTrue(wallet.rollBack(afterFirst, 2));
+        assertTrue(wallet.rollBack(initial, 1));
+        assertEquals(0, wallet.getBalance());
+        assertEquals(0, wallet.getLastLsn());
+    }
+
+    @Test
+    public void testGetWalletOverallSummaryListsUnpricedAssets() {
+        wallet.depositMoney(100);
+        wallet.applyPurchase("BTC", 50, 100);
+        wallet.applyPurchase("DOGE", 10, 0.1);
+
+        String expectedOverallSummary = "Overall winnings: $50.0" + System.lineSeparator()
+            + "Not included, no current price: DOGE" + System.lineSeparator();
+        assertEquals(expectedOverallSummary,
+            wallet.getWalletOverallSummary(Map.of("BTC", new Asset("BTC", "Bitcoin", 1, 200))));
+    }
+
     @Test
     public void testGetWalletOverallSummaryNoAssets() {
         String expectedOverallSummary = "Overall winnings: $0.0" + System.lineSeparator();